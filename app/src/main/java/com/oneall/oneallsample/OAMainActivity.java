@@ -84,7 +84,7 @@ public class OAMainActivity extends ActionBarActivity {
         mTwitterSecret = getString(R.string.twitter_consumer_secret);
         mSubdomain = getString(R.string.oneall_subdomain);
 
-        OAManager.getInstance().setup(this, mSubdomain, mTwitterKey, mTwitterSecret);
+        OAManager.getInstance().setupAsync(this, mSubdomain, mTwitterKey, mTwitterSecret);
         OAManager.getInstance().onCreate(this, savedInstanceState);
 
         imageUserAvatar = (ImageView) findViewById(R.id.main_activity_user_avatar);
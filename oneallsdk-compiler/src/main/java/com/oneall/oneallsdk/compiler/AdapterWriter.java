@@ -0,0 +1,317 @@
+package com.oneall.oneallsdk.compiler;
+
+import java.util.List;
+
+/**
+ * Generates source code of type adapters and of the factory registering them
+ */
+class AdapterWriter {
+
+    // region Constants
+
+    static final String FACTORY_NAME = "JsonModelTypeAdapterFactory";
+
+    private static final String INDENT = "    ";
+
+    // endregion
+
+    // region Properties
+
+    private final StringBuilder sb = new StringBuilder(4096);
+
+    private int indent;
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * generate type adapter of a model class
+     *
+     * @param model model to generate adapter for, must be instantiable
+     *
+     * @return source code of the adapter class
+     */
+    static String writeAdapter(ModelType model) {
+        AdapterWriter w = new AdapterWriter();
+        w.header(model.packageName);
+        w.line("import com.google.gson.Gson;");
+        w.line("import com.google.gson.TypeAdapter;");
+        w.line("import com.google.gson.reflect.TypeToken;");
+        w.line("import com.google.gson.stream.JsonReader;");
+        w.line("import com.google.gson.stream.JsonToken;");
+        w.line("import com.google.gson.stream.JsonWriter;");
+        w.line("");
+        w.line("import java.io.IOException;");
+        w.line("");
+        w.line("/** type adapter of {@link %s}, generated from its fields */", model.typeName);
+        w.open("final class %s extends TypeAdapter<%s>", model.adapterName, model.typeName);
+        w.line("");
+        w.line("private final Gson gson;");
+        for (ModelField field : model.fields) {
+            if (field.kind == ModelField.Kind.ADAPTER) {
+                w.line("private TypeAdapter<%s> %s;", boxed(field), adapterField(field));
+            }
+        }
+        w.line("");
+        w.open("%s(Gson gson)", model.adapterName);
+        w.line("this.gson = gson;");
+        w.close();
+
+        w.writeMethod(model);
+        w.readMethod(model);
+
+        for (ModelField field : model.fields) {
+            if (field.kind == ModelField.Kind.ADAPTER) {
+                w.line("");
+                w.open("private TypeAdapter<%s> %s()", boxed(field), adapterGetter(field));
+                w.open("if (%s == null)", adapterField(field));
+                w.line("%s = gson.getAdapter(new TypeToken<%s>() { });",
+                        adapterField(field), boxed(field));
+                w.close();
+                w.line("return %s;", adapterField(field));
+                w.close();
+            }
+        }
+        w.close();
+        return w.sb.toString();
+    }
+
+    /**
+     * generate factory of all adapters of a package
+     *
+     * @param packageName package of the models
+     * @param models      models with generated adapters
+     *
+     * @return source code of the factory class
+     */
+    static String writeFactory(String packageName, List<ModelType> models) {
+        AdapterWriter w = new AdapterWriter();
+        w.header(packageName);
+        w.line("import com.google.gson.Gson;");
+        w.line("import com.google.gson.JsonSyntaxException;");
+        w.line("import com.google.gson.TypeAdapter;");
+        w.line("import com.google.gson.TypeAdapterFactory;");
+        w.line("import com.google.gson.reflect.TypeToken;");
+        w.line("import com.google.gson.stream.JsonReader;");
+        w.line("import com.google.gson.stream.JsonToken;");
+        w.line("");
+        w.line("import java.io.IOException;");
+        w.line("");
+        w.line("/**");
+        w.line(" * Gson factory of type adapters generated for models annotated with {@code JsonModel}.");
+        w.line(" * Register it with {@code GsonBuilder.registerTypeAdapterFactory()} to read and write");
+        w.line(" * the models without reflection.");
+        w.line(" */");
+        w.open("public final class %s implements TypeAdapterFactory", FACTORY_NAME);
+        w.line("");
+        w.line("@Override");
+        w.line("@SuppressWarnings(\"unchecked\")");
+        w.open("public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)");
+        w.line("Class<? super T> raw = type.getRawType();");
+        for (ModelType model : models) {
+            w.open("if (raw == %s.class)", model.typeName);
+            w.line("return (TypeAdapter<T>) new %s(gson);", model.adapterName);
+            w.close();
+        }
+        w.line("return null;");
+        w.close();
+
+        w.line("");
+        w.open("static String readString(JsonReader in) throws IOException");
+        w.line("JsonToken token = in.peek();");
+        w.open("if (token == JsonToken.NULL)");
+        w.line("in.nextNull();");
+        w.line("return null;");
+        w.close();
+        w.open("if (token == JsonToken.BOOLEAN)");
+        w.line("return Boolean.toString(in.nextBoolean());");
+        w.close();
+        w.line("return in.nextString();");
+        w.close();
+
+        w.line("");
+        w.open("static Boolean readBoolean(JsonReader in) throws IOException");
+        w.line("JsonToken token = in.peek();");
+        w.open("if (token == JsonToken.NULL)");
+        w.line("in.nextNull();");
+        w.line("return null;");
+        w.close();
+        w.open("if (token == JsonToken.STRING)");
+        w.line("return Boolean.parseBoolean(in.nextString());");
+        w.close();
+        w.line("return in.nextBoolean();");
+        w.close();
+
+        w.numberReader("Integer", "nextInt");
+        w.numberReader("Long", "nextLong");
+        w.numberReader("Double", "nextDouble");
+        w.close();
+        return w.sb.toString();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private void writeMethod(ModelType model) {
+        line("");
+        line("@Override");
+        open("public void write(JsonWriter out, %s value) throws IOException", model.typeName);
+        open("if (value == null)");
+        line("out.nullValue();");
+        line("return;");
+        close();
+        line("out.beginObject();");
+        for (ModelField field : model.fields) {
+            String access = field.getter != null
+                    ? String.format("value.%s()", field.getter)
+                    : String.format("value.%s", field.name);
+
+            if (field.primitive) {
+                line("out.name(\"%s\").value(%s);", field.jsonName, access);
+                continue;
+            }
+
+            line("%s %s = %s;", boxed(field), local(field), access);
+            open("if (%s != null)", local(field));
+            switch (field.kind) {
+                case STRING:
+                    line("out.name(\"%s\").value(%s);", field.jsonName, local(field));
+                    break;
+                case BOOLEAN:
+                    line("out.name(\"%s\").value(%s.booleanValue());", field.jsonName, local(field));
+                    break;
+                case INTEGER:
+                case LONG:
+                case DOUBLE:
+                    line("out.name(\"%s\").value((Number) %s);", field.jsonName, local(field));
+                    break;
+                default:
+                    line("out.name(\"%s\");", field.jsonName);
+                    line("%s().write(out, %s);", adapterGetter(field), local(field));
+                    break;
+            }
+            close();
+        }
+        line("out.endObject();");
+        close();
+    }
+
+    private void readMethod(ModelType model) {
+        line("");
+        line("@Override");
+        open("public %s read(JsonReader in) throws IOException", model.typeName);
+        open("if (in.peek() == JsonToken.NULL)");
+        line("in.nextNull();");
+        line("return null;");
+        close();
+
+        line("%s value = new %s();", model.typeName, model.typeName);
+        line("in.beginObject();");
+        open("while (in.hasNext())");
+        open("switch (in.nextName())");
+        for (ModelField field : model.fields) {
+            line("case \"%s\":", field.jsonName);
+            indent++;
+            String read = field.kind == ModelField.Kind.ADAPTER
+                    ? String.format("%s().read(in)", adapterGetter(field))
+                    : String.format("%s.read%s(in)", FACTORY_NAME, field.kind.readerSuffix);
+
+            if (field.primitive) {
+                // keep the default value of primitive fields on null, the same way Gson does
+                line("%s %s = %s;", boxed(field), local(field), read);
+                open("if (%s != null)", local(field));
+                assign(field, local(field));
+                close();
+            } else {
+                assign(field, read);
+            }
+            line("break;");
+            indent--;
+        }
+        line("default:");
+        indent++;
+        line("in.skipValue();");
+        line("break;");
+        indent--;
+        close();
+        close();
+        line("in.endObject();");
+        line("return value;");
+        close();
+    }
+
+    private void numberReader(String type, String method) {
+        line("");
+        open("static %s read%s(JsonReader in) throws IOException", type, type);
+        open("if (in.peek() == JsonToken.NULL)");
+        line("in.nextNull();");
+        line("return null;");
+        close();
+        open("try");
+        line("return in.%s();", method);
+        indent--;
+        line("} catch (NumberFormatException e) {");
+        indent++;
+        line("throw new JsonSyntaxException(e);");
+        close();
+        close();
+    }
+
+    private void assign(ModelField field, String expression) {
+        if (field.setter != null) {
+            line("value.%s(%s);", field.setter, expression);
+        } else {
+            line("value.%s = %s;", field.name, expression);
+        }
+    }
+
+    private void header(String packageName) {
+        line("// Generated by %s, do not edit", TypeAdapterProcessor.class.getSimpleName());
+        if (packageName.length() > 0) {
+            line("package %s;", packageName);
+        }
+        line("");
+    }
+
+    private static String boxed(ModelField field) {
+        return field.kind.boxedType != null ? field.kind.boxedType : field.typeName;
+    }
+
+    private static String local(ModelField field) {
+        return field.name + "Value";
+    }
+
+    private static String adapterField(ModelField field) {
+        return field.name + "Adapter";
+    }
+
+    private static String adapterGetter(ModelField field) {
+        String name = field.name;
+        return "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Adapter";
+    }
+
+    private void open(String format, Object... args) {
+        line(format + " {", args);
+        indent++;
+    }
+
+    private void close() {
+        indent--;
+        line("}");
+    }
+
+    private void line(String format, Object... args) {
+        String text = args.length > 0 ? String.format(format, args) : format;
+        if (text.length() > 0) {
+            for (int i = 0; i < indent; i++) {
+                sb.append(INDENT);
+            }
+            sb.append(text);
+        }
+        sb.append('\n');
+    }
+
+    // endregion
+}
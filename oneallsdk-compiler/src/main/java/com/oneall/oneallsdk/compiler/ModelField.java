@@ -0,0 +1,218 @@
+package com.oneall.oneallsdk.compiler;
+
+import java.util.Locale;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * Description of a single serialized field of a model class
+ */
+class ModelField {
+
+    // region Helper classes
+
+    /** how the value of the field is read and written */
+    enum Kind {
+        STRING("String", "String"),
+        INTEGER("Integer", "Integer"),
+        LONG("Long", "Long"),
+        DOUBLE("Double", "Double"),
+        BOOLEAN("Boolean", "Boolean"),
+
+        /** any other type, handled by the adapter registered in Gson for that type */
+        ADAPTER(null, null);
+
+        /** suffix of the read helper method in the generated factory */
+        final String readerSuffix;
+
+        /** boxed type used for the local variables */
+        final String boxedType;
+
+        Kind(String readerSuffix, String boxedType) {
+            this.readerSuffix = readerSuffix;
+            this.boxedType = boxedType;
+        }
+    }
+
+    // endregion
+
+    // region Constants
+
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    // endregion
+
+    // region Properties
+
+    /** name of the field in Java */
+    final String name;
+
+    /** name of the member in JSON */
+    final String jsonName;
+
+    /** type of the field as written in Java source */
+    final String typeName;
+
+    final Kind kind;
+
+    /** whether the field holds a primitive value that can never be null */
+    final boolean primitive;
+
+    /** getter used to read the field, {@code null} if the field is accessed directly */
+    final String getter;
+
+    /** setter used to write the field, {@code null} if the field is accessed directly */
+    final String setter;
+
+    // endregion
+
+    // region Lifecycle
+
+    private ModelField(
+            String name,
+            String jsonName,
+            String typeName,
+            Kind kind,
+            boolean primitive,
+            String getter,
+            String setter) {
+        this.name = name;
+        this.jsonName = jsonName;
+        this.typeName = typeName;
+        this.kind = kind;
+        this.primitive = primitive;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * describe field of a model class
+     *
+     * @param owner class declaring the field
+     * @param field the field
+     *
+     * @return field description
+     *
+     * @throws IllegalArgumentException if the field is private and has no accessors
+     */
+    static ModelField of(TypeElement owner, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        TypeMirror type = field.asType();
+
+        String getter = null;
+        String setter = null;
+        if (field.getModifiers().contains(Modifier.PRIVATE)) {
+            String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            getter = findMethod(owner, 0, "get" + suffix, "is" + suffix);
+            setter = findMethod(owner, 1, "set" + suffix);
+            if (getter == null || setter == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Private field %s.%s must have a getter and a setter",
+                        owner.getQualifiedName(), name));
+            }
+        }
+
+        return new ModelField(
+                name,
+                jsonName(field),
+                type.toString(),
+                kindOf(type),
+                type.getKind().isPrimitive(),
+                getter,
+                setter);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * get name of the JSON member: value of {@code @SerializedName} if present, otherwise the
+     * name of the field translated the same way {@code FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES}
+     * does
+     */
+    private static String jsonName(VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotation.getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+                for (ExecutableElement key : mirror.getElementValues().keySet()) {
+                    if (key.getSimpleName().contentEquals("value")) {
+                        return mirror.getElementValues().get(key).getValue().toString();
+                    }
+                }
+            }
+        }
+
+        String name = field.getSimpleName().toString();
+        StringBuilder sb = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && sb.length() != 0) {
+                sb.append('_');
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static Kind kindOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return Kind.INTEGER;
+            case LONG:
+                return Kind.LONG;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case DECLARED:
+                Element element = ((DeclaredType) type).asElement();
+                String name = ((TypeElement) element).getQualifiedName().toString();
+                switch (name) {
+                    case "java.lang.String":
+                        return Kind.STRING;
+                    case "java.lang.Integer":
+                        return Kind.INTEGER;
+                    case "java.lang.Long":
+                        return Kind.LONG;
+                    case "java.lang.Double":
+                        return Kind.DOUBLE;
+                    case "java.lang.Boolean":
+                        return Kind.BOOLEAN;
+                    default:
+                        return Kind.ADAPTER;
+                }
+            default:
+                if (type.getKind().isPrimitive()) {
+                    throw new IllegalArgumentException("Unsupported primitive type " + type);
+                }
+                return Kind.ADAPTER;
+        }
+    }
+
+    /** find name of a non-private method with specified number of parameters */
+    private static String findMethod(TypeElement owner, int parameters, String... names) {
+        for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.PRIVATE)
+                    || method.getParameters().size() != parameters) {
+                continue;
+            }
+            for (String name : names) {
+                if (method.getSimpleName().contentEquals(name)) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    // endregion
+}
@@ -0,0 +1,123 @@
+package com.oneall.oneallsdk.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * Description of a model class for which a type adapter is generated
+ */
+class ModelType {
+
+    // region Properties
+
+    /** package of the model */
+    final String packageName;
+
+    /** name of the model as used in Java source, e.g. {@code User.Identity} */
+    final String typeName;
+
+    /** simple name of the generated adapter, e.g. {@code User_IdentityTypeAdapter} */
+    final String adapterName;
+
+    /**
+     * whether instances of the model can be created by the adapter; no adapter is generated for
+     * models which cannot be created (inner classes, classes without no-arg constructor)
+     */
+    final boolean instantiable;
+
+    /** serialized fields */
+    final List<ModelField> fields;
+
+    // endregion
+
+    // region Lifecycle
+
+    private ModelType(
+            String packageName,
+            String typeName,
+            boolean instantiable,
+            List<ModelField> fields) {
+        this.packageName = packageName;
+        this.typeName = typeName;
+        this.adapterName = typeName.replace('.', '_') + "TypeAdapter";
+        this.instantiable = instantiable;
+        this.fields = fields;
+    }
+
+    /**
+     * describe model class
+     *
+     * @param type model class
+     *
+     * @return model description
+     *
+     * @throws IllegalArgumentException if the class cannot be handled by a generated adapter
+     */
+    static ModelType of(TypeElement type) {
+        PackageElement pkg = packageOf(type);
+        String packageName = pkg.getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        if (packageName.length() > 0) {
+            typeName = typeName.substring(packageName.length() + 1);
+        }
+
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new IllegalArgumentException(
+                    String.format("Model class %s must not be private", type.getQualifiedName()));
+        }
+
+        ArrayList<ModelField> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)
+                    || field.getModifiers().contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            fields.add(ModelField.of(type, field));
+        }
+
+        return new ModelType(packageName, typeName, isInstantiable(type), fields);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static boolean isInstantiable(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || type.getKind() != ElementKind.CLASS) {
+            return false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER
+                && !type.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (ExecutableElement constructor
+                : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PackageElement packageOf(TypeElement type) {
+        Element element = type;
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    // endregion
+}
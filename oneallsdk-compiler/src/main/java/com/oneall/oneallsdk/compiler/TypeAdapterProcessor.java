@@ -0,0 +1,133 @@
+package com.oneall.oneallsdk.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor generating Gson type adapters for classes annotated with
+ * {@code com.oneall.oneallsdk.rest.models.JsonModel} and all classes nested in them.
+ *
+ * For every package containing models a {@code JsonModelTypeAdapterFactory} is generated which
+ * returns the adapters of the package's models. The adapters read and write the fields directly or
+ * through their accessors, so Gson does not have to inspect the models with reflection and the
+ * model fields do not have to be kept from obfuscation. Models which the adapters cannot create
+ * (inner classes, classes without a non-private no-arg constructor) get no adapter and are read
+ * and written by Gson's reflection instead.
+ */
+@SupportedAnnotationTypes(TypeAdapterProcessor.JSON_MODEL)
+public class TypeAdapterProcessor extends AbstractProcessor {
+
+    // region Constants
+
+    static final String JSON_MODEL = "com.oneall.oneallsdk.rest.models.JsonModel";
+
+    // endregion
+
+    // region AbstractProcessor
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+
+        Map<String, List<ModelType>> packages = new LinkedHashMap<>();
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type
+                    : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                collect(type, packages);
+            }
+        }
+
+        for (Map.Entry<String, List<ModelType>> entry : packages.entrySet()) {
+            String packageName = entry.getKey();
+            List<ModelType> adapted = new ArrayList<>();
+            for (ModelType model : entry.getValue()) {
+                if (!model.instantiable) {
+                    // the factory returns no adapter, so Gson falls back to reflection
+                    continue;
+                }
+                writeSource(packageName, model.adapterName, AdapterWriter.writeAdapter(model));
+                adapted.add(model);
+            }
+            writeSource(
+                    packageName,
+                    AdapterWriter.FACTORY_NAME,
+                    AdapterWriter.writeFactory(packageName, adapted));
+        }
+        return true;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /** add model and all classes nested in it to the models of its package */
+    private void collect(TypeElement type, Map<String, List<ModelType>> packages) {
+        ModelType model;
+        try {
+            model = ModelType.of(type);
+        } catch (IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), type);
+            return;
+        }
+
+        List<ModelType> models = packages.get(model.packageName);
+        if (models == null) {
+            models = new ArrayList<>();
+            packages.put(model.packageName, models);
+        }
+        for (ModelType existing : models) {
+            if (existing.typeName.equals(model.typeName)) {
+                return;
+            }
+        }
+        models.add(model);
+
+        for (Element nested : type.getEnclosedElements()) {
+            if (nested.getKind() == ElementKind.CLASS) {
+                collect((TypeElement) nested, packages);
+            }
+        }
+    }
+
+    private void writeSource(String packageName, String className, String source) {
+        String name = packageName.length() > 0 ? packageName + "." + className : className;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(name);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR,
+                    String.format("Cannot write %s: %s", name, e.getMessage()));
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,100 @@
+package com.oneall.oneallsdk;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+
+/**
+ * Native Facebook login, using Facebook SDK through {@link FacebookWrapper}
+ */
+public class FacebookPlugin extends NativeLoginPlugin {
+
+    // region Interface methods
+
+    @Override
+    public String getProviderKey() {
+        return "facebook";
+    }
+
+    @Override
+    public void prewarm() {
+        // loads Facebook SDK classes, the SDK itself needs an activity
+        FacebookWrapper.getInstance();
+    }
+
+    @Override
+    public boolean login(Activity activity, final LoginCallback callback) {
+        FacebookWrapper facebook = FacebookWrapper.getInstance();
+        facebook.start(activity);
+        return facebook.login(activity, new FacebookWrapper.SessionStateListener() {
+            @Override
+            public void success(String accessToken) {
+                callback.success(accessToken, null);
+            }
+
+            @Override
+            public void failure(OAError error) {
+                callback.failure(error);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        FacebookWrapper.destroyInstance();
+    }
+
+    // endregion
+
+    // region Activity lifecycle responders
+
+    @Override
+    public void onCreate(Activity activity, Bundle savedInstanceState) {
+        FacebookWrapper facebook = FacebookWrapper.getStartedInstance();
+        if (facebook != null) {
+            facebook.onCreate(activity, savedInstanceState);
+        }
+    }
+
+    @Override
+    public void onResume() {
+        FacebookWrapper facebook = FacebookWrapper.getStartedInstance();
+        if (facebook != null) {
+            facebook.onResume();
+        }
+    }
+
+    @Override
+    public void onPause() {
+        FacebookWrapper facebook = FacebookWrapper.getStartedInstance();
+        if (facebook != null) {
+            facebook.onPause();
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        FacebookWrapper facebook = FacebookWrapper.getStartedInstance();
+        if (facebook != null) {
+            facebook.onSaveInstanceState(outState);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        FacebookWrapper facebook = FacebookWrapper.getStartedInstance();
+        if (facebook != null) {
+            facebook.onDestroy();
+        }
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        FacebookWrapper facebook = FacebookWrapper.getStartedInstance();
+        if (facebook != null) {
+            facebook.onActivityResult(requestCode, resultCode, data);
+        }
+    }
+
+    // endregion
+}
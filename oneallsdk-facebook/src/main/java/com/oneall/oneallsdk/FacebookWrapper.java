@@ -12,7 +12,11 @@ import android.os.Bundle;
 
 import java.util.Arrays;
 
-/** This class wraps interface to Facebook and hides implementation details */
+/**
+ * This class wraps interface to Facebook and hides implementation details. The Facebook SDK is
+ * started on first use only, see {@link #start(Activity)}; until then the activity lifecycle is not
+ * forwarded to it.
+ */
 public class FacebookWrapper {
     // region Helper classes and interfaces
 
@@ -64,6 +68,16 @@ public class FacebookWrapper {
         return mInstance;
     }
 
+    /**
+     * get instance of this wrapper if Facebook integration has been started
+     *
+     * @return wrapper, {@code null} if Facebook has not been used yet
+     */
+    public static FacebookWrapper getStartedInstance() {
+        FacebookWrapper instance = mInstance;
+        return instance != null && instance.uiHelper != null ? instance : null;
+    }
+
     public static void destroyInstance() {
         synchronized (FacebookWrapper.class) {
             if (mInstance != null) {
@@ -77,6 +91,20 @@ public class FacebookWrapper {
 
     // region Interface methods
 
+    /**
+     * start Facebook integration in the activity, if not started yet. From now on the activity
+     * lifecycle has to be forwarded to the wrapper.
+     *
+     * @param activity current activity
+     */
+    public void start(Activity activity) {
+        if (uiHelper == null) {
+            OALog.info("Starting Facebook integration");
+            onCreate(activity, null);
+            uiHelper.onResume();
+        }
+    }
+
     public boolean login(Activity activity, SessionStateListener listener) {
         mListener = listener;
         Session session = Session.getActiveSession();
@@ -0,0 +1,52 @@
+package com.oneall.oneallsdk;
+
+import com.logentries.android.AndroidLogger;
+import com.oneall.oneallsdk.logentries.BuildConfig;
+import com.oneall.oneallsdk.logentries.R;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * Remote logging of debug builds to Logentries. The log token is read from
+ * {@code logentries_token} string resource.
+ */
+public class LogentriesPlugin extends RemoteLogPlugin {
+
+    // region Properties
+
+    private volatile AndroidLogger logger = null;
+
+    // endregion
+
+    // region Interface methods
+
+    @Override
+    public void initialize(Context context) {
+        if (BuildConfig.DEBUG) {
+            logger = AndroidLogger.getLogger(context, context.getString(R.string.logentries_token));
+        }
+    }
+
+    @Override
+    public void log(int priority, String message) {
+        AndroidLogger logger = this.logger;
+        if (logger == null) {
+            return;
+        }
+
+        switch (priority) {
+            case Log.ERROR:
+                logger.error(message);
+                break;
+            case Log.WARN:
+                logger.warn(message);
+                break;
+            default:
+                logger.info(message);
+                break;
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,36 @@
+package com.oneall.oneallsdk.rest;
+
+/**
+ * OneAll API endpoints used by the SDK. Failures are tracked and retry policies are configured
+ * per endpoint.
+ */
+public enum ApiEndpoint {
+
+    /** {@code GET /providers.json} */
+    PROVIDERS(true),
+
+    /** {@code GET /connection/{token}.json} */
+    CONNECTION(true),
+
+    /** {@code PUT /users.json}, importing a user from a native access token */
+    USERS(true),
+
+    /** {@code POST /users/{token}/publish.json} */
+    PUBLISH(false);
+
+    private final boolean idempotent;
+
+    ApiEndpoint(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * check whether repeating the call has the same effect as making it once, in which case it is
+     * retried by default
+     *
+     * @return {@code true} if the endpoint is idempotent
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
@@ -0,0 +1,166 @@
+package com.oneall.oneallsdk.rest;
+
+import com.oneall.oneallsdk.rest.models.ResponseConnection;
+
+import java.util.Iterator;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+
+/**
+ * Resolves many connection tokens into connection details, e.g. for reconciliation jobs. At most
+ * a fixed number of lookups are in flight at a time and tokens are pulled from their source only
+ * when a lookup slot is free, so arbitrarily long sources (e.g. read from a database cursor) are
+ * never buffered in memory.
+ *
+ * Lookups go through the {@link ResilientCaller} of the services: they are retried and guarded by
+ * the circuit breaker of {@link ApiEndpoint#CONNECTION}. Results are delivered as lookups complete,
+ * in no particular order; a failed lookup is reported and does not stop the batch.
+ *
+ * {@link #resolve} blocks until the batch is complete. Callbacks run on the thread Retrofit
+ * delivers them on, on Android the main thread, so the resolver must not be used from the main
+ * thread there.
+ */
+public class BulkConnectionResolver {
+
+    // region Helper classes and interfaces
+
+    /**
+     * receives results of lookups as they complete. Methods may be called from several threads at
+     * the same time.
+     */
+    public interface Listener {
+        void onResolved(String connectionToken, ResponseConnection connection);
+        void onFailed(String connectionToken, RetrofitError error);
+    }
+
+    /** outcome of a batch */
+    public static class Summary {
+        private final int resolved;
+        private final int failed;
+        private final boolean cancelled;
+
+        Summary(int resolved, int failed, boolean cancelled) {
+            this.resolved = resolved;
+            this.failed = failed;
+            this.cancelled = cancelled;
+        }
+
+        /** @return number of tokens resolved */
+        public int getResolved() {
+            return resolved;
+        }
+
+        /** @return number of tokens whose lookup failed, including lookups aborted by cancellation */
+        public int getFailed() {
+            return failed;
+        }
+
+        /** @return {@code true} if the batch has been cancelled, some tokens may not have been looked up */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final ServiceManagerProvider services;
+
+    private final int maxConcurrency;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates resolver
+     *
+     * @param services       services used for the lookups
+     * @param maxConcurrency maximum number of lookups in flight at a time
+     *
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive
+     */
+    public BulkConnectionResolver(ServiceManagerProvider services, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.services = services;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * resolve connection tokens
+     *
+     * @param nonce    nonce of the logins the connections belong to
+     * @param tokens   connection tokens
+     * @param listener listener of the results
+     *
+     * @return outcome of the batch
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting; lookups in
+     *                              flight are cancelled
+     */
+    public Summary resolve(String nonce, Iterable<String> tokens, Listener listener)
+            throws InterruptedException {
+        return resolve(nonce, tokens.iterator(), new Cancellation(), listener);
+    }
+
+    /**
+     * resolve connection tokens pulled from a source one by one, as lookup slots become free
+     *
+     * @param nonce        nonce of the logins the connections belong to
+     * @param tokens       source of connection tokens, only used by the calling thread
+     * @param cancellation cancellation of the batch; once cancelled no more tokens are pulled and
+     *                     lookups in flight are aborted
+     * @param listener     listener of the results
+     *
+     * @return outcome of the batch
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting; lookups in
+     *                              flight are cancelled
+     */
+    public Summary resolve(
+            String nonce,
+            Iterator<String> tokens,
+            Cancellation cancellation,
+            final Listener listener) throws InterruptedException {
+
+        final String authHeader = ServiceManagerProvider.buildAuthHeader(nonce);
+        WindowedDispatch<String, ResponseConnection> dispatch = new WindowedDispatch<>(
+                services.getResilientCaller(),
+                ApiEndpoint.CONNECTION,
+                maxConcurrency,
+                new WindowedDispatch.Handler<String, ResponseConnection>() {
+                    @Override
+                    public ServiceCall<ResponseConnection> createCall(final String token) {
+                        return new ServiceCall<ResponseConnection>() {
+                            @Override
+                            public void execute(Callback<ResponseConnection> callback) {
+                                services.getConnectionService().info(authHeader, token, callback);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void onSuccess(String token, ResponseConnection connection) {
+                        listener.onResolved(token, connection);
+                    }
+
+                    @Override
+                    public void onFailure(String token, RetrofitError error) {
+                        listener.onFailed(token, error);
+                    }
+                });
+        dispatch.run(tokens, cancellation);
+
+        return new Summary(dispatch.getSucceeded(), dispatch.getFailed(), cancellation.isCancelled());
+    }
+
+    // endregion
+}
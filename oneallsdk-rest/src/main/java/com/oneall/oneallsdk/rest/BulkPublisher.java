@@ -0,0 +1,284 @@
+package com.oneall.oneallsdk.rest;
+
+import com.google.gson.Gson;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Publishes the same message on behalf of many users, e.g. for campaigns. The message is
+ * serialized once per distinct set of providers and the same request body is sent for every user
+ * with that set. At most a fixed number of requests are in flight at a time and targets are pulled
+ * from their source only when a slot is free, so that requests are pipelined over the pooled
+ * connections without buffering the targets.
+ *
+ * Requests go through the {@link ResilientCaller} of the services, with the retry policy and
+ * circuit breaker of {@link ApiEndpoint#PUBLISH}. Results are delivered as requests complete, in
+ * no particular order; a failed publication is reported and does not stop the batch.
+ *
+ * {@link #publish} blocks until the batch is complete. Callbacks run on the thread Retrofit
+ * delivers them on, on Android the main thread, so the publisher must not be used from the main
+ * thread there.
+ */
+public class BulkPublisher {
+
+    // region Constants
+
+    private static final String MIME_TYPE = "application/json; charset=UTF-8";
+
+    /** maximum number of distinct provider sets whose body is kept, beyond it bodies are rebuilt */
+    private static final int MAX_CACHED_BODIES = 64;
+
+    // endregion
+
+    // region Helper classes and interfaces
+
+    /** user the message is published for */
+    public static class Target {
+        private final String userToken;
+        private final String publishToken;
+        private final Collection<String> providers;
+
+        /**
+         * creates target
+         *
+         * @param userToken    token of the user
+         * @param publishToken publish token of the user
+         * @param providers    (optional) providers to publish to, {@code null} for the providers of
+         *                     the message
+         */
+        public Target(String userToken, String publishToken, Collection<String> providers) {
+            this.userToken = userToken;
+            this.publishToken = publishToken;
+            this.providers = providers;
+        }
+
+        public String getUserToken() {
+            return userToken;
+        }
+
+        public String getPublishToken() {
+            return publishToken;
+        }
+
+        public Collection<String> getProviders() {
+            return providers;
+        }
+    }
+
+    /**
+     * receives results of publications as they complete. Methods may be called from several
+     * threads at the same time.
+     */
+    public interface Listener {
+        void onPublished(Target target, PostMessageResponse response);
+        void onFailed(Target target, RetrofitError error);
+    }
+
+    /** outcome of a batch */
+    public static class Summary {
+        private final int published;
+        private final int failed;
+        private final boolean cancelled;
+
+        Summary(int published, int failed, boolean cancelled) {
+            this.published = published;
+            this.failed = failed;
+            this.cancelled = cancelled;
+        }
+
+        /** @return number of targets the message has been published for */
+        public int getPublished() {
+            return published;
+        }
+
+        /** @return number of targets whose publication failed, including aborted ones */
+        public int getFailed() {
+            return failed;
+        }
+
+        /** @return {@code true} if the batch has been cancelled, some targets may have been skipped */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final ServiceManagerProvider services;
+
+    private final int window;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates publisher
+     *
+     * @param services services used for publishing
+     * @param window   maximum number of publications in flight at a time
+     *
+     * @throws IllegalArgumentException if {@code window} is not positive
+     */
+    public BulkPublisher(ServiceManagerProvider services, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.services = services;
+        this.window = window;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * publish message for every target
+     *
+     * @param message  message to publish, its providers are used for targets without their own
+     * @param targets  users to publish the message for
+     * @param listener listener of the results
+     *
+     * @return outcome of the batch
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting;
+     *                              publications in flight are cancelled
+     */
+    public Summary publish(PostMessageRequest message, Iterable<Target> targets, Listener listener)
+            throws InterruptedException {
+        return publish(message, targets.iterator(), new Cancellation(), listener);
+    }
+
+    /**
+     * publish message for targets pulled from a source one by one, as slots become free
+     *
+     * @param message      message to publish, its providers are used for targets without their
+     *                     own
+     * @param targets      source of targets, only used by the calling thread
+     * @param cancellation cancellation of the batch; once cancelled no more targets are pulled and
+     *                     publications in flight are aborted
+     * @param listener     listener of the results
+     *
+     * @return outcome of the batch
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting;
+     *                              publications in flight are cancelled
+     */
+    public Summary publish(
+            PostMessageRequest message,
+            Iterator<Target> targets,
+            Cancellation cancellation,
+            final Listener listener) throws InterruptedException {
+
+        final BodyEncoder encoder = new BodyEncoder(services.getGson(), message);
+        WindowedDispatch<Target, PostMessageResponse> dispatch = new WindowedDispatch<>(
+                services.getResilientCaller(),
+                ApiEndpoint.PUBLISH,
+                window,
+                new WindowedDispatch.Handler<Target, PostMessageResponse>() {
+                    @Override
+                    public ServiceCall<PostMessageResponse> createCall(final Target target) {
+                        final String authHeader = ServiceManagerProvider.buildPublishAuthHeader(
+                                target.getPublishToken());
+                        final TypedOutput body = encoder.encode(target.getProviders());
+                        return new ServiceCall<PostMessageResponse>() {
+                            @Override
+                            public void execute(Callback<PostMessageResponse> callback) {
+                                services.getPostService().post(
+                                        target.getUserToken(), authHeader, body, callback);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void onSuccess(Target target, PostMessageResponse response) {
+                        listener.onPublished(target, response);
+                    }
+
+                    @Override
+                    public void onFailure(Target target, RetrofitError error) {
+                        listener.onFailed(target, error);
+                    }
+                });
+        dispatch.run(targets, cancellation);
+
+        return new Summary(dispatch.getSucceeded(), dispatch.getFailed(), cancellation.isCancelled());
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * serializes the message once and builds request bodies for provider sets around it. Used by
+     * the calling thread only.
+     */
+    private static final class BodyEncoder {
+        private final Gson gson;
+        private final List<String> defaultProviders;
+
+        /** serialized parts of the message, shared by all bodies */
+        private final String parts;
+
+        /** bodies by provider set */
+        private final Map<List<String>, PublishBody> bodies = new HashMap<>();
+
+        BodyEncoder(Gson gson, PostMessageRequest message) {
+            this.gson = gson;
+            this.defaultProviders = message.request.message.providers != null
+                    ? new ArrayList<>(message.request.message.providers)
+                    : new ArrayList<String>();
+            this.parts = gson.toJson(
+                    message.request.message.parts,
+                    PostMessageRequest.Request.Message.Parts.class);
+        }
+
+        /**
+         * get request body publishing the message to providers
+         *
+         * @param providers providers, {@code null} for the providers of the message
+         *
+         * @return body, shared by all targets with the same providers
+         */
+        TypedOutput encode(Collection<String> providers) {
+            List<String> key = providers != null ? new ArrayList<>(providers) : defaultProviders;
+
+            PublishBody body = bodies.get(key);
+            if (body == null) {
+                body = new PublishBody(MIME_TYPE, build(key), key);
+                if (bodies.size() >= MAX_CACHED_BODIES) {
+                    bodies.clear();
+                }
+                bodies.put(key, body);
+            }
+            return body;
+        }
+
+        private byte[] build(List<String> providers) {
+            // same layout as PostMessageRequest, only the providers differ between bodies
+            String json = "{\"request\":{\"message\":{\"parts\":" + parts
+                    + ",\"providers\":" + gson.toJson(providers) + "}}}";
+            try {
+                return json.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // endregion
+}
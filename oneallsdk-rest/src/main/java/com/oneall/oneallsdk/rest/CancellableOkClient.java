@@ -0,0 +1,159 @@
+package com.oneall.oneallsdk.rest;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.BufferedSink;
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Retrofit client executing requests with OkHttp, same as {@link retrofit.client.OkClient}, which
+ * in addition registers every HTTP call with its {@link Cancellation}. The tag of the cancellation
+ * travels from the service call in {@link Cancellation#TAG_HEADER} and is never sent to the
+ * server.
+ */
+class CancellableOkClient implements Client {
+
+    // region Properties
+
+    private final OkHttpClient client;
+
+    // endregion
+
+    // region Lifecycle
+
+    CancellableOkClient(OkHttpClient client) {
+        if (client == null) {
+            throw new NullPointerException("client == null");
+        }
+        this.client = client;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        com.squareup.okhttp.Request okRequest = createRequest(request);
+        Call call = client.newCall(okRequest);
+
+        Object tag = okRequest.tag();
+        Cancellation cancellation = tag instanceof String ? Cancellation.forTag((String) tag) : null;
+        if (cancellation == null) {
+            return parseResponse(call.execute());
+        }
+
+        cancellation.register(call);
+        try {
+            return parseResponse(call.execute());
+        } finally {
+            cancellation.unregister(call);
+        }
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static com.squareup.okhttp.Request createRequest(Request request) {
+        com.squareup.okhttp.Request.Builder builder = new com.squareup.okhttp.Request.Builder()
+                .url(request.getUrl())
+                .method(request.getMethod(), createRequestBody(request.getBody()));
+
+        for (Header header : request.getHeaders()) {
+            if (Cancellation.TAG_HEADER.equals(header.getName())) {
+                builder.tag(header.getValue());
+                continue;
+            }
+            String value = header.getValue();
+            builder.addHeader(header.getName(), value != null ? value : "");
+        }
+        return builder.build();
+    }
+
+    private static Response parseResponse(com.squareup.okhttp.Response response)
+            throws IOException {
+        return new Response(
+                response.request().urlString(),
+                response.code(),
+                response.message(),
+                createHeaders(response.headers()),
+                createResponseBody(response.body()));
+    }
+
+    private static RequestBody createRequestBody(final TypedOutput body) {
+        if (body == null) {
+            return null;
+        }
+        final MediaType mediaType = MediaType.parse(body.mimeType());
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                body.writeTo(sink.outputStream());
+            }
+
+            @Override
+            public long contentLength() {
+                return body.length();
+            }
+        };
+    }
+
+    private static TypedInput createResponseBody(final ResponseBody body) throws IOException {
+        if (body.contentLength() == 0) {
+            return null;
+        }
+        return new TypedInput() {
+            @Override
+            public String mimeType() {
+                MediaType mediaType = body.contentType();
+                return mediaType != null ? mediaType.toString() : null;
+            }
+
+            @Override
+            public long length() {
+                try {
+                    return body.contentLength();
+                } catch (IOException e) {
+                    return -1;
+                }
+            }
+
+            @Override
+            public InputStream in() throws IOException {
+                return body.byteStream();
+            }
+        };
+    }
+
+    private static List<Header> createHeaders(Headers headers) {
+        int size = headers.size();
+        List<Header> headerList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            headerList.add(new Header(headers.name(i), headers.value(i)));
+        }
+        return headerList;
+    }
+
+    // endregion
+}
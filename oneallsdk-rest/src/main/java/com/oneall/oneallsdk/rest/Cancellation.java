@@ -0,0 +1,256 @@
+package com.oneall.oneallsdk.rest;
+
+import com.squareup.okhttp.Call;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+
+/**
+ * Cancellation of all API calls made on behalf of a single operation. Calls started through
+ * {@link #execute(ServiceCall, Callback)} are tagged with the cancellation and tracked by
+ * {@link CancellableOkClient}, so that {@link #cancel()} aborts the ones in flight, and
+ * {@link ResilientCaller} does not start or retry calls of a cancelled operation.
+ *
+ * All methods are thread safe.
+ */
+public final class Cancellation {
+
+    // region Helper classes
+
+    /** failure reported to calls of a cancelled operation */
+    public static class CancelledException extends IOException {
+        public CancelledException(String message) {
+            super(message);
+        }
+    }
+
+    // endregion
+
+    // region Constants
+
+    /** cancellation which is never cancelled */
+    public static final Cancellation NONE = new Cancellation(null);
+
+    /**
+     * request header carrying the tag of the cancellation from the service call to
+     * {@link CancellableOkClient}, which removes it before the request is sent
+     */
+    static final String TAG_HEADER = "X-OneAll-Cancellation";
+
+    // endregion
+
+    // region Properties
+
+    private static final AtomicLong counter = new AtomicLong();
+
+    /** cancellation of service calls made by the current thread */
+    private static final ThreadLocal<Cancellation> current = new ThreadLocal<>();
+
+    /** cancellations by tag, entries go away with their cancellation */
+    private static final Map<String, WeakReference<Cancellation>> byTag = new WeakHashMap<>();
+
+    /** tag of HTTP requests of the operation, {@code null} for {@link #NONE} */
+    private final String tag;
+
+    /** HTTP calls of the operation in flight */
+    private final Set<Call> calls = new HashSet<>();
+
+    /** listeners run on cancellation, guarded by {@link #calls} */
+    private final List<Runnable> listeners = new ArrayList<>(1);
+
+    private volatile boolean cancelled;
+
+    // endregion
+
+    // region Lifecycle
+
+    public Cancellation() {
+        this("oneall-operation-" + counter.incrementAndGet());
+
+        synchronized (byTag) {
+            byTag.put(tag, new WeakReference<>(this));
+        }
+    }
+
+    private Cancellation(String tag) {
+        this.tag = tag;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * cancel the operation: abort its calls in flight and prevent further ones. Has no effect on
+     * {@link #NONE}.
+     */
+    public void cancel() {
+        if (tag == null) {
+            return;
+        }
+
+        Call[] inFlight;
+        Runnable[] notified;
+        synchronized (calls) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            inFlight = calls.toArray(new Call[calls.size()]);
+            calls.clear();
+            notified = listeners.toArray(new Runnable[listeners.size()]);
+            listeners.clear();
+        }
+        for (Call call : inFlight) {
+            call.cancel();
+        }
+        for (Runnable listener : notified) {
+            listener.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * start service call tagged with this cancellation. Retrofit builds the request headers on the
+     * calling thread, so the tag has to be set for the duration of the call only.
+     *
+     * @param call     the call
+     * @param callback callback receiving the result of the call
+     * @param <T>      type of the response
+     */
+    public <T> void execute(ServiceCall<T> call, Callback<T> callback) {
+        if (tag == null) {
+            call.execute(callback);
+            return;
+        }
+
+        Cancellation previous = current.get();
+        current.set(this);
+        try {
+            call.execute(callback);
+        } finally {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * create failure reported to calls which are not made because the operation was cancelled
+     *
+     * @param endpoint endpoint of the call
+     *
+     * @return network error caused by {@link CancelledException}
+     */
+    RetrofitError newError(ApiEndpoint endpoint) {
+        return RetrofitError.networkError(
+                endpoint.name(),
+                new CancelledException(String.format("Call of %s cancelled", endpoint.name())));
+    }
+
+    /**
+     * track HTTP call of the operation until {@link #unregister(Call)}. A call registered after
+     * the operation has been cancelled is cancelled right away, so that it fails once executed.
+     *
+     * @param call HTTP call not executed yet
+     */
+    void register(Call call) {
+        synchronized (calls) {
+            if (!cancelled) {
+                calls.add(call);
+                return;
+            }
+        }
+        call.cancel();
+    }
+
+    /**
+     * run listener once the operation is cancelled, on the thread cancelling it. Has no effect on
+     * {@link #NONE}.
+     *
+     * @param listener listener, run right away if the operation is already cancelled
+     */
+    void addListener(Runnable listener) {
+        if (tag == null) {
+            return;
+        }
+        synchronized (calls) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * remove listener which is not needed anymore
+     *
+     * @param listener listener added by {@link #addListener(Runnable)}
+     */
+    void removeListener(Runnable listener) {
+        synchronized (calls) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * stop tracking HTTP call which has completed
+     *
+     * @param call HTTP call
+     */
+    void unregister(Call call) {
+        synchronized (calls) {
+            calls.remove(call);
+        }
+    }
+
+    /**
+     * find cancellation by the tag of its HTTP requests
+     *
+     * @param tag tag from {@link #TAG_HEADER}
+     *
+     * @return cancellation, {@code null} if it does not exist anymore
+     */
+    static Cancellation forTag(String tag) {
+        synchronized (byTag) {
+            WeakReference<Cancellation> reference = byTag.get(tag);
+            return reference != null ? reference.get() : null;
+        }
+    }
+
+    /**
+     * get cancellation of service calls made by the current thread, e.g. to make them later on
+     * another thread
+     *
+     * @return cancellation, {@link #NONE} if the calls are not made on behalf of a cancellable
+     * operation
+     */
+    static Cancellation current() {
+        Cancellation cancellation = current.get();
+        return cancellation != null ? cancellation : NONE;
+    }
+
+    /**
+     * get tag of HTTP requests made by service calls of the current thread
+     *
+     * @return tag, {@code null} if the calls are not made on behalf of a cancellable operation
+     */
+    static String currentTag() {
+        Cancellation cancellation = current.get();
+        return cancellation != null ? cancellation.tag : null;
+    }
+
+    // endregion
+}
@@ -0,0 +1,128 @@
+package com.oneall.oneallsdk.rest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker of a single API endpoint. After a number of consecutive transient failures the
+ * breaker opens and calls are rejected right away, without reaching the network. Once the open
+ * period is over a single trial call is let through: its success closes the breaker, its failure
+ * opens it again.
+ *
+ * All methods are thread safe.
+ */
+public class CircuitBreaker {
+
+    // region Helper classes
+
+    public enum State {
+        /** calls are allowed */
+        CLOSED,
+
+        /** calls are rejected */
+        OPEN,
+
+        /** a trial call is in flight, other calls are rejected */
+        HALF_OPEN
+    }
+
+    /** failure reported to calls rejected by an open breaker */
+    public static class OpenException extends IOException {
+        public OpenException(String message) {
+            super(message);
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final int failureThreshold;
+
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates closed circuit breaker
+     *
+     * @param failureThreshold number of consecutive failures opening the breaker
+     * @param openDuration     time the breaker stays open before a trial call, in milliseconds
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * check whether a call may go ahead. Must be followed by {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #onAborted()} if it returns {@code true}
+     *
+     * @return {@code true} if the call is allowed, {@code false} if it should fail right away
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            default:
+                // let a trial call through once the breaker has been open long enough; a trial
+                // which never reported back does not block the endpoint for more than that either
+                long now = System.nanoTime();
+                if (now - openedAt >= openDurationNanos) {
+                    state = State.HALF_OPEN;
+                    openedAt = now;
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * report call which reached the server and was not rejected due to its health
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * report call which failed due to a transient condition (network, server error)
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * report call which was given up before it could tell anything about the endpoint, e.g. it was
+     * cancelled or failed on our side. The failure count and state are kept; a trial call of a
+     * half open breaker gives its slot back, so that the next call is a trial again.
+     */
+    public synchronized void onAborted() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = System.nanoTime() - openDurationNanos;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // endregion
+}
@@ -0,0 +1,153 @@
+package com.oneall.oneallsdk.rest;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+
+/**
+ * Point in time by which an operation has to complete. A deadline is created once at the start of
+ * an operation and passed along to every step of it, so that each step gets only the time left,
+ * not a fresh timeout of its own.
+ *
+ * Deadlines do not change, except those of calls shared by several operations, see
+ * {@link #extendable(Deadline)}.
+ */
+public final class Deadline {
+
+    // region Helper classes
+
+    /** failure reported to calls which could not be made before their deadline */
+    public static class ExceededException extends InterruptedIOException {
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+
+    // endregion
+
+    // region Constants
+
+    /** deadline which never expires */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    // endregion
+
+    // region Properties
+
+    /** expiration time on the {@link System#nanoTime()} clock, {@code Long.MAX_VALUE} for none */
+    private volatile long expiresAtNanos;
+
+    /** whether the deadline may be extended, see {@link #extendTo(Deadline)} */
+    private final boolean extendable;
+
+    // endregion
+
+    // region Lifecycle
+
+    private Deadline(long expiresAtNanos) {
+        this(expiresAtNanos, false);
+    }
+
+    private Deadline(long expiresAtNanos, boolean extendable) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.extendable = extendable;
+    }
+
+    /**
+     * creates deadline expiring after specified time
+     *
+     * @param timeout time from now, in milliseconds; {@code 0} or less for no deadline
+     *
+     * @return new deadline, or {@link #NONE}
+     */
+    public static Deadline after(long timeout) {
+        if (timeout <= 0) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+    }
+
+    /**
+     * creates deadline of a call shared by several operations, which is extended as operations
+     * join the call, see {@link SingleFlight}
+     *
+     * @param initial deadline of the operation starting the call
+     *
+     * @return new deadline, expiring with {@code initial} until extended
+     */
+    static Deadline extendable(Deadline initial) {
+        return new Deadline(initial.expiresAtNanos, true);
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * check whether the deadline can expire at all
+     *
+     * @return {@code false} for {@link #NONE}
+     */
+    public boolean isBounded() {
+        return expiresAtNanos != Long.MAX_VALUE;
+    }
+
+    /**
+     * get time left until the deadline
+     *
+     * @return time in milliseconds, {@code 0} if the deadline has expired and
+     * {@code Long.MAX_VALUE} if there is no deadline
+     */
+    public long remaining() {
+        long expiresAt = expiresAtNanos;
+        if (expiresAt == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long left = expiresAt - System.nanoTime();
+        return left > 0 ? TimeUnit.NANOSECONDS.toMillis(left) : 0;
+    }
+
+    public boolean isExpired() {
+        long expiresAt = expiresAtNanos;
+        return expiresAt != Long.MAX_VALUE && expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * move the deadline to a later one, if it is later
+     *
+     * @param other deadline of an operation joining the call
+     *
+     * @throws IllegalStateException if the deadline has not been created by
+     * {@link #extendable(Deadline)}
+     */
+    synchronized void extendTo(Deadline other) {
+        if (!extendable) {
+            throw new IllegalStateException("Deadline cannot be extended");
+        }
+        long expiresAt = other.expiresAtNanos;
+        if (expiresAt == Long.MAX_VALUE
+                || (expiresAtNanos != Long.MAX_VALUE && expiresAt - expiresAtNanos > 0)) {
+            expiresAtNanos = expiresAt;
+        }
+    }
+
+    /**
+     * check whether a call failed because it ran out of time, either its deadline or a timeout of
+     * the HTTP client
+     *
+     * @param error failure of a call
+     *
+     * @return {@code true} if the failure is a timeout
+     */
+    public static boolean isTimeout(RetrofitError error) {
+        if (error.getKind() != RetrofitError.Kind.NETWORK) {
+            return false;
+        }
+        // java.net.SocketTimeoutException is an InterruptedIOException as well
+        Throwable cause = error.getCause();
+        return cause instanceof InterruptedIOException;
+    }
+
+    // endregion
+}
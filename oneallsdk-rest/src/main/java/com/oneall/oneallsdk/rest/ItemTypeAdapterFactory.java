@@ -0,0 +1,176 @@
+package com.oneall.oneallsdk.rest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Unwraps OneAll API responses: the object of interest is found under {@code response.result}
+ * (or {@code response.request} if there is no result) and is read directly from the stream by the
+ * adapter of the requested type. Members preceding it are buffered only for the case that the
+ * expected envelope is not there, in which case the whole object is read as is.
+ *
+ * Only the outermost object of a document is unwrapped, or the elements of a document which is
+ * an array (of arrays); objects nested in an object are passed straight to their adapters.
+ */
+public class ItemTypeAdapterFactory implements TypeAdapterFactory {
+
+    // region Constants
+
+    private static final String MEMBER_RESPONSE = "response";
+    private static final String MEMBER_RESULT = "result";
+    private static final String MEMBER_REQUEST = "request";
+
+    // endregion
+
+    // region Helper classes
+
+    /** nesting of the reads in progress on a thread */
+    private static final class Nesting {
+        /** number of values being read */
+        int depth;
+
+        /**
+         * number of arrays being read from the document down, up to the first value which is not
+         * an array
+         */
+        int arrays;
+
+        /** @return whether the value about to be read is the document or an element of it */
+        boolean isTopLevel() {
+            return depth == arrays;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private static final ThreadLocal<Nesting> NESTING = new ThreadLocal<Nesting>() {
+        @Override
+        protected Nesting initialValue() {
+            return new Nesting();
+        }
+    };
+
+    // endregion
+
+    // region TypeAdapterFactory
+
+    public <T> TypeAdapter<T> create(Gson gson, final TypeToken<T> type) {
+
+        final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        final TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+
+        return new TypeAdapter<T>() {
+
+            public void write(JsonWriter out, T value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            public T read(JsonReader in) throws IOException {
+                Nesting nesting = NESTING.get();
+                boolean topLevel = nesting.isTopLevel();
+                JsonToken token = in.peek();
+                boolean unwrap = topLevel && token == JsonToken.BEGIN_OBJECT;
+                boolean array = topLevel && token == JsonToken.BEGIN_ARRAY;
+
+                nesting.depth++;
+                if (array) {
+                    nesting.arrays++;
+                }
+                try {
+                    return unwrap ? readDocument(in) : delegate.read(in);
+                } finally {
+                    nesting.depth--;
+                    if (array) {
+                        nesting.arrays--;
+                    }
+                }
+            }
+
+            /** read top level object, unwrapping its {@code response} member */
+            private T readDocument(JsonReader in) throws IOException {
+                JsonObject buffered = null;
+                T value = null;
+                boolean found = false;
+
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (found) {
+                        in.skipValue();
+                    } else if (MEMBER_RESPONSE.equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                        value = readResponse(in);
+                        found = true;
+                    } else {
+                        buffered = buffer(buffered, name, elementAdapter.read(in));
+                    }
+                }
+                in.endObject();
+
+                if (found) {
+                    return value;
+                }
+                return delegate.fromJsonTree(buffered != null ? buffered : new JsonObject());
+            }
+
+            /**
+             * read {@code response} object, passing its {@code result} member to the delegate
+             * adapter; falls back to {@code request} member and then to the whole object
+             */
+            private T readResponse(JsonReader in) throws IOException {
+                JsonObject buffered = null;
+                T value = null;
+                boolean found = false;
+
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (found) {
+                        in.skipValue();
+                    } else if (MEMBER_RESULT.equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                        value = delegate.read(in);
+                        found = true;
+                    } else {
+                        buffered = buffer(buffered, name, elementAdapter.read(in));
+                    }
+                }
+                in.endObject();
+
+                if (found) {
+                    return value;
+                }
+                if (buffered == null) {
+                    return delegate.fromJsonTree(new JsonObject());
+                }
+
+                JsonElement request = buffered.get(MEMBER_REQUEST);
+                if (request != null && request.isJsonObject()) {
+                    return delegate.fromJsonTree(request);
+                }
+                return delegate.fromJsonTree(buffered);
+            }
+        }.nullSafe();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static JsonObject buffer(JsonObject object, String name, JsonElement value) {
+        JsonObject rv = object != null ? object : new JsonObject();
+        rv.add(name, value);
+        return rv;
+    }
+
+    // endregion
+}
@@ -1,20 +1,29 @@
-package com.oneall.oneallsdk;
+package com.oneall.oneallsdk.rest;
 
 import java.util.Collection;
 
 /**
  * Class wrapping response for message posting API request. Mirrors JSON response described here:
  * {@link <a href="https://docs.oneall.com/api/resources/social-sharing/publish-new-message/">https://docs.oneall.com/api/resources/social-sharing/publish-new-message/</a>}
+ *
+ * When providers which have throttled the message are published to again, the result merges all
+ * attempts: it holds the final publication of every provider.
  */
 public class MessagePostResult {
     /** Class wrapping result of posting message to wall for single provider. */
-    public class MessagePostProviderResult {
+    public static class MessagePostProviderResult {
         public Boolean success;
         public String flag;
         public Integer code;
         public String message;
         public String provider;
 
+        /** classification of the final publication status */
+        public PublicationStatus status;
+
+        /** number of times the message has been sent to the provider */
+        public Integer attempts;
+
         public MessagePostProviderResult(
                 Boolean success,
                 String flag,
@@ -27,6 +36,19 @@ public class MessagePostResult {
             this.message = message;
             this.provider = provider;
         }
+
+        public MessagePostProviderResult(
+                Boolean success,
+                String flag,
+                Integer code,
+                String message,
+                String provider,
+                PublicationStatus status,
+                Integer attempts) {
+            this(success, flag, code, message, provider);
+            this.status = status;
+            this.attempts = attempts;
+        }
     }
 
     public Object wholeResponse;
@@ -41,4 +63,21 @@ public class MessagePostResult {
         this.messageToken = messageToken;
         this.providerResults = providerResults;
     }
+
+    /**
+     * check whether the message has been published to every provider
+     *
+     * @return {@code true} if all provider results are successful
+     */
+    public boolean isSuccessful() {
+        if (providerResults == null || providerResults.isEmpty()) {
+            return false;
+        }
+        for (MessagePostProviderResult result : providerResults) {
+            if (!Boolean.TRUE.equals(result.success)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
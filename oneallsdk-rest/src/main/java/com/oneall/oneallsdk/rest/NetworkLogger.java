@@ -0,0 +1,243 @@
+package com.oneall.oneallsdk.rest;
+
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import retrofit.RestAdapter;
+
+/**
+ * HTTP interceptor logging OneAll API traffic. The amount of information logged is controlled by
+ * {@link Level}; bodies are logged up to a size limit and values of sensitive headers (such as
+ * {@code Authorization}) are never written to the log. Only a sample of the requests can be logged
+ * to limit the overhead on busy clients.
+ *
+ * The logger either uses the level, sample rate and body size limit it is created with, or reads
+ * them from {@link Settings} on every request, so that logging can be turned on and off while the
+ * application runs, see {@link ServiceManagerProvider}. At {@link Level#NONE} requests are not
+ * inspected at all.
+ */
+public class NetworkLogger implements Interceptor {
+
+    // region Helper classes and interfaces
+
+    /** amount of information logged per request */
+    public enum Level {
+        /** nothing is logged */
+        NONE,
+
+        /** request method, URL, response code and timing */
+        BASIC,
+
+        /** {@link #BASIC} plus request and response headers */
+        HEADERS,
+
+        /** {@link #HEADERS} plus request and response bodies, up to the size limit */
+        BODY
+    }
+
+    // endregion
+
+    // region Constants
+
+    /** headers which values are replaced in the log by default */
+    public static final String[] DEFAULT_REDACTED_HEADERS = { "Authorization" };
+
+    private static final String REDACTED = "<redacted>";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // endregion
+
+    // region Properties
+
+    /** settings read on every request, {@code null} if the values below are used */
+    private final Settings settings;
+
+    private final Level level;
+
+    private final double sampleRate;
+
+    private final long maxBodySize;
+
+    /** lower case names of redacted headers */
+    private final Set<String> redactedHeaders;
+
+    private final RestAdapter.Log log;
+
+    private final Random random = new Random();
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates new logger
+     *
+     * @param level           amount of information to log
+     * @param sampleRate      share of requests to log, between {@code 0} and {@code 1}
+     * @param maxBodySize     maximum number of body bytes logged per request and response
+     * @param redactedHeaders names of headers which values should not be logged
+     * @param log             destination of log messages
+     */
+    public NetworkLogger(
+            Level level,
+            double sampleRate,
+            long maxBodySize,
+            Collection<String> redactedHeaders,
+            RestAdapter.Log log) {
+        this(null, level, sampleRate, maxBodySize, redactedHeaders, log);
+    }
+
+    /**
+     * creates new logger following the network log settings, see
+     * {@link Settings#getNetworkLogLevel()}, {@link Settings#getNetworkLogSampleRate()} and
+     * {@link Settings#getNetworkLogMaxBodySize()}. The settings are read on every request.
+     *
+     * @param settings        settings to follow
+     * @param redactedHeaders names of headers which values should not be logged
+     * @param log             destination of log messages
+     */
+    public NetworkLogger(
+            Settings settings, Collection<String> redactedHeaders, RestAdapter.Log log) {
+        this(settings, Level.NONE, 0, 0, redactedHeaders, log);
+    }
+
+    private NetworkLogger(
+            Settings settings,
+            Level level,
+            double sampleRate,
+            long maxBodySize,
+            Collection<String> redactedHeaders,
+            RestAdapter.Log log) {
+        this.settings = settings;
+        this.level = level;
+        this.sampleRate = sampleRate;
+        this.maxBodySize = maxBodySize;
+        this.log = log;
+        this.redactedHeaders = new HashSet<>();
+        for (String name : redactedHeaders) {
+            this.redactedHeaders.add(name.toLowerCase(Locale.US));
+        }
+    }
+
+    // endregion
+
+    // region Interceptor
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Level level = settings != null ? settings.getNetworkLogLevel() : this.level;
+        double sampleRate =
+                settings != null ? settings.getNetworkLogSampleRate() : this.sampleRate;
+        if (level == null || level == Level.NONE || !isSampled(sampleRate)) {
+            return chain.proceed(request);
+        }
+        long maxBodySize =
+                settings != null ? settings.getNetworkLogMaxBodySize() : this.maxBodySize;
+
+        logRequest(request, level, maxBodySize);
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            log.log(String.format("<-- HTTP FAILED %s: %s", request.urlString(), e.getMessage()));
+            throw e;
+        }
+        long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logResponse(response, tookMs, level, maxBodySize);
+        return response;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private boolean isSampled(double sampleRate) {
+        return sampleRate >= 1.0 || (sampleRate > 0 && random.nextDouble() < sampleRate);
+    }
+
+    private void logRequest(Request request, Level level, long maxBodySize) throws IOException {
+        RequestBody body = request.body();
+        long contentLength = body != null ? body.contentLength() : 0;
+
+        log.log(String.format(
+                "--> %s %s (%d-byte body)", request.method(), request.urlString(), contentLength));
+
+        if (level.compareTo(Level.HEADERS) >= 0) {
+            logHeaders(request.headers());
+        }
+
+        if (level == Level.BODY && body != null) {
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            log.log(readBody(buffer, body.contentType(), contentLength, maxBodySize));
+        }
+    }
+
+    private void logResponse(Response response, long tookMs, Level level, long maxBodySize)
+            throws IOException {
+        ResponseBody body = response.body();
+
+        log.log(String.format(
+                "<-- %d %s (%d ms)", response.code(), response.request().urlString(), tookMs));
+
+        if (level.compareTo(Level.HEADERS) >= 0) {
+            logHeaders(response.headers());
+        }
+
+        if (level == Level.BODY && body != null) {
+            // peek into the body without consuming it, up to the size limit
+            BufferedSource source = body.source();
+            source.request(maxBodySize);
+            log.log(readBody(source.buffer().clone(), body.contentType(), body.contentLength(),
+                    maxBodySize));
+        }
+    }
+
+    private void logHeaders(Headers headers) {
+        for (int i = 0, count = headers.size(); i < count; i++) {
+            String name = headers.name(i);
+            String value = redactedHeaders.contains(name.toLowerCase(Locale.US))
+                    ? REDACTED
+                    : headers.value(i);
+            log.log(String.format("%s: %s", name, value));
+        }
+    }
+
+    private static String readBody(
+            Buffer buffer, MediaType contentType, long contentLength, long maxBodySize)
+            throws IOException {
+
+        Charset charset = contentType != null ? contentType.charset(UTF8) : UTF8;
+        if (buffer.size() <= maxBodySize) {
+            return buffer.readString(charset);
+        }
+
+        String head = buffer.readString(maxBodySize, charset);
+        return contentLength >= 0
+                ? String.format("%s... (%d-byte body truncated)", head, contentLength)
+                : String.format("%s... (body truncated)", head);
+    }
+
+    // endregion
+}
@@ -0,0 +1,168 @@
+package com.oneall.oneallsdk.rest;
+
+import com.oneall.oneallsdk.rest.models.NativeLoginRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+import com.oneall.oneallsdk.rest.models.ResponseConnection;
+import com.oneall.oneallsdk.rest.models.User;
+
+import java.util.Collection;
+
+import retrofit.RetrofitError;
+
+/**
+ * Client of OneAll API usable without Android, e.g. on a server or in load tests. Every call
+ * blocks the calling thread; a client can be used by many threads at the same time.
+ *
+ * Each client has its own HTTP client and connection pool, see
+ * {@link ServiceManagerProvider#create(String)}; timeouts are read from {@link Settings} when the
+ * client is created, network logging settings on every request. Failures are reported with
+ * {@link RetrofitError}, which tells network failures apart from HTTP errors.
+ */
+public class OneAllClient {
+
+    // region Properties
+
+    private final ServiceManagerProvider services;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates client of OneAll application
+     *
+     * @param subdomain subdomain of OneAll application
+     *
+     * @throws IllegalArgumentException if {@code subdomain} is null or empty
+     */
+    public OneAllClient(String subdomain) {
+        this.services = ServiceManagerProvider.create(subdomain);
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * get services of the client, e.g. for asynchronous calls through
+     * {@link ServiceManagerProvider#getResilientCaller()}
+     *
+     * @return services
+     */
+    public ServiceManagerProvider getServices() {
+        return services;
+    }
+
+    /**
+     * read details of connection made by web login
+     *
+     * @param nonce           nonce the login has been started with
+     * @param connectionToken token of the connection
+     *
+     * @return connection and the user logged in
+     *
+     * @throws RetrofitError on network or API failure
+     */
+    public ResponseConnection getConnection(String nonce, String connectionToken) {
+        return services.getConnectionService().info(
+                ServiceManagerProvider.buildAuthHeader(nonce), connectionToken);
+    }
+
+    /**
+     * read details of many connections, with a bounded number of lookups in flight, see
+     * {@link BulkConnectionResolver}
+     *
+     * @param nonce          nonce of the logins the connections belong to
+     * @param tokens         connection tokens
+     * @param maxConcurrency maximum number of lookups in flight at a time
+     * @param listener       listener receiving every result as soon as it is available
+     *
+     * @return outcome of the batch
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public BulkConnectionResolver.Summary getConnections(
+            String nonce,
+            Iterable<String> tokens,
+            int maxConcurrency,
+            BulkConnectionResolver.Listener listener) throws InterruptedException {
+        return new BulkConnectionResolver(services, maxConcurrency).resolve(nonce, tokens, listener);
+    }
+
+    /**
+     * import user authenticated natively with a provider, e.g. with Facebook or Twitter SDK
+     *
+     * @param provider    key of the provider
+     * @param accessToken access token received during native authentication
+     * @param secret      (optional) secret received during native authentication
+     *
+     * @return connection and the user logged in
+     *
+     * @throws RetrofitError on network or API failure
+     */
+    public ResponseConnection importUser(String provider, String accessToken, String secret) {
+        return services.getUserService().info(
+                new NativeLoginRequest(provider, accessToken, secret));
+    }
+
+    /**
+     * publish message on behalf of user
+     *
+     * @param user      user logged in, with publish token
+     * @param providers providers to publish to
+     * @param text      body of the message
+     * @param linkUrl   (optional) URL to attach to the message
+     *
+     * @return publication result of every provider
+     *
+     * @throws RetrofitError on network or API failure
+     */
+    public PostMessageResponse publish(
+            User user, Collection<String> providers, String text, String linkUrl) {
+        return publish(
+                user.userToken,
+                user.publishToken.key,
+                new PostMessageRequest(providers, text, null, null, linkUrl, null, null, null, true));
+    }
+
+    /**
+     * publish message on behalf of user
+     *
+     * @param userToken    token of the user
+     * @param publishToken publish token of the user
+     * @param request      message to publish
+     *
+     * @return publication result of every provider
+     *
+     * @throws RetrofitError on network or API failure
+     */
+    public PostMessageResponse publish(
+            String userToken, String publishToken, PostMessageRequest request) {
+        return services.getPostService().post(
+                userToken, ServiceManagerProvider.buildPublishAuthHeader(publishToken), request);
+    }
+
+    /**
+     * publish the same message on behalf of many users, with a bounded number of publications in
+     * flight, see {@link BulkPublisher}
+     *
+     * @param message  message to publish, serialized once for the whole batch
+     * @param targets  users to publish the message for
+     * @param window   maximum number of publications in flight at a time
+     * @param listener listener receiving every result as soon as it is available
+     *
+     * @return outcome of the batch
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public BulkPublisher.Summary publish(
+            PostMessageRequest message,
+            Iterable<BulkPublisher.Target> targets,
+            int window,
+            BulkPublisher.Listener listener) throws InterruptedException {
+        return new BulkPublisher(services, window).publish(message, targets, listener);
+    }
+
+    // endregion
+}
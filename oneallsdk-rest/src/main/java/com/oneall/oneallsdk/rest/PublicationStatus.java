@@ -0,0 +1,43 @@
+package com.oneall.oneallsdk.rest;
+
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+
+/**
+ * Classification of the status of a message publication to a single provider, as reported in
+ * {@link PostMessageResponse.Data.Message#publications}.
+ */
+public enum PublicationStatus {
+
+    /** the message has been published */
+    SUCCESS,
+
+    /** the provider has failed in a way which may go away, e.g. throttling or a server error */
+    TRANSIENT_FAILURE,
+
+    /** the provider has rejected the message, e.g. for an expired token or a duplicate message */
+    PERMANENT_FAILURE;
+
+    private static final String FLAG_SUCCESS = "success";
+
+    /**
+     * classify publication status. Publications without a status are considered permanently
+     * failed: the message may have been published, so it must not be sent again.
+     *
+     * @param publication publication reported by the API
+     *
+     * @return classification of the status
+     */
+    public static PublicationStatus of(PostMessageResponse.Data.Message.Publication publication) {
+        PostMessageResponse.Data.Message.Publication.Status status = publication.status;
+        if (status == null) {
+            return PERMANENT_FAILURE;
+        }
+        if (FLAG_SUCCESS.equals(status.flag)) {
+            return SUCCESS;
+        }
+        if (status.code != null && RetryPolicy.isTransientStatus(status.code)) {
+            return TRANSIENT_FAILURE;
+        }
+        return PERMANENT_FAILURE;
+    }
+}
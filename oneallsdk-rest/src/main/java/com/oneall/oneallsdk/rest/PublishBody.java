@@ -0,0 +1,23 @@
+package com.oneall.oneallsdk.rest;
+
+import java.util.List;
+
+import retrofit.mime.TypedByteArray;
+
+/**
+ * Serialized body of a publication which still tells the providers it is published to, so that
+ * the publication can be rate limited, see {@link RateLimitedPostService}.
+ */
+final class PublishBody extends TypedByteArray {
+
+    private final List<String> providers;
+
+    PublishBody(String mimeType, byte[] bytes, List<String> providers) {
+        super(mimeType, bytes);
+        this.providers = providers;
+    }
+
+    List<String> getProviders() {
+        return providers;
+    }
+}
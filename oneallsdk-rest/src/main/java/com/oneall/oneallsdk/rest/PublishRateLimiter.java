@@ -0,0 +1,499 @@
+package com.oneall.oneallsdk.rest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side pacing of publications, so that bursts are smoothed out instead of being throttled
+ * by the providers and failing. Every publication takes a permit from the token bucket of its user
+ * and from the bucket of every provider it is published to, see
+ * {@link Settings#getUserPublishRateLimit()} and
+ * {@link Settings#getProviderPublishRateLimit()}.
+ *
+ * Publications which cannot take their permits wait in a queue per user; users are served in
+ * turn, one publication each, so that a user publishing in bulk does not hold back the others.
+ * Publications of a user are started in order.
+ *
+ * Throttling reported by the server pauses the buckets concerned: a {@code Retry-After} hint for
+ * the user, a throttled publication for its provider. Paused buckets are empty when they resume,
+ * so the publications waiting for them are paced by their rate limit.
+ *
+ * All methods are thread safe. Waiting publications are started on a thread of the limiter, or
+ * on a thread calling the limiter when their permits become available.
+ */
+public class PublishRateLimiter {
+
+    // region Constants
+
+    /** pause of a provider which has throttled a publication without telling for how long */
+    static final long DEFAULT_THROTTLE_DELAY = 1000L;
+
+    /** number of buckets beyond which idle buckets are dropped */
+    private static final int MAX_BUCKETS = 1024;
+
+    private static final String USER_KEY_PREFIX = "user:";
+    private static final String PROVIDER_KEY_PREFIX = "provider:";
+
+    // endregion
+
+    // region Helper classes
+
+    /** token bucket of a user or provider */
+    private static final class Bucket {
+        private RateLimit limit;
+        private double tokens;
+        private long updatedAt;
+        private long pausedUntil;
+
+        Bucket(RateLimit limit, long now) {
+            this.limit = limit;
+            this.tokens = limit.isUnlimited() ? 0 : limit.getBurst();
+            this.updatedAt = now;
+        }
+
+        /** @return nanoseconds until a permit is available, {@code 0} if it is now */
+        long delay(long now) {
+            if (pausedUntil - now > 0) {
+                return pausedUntil - now;
+            }
+            if (limit.isUnlimited()) {
+                return 0;
+            }
+            refill(now);
+            if (tokens >= 1.0) {
+                return 0;
+            }
+            return (long) Math.ceil((1.0 - tokens) / limit.getPermitsPerSecond() * 1e9);
+        }
+
+        void take() {
+            if (!limit.isUnlimited()) {
+                tokens -= 1.0;
+            }
+        }
+
+        void pause(long now, long nanos) {
+            if (now + nanos - pausedUntil > 0) {
+                pausedUntil = now + nanos;
+            }
+            // resume empty, as the allowance has evidently been used up
+            tokens = 0;
+            updatedAt = pausedUntil;
+        }
+
+        /** switch to another limit, keeping the permits already taken */
+        void setLimit(RateLimit limit, long now) {
+            if (this.limit.isUnlimited()) {
+                // an unlimited bucket counts no tokens, it is as full as a new one unless paused
+                tokens = pausedUntil - now > 0 ? 0 : Double.POSITIVE_INFINITY;
+                updatedAt = Math.max(updatedAt, now);
+            } else {
+                refill(now);
+            }
+            this.limit = limit;
+            tokens = limit.isUnlimited() ? 0 : Math.min(tokens, limit.getBurst());
+        }
+
+        boolean isIdle(long now) {
+            return pausedUntil - now <= 0
+                    && (limit.isUnlimited() || tokens + elapsedTokens(now) >= limit.getBurst());
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(limit.getBurst(), tokens + elapsedTokens(now));
+            updatedAt = Math.max(updatedAt, now);
+        }
+
+        private double elapsedTokens(long now) {
+            long elapsed = now - updatedAt;
+            return elapsed > 0 ? elapsed / 1e9 * limit.getPermitsPerSecond() : 0;
+        }
+    }
+
+    /** publication waiting for its permits */
+    private static final class Waiter {
+        final String userToken;
+        final Collection<String> providers;
+        final Cancellation cancellation;
+        final Runnable onPermit;
+        final Runnable onCancelled;
+
+        /** whether the permits have been taken, guarded by the limiter */
+        boolean granted;
+
+        /** whether the caller has stopped waiting, guarded by the limiter */
+        boolean abandoned;
+
+        Waiter(
+                String userToken,
+                Collection<String> providers,
+                Cancellation cancellation,
+                Runnable onPermit,
+                Runnable onCancelled) {
+            this.userToken = userToken;
+            this.providers = providers;
+            this.cancellation = cancellation;
+            this.onPermit = onPermit;
+            this.onCancelled = onCancelled;
+        }
+
+        boolean isCancelled() {
+            return abandoned || cancellation.isCancelled();
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    /** limit of every user, guarded by the limiter */
+    private RateLimit userLimit;
+
+    /** limit of every provider, guarded by the limiter */
+    private RateLimit providerLimit;
+
+    /** buckets by key, see {@link #USER_KEY_PREFIX} and {@link #PROVIDER_KEY_PREFIX} */
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    /** waiting publications by user, in order of arrival */
+    private final Map<String, Queue<Waiter>> queues = new HashMap<>();
+
+    /** users with waiting publications, in the order they are served */
+    private final Queue<String> turns = new ArrayDeque<>();
+
+    /** executor starting waiting publications */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /** next start of waiting publications, {@code null} if none is scheduled */
+    private ScheduledFuture<?> wakeup;
+
+    /** time of {@link #wakeup}, in nanoseconds */
+    private long wakeupAt;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates rate limiter
+     *
+     * @param userLimit     limit of publications of every user, across providers
+     * @param providerLimit limit of publications to every provider, across users
+     */
+    public PublishRateLimiter(RateLimit userLimit, RateLimit providerLimit) {
+        this.userLimit = userLimit;
+        this.providerLimit = providerLimit;
+
+        scheduler = new ScheduledThreadPoolExecutor(
+                1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "oneall-rate-limit");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        scheduler.setKeepAliveTime(30, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * run publication once its permits are taken: right away on the calling thread if they are
+     * available and nobody is waiting, otherwise later, possibly on another thread
+     *
+     * @param userToken    token of the user publishing
+     * @param providers    providers published to
+     * @param cancellation cancellation of the publication; a publication cancelled while waiting
+     *                     does not take permits
+     * @param onPermit     starts the publication
+     * @param onCancelled  reports the cancellation of a waiting publication
+     */
+    public void acquire(
+            String userToken,
+            Collection<String> providers,
+            Cancellation cancellation,
+            Runnable onPermit,
+            Runnable onCancelled) {
+
+        submit(new Waiter(userToken, providers, cancellation, onPermit, onCancelled));
+    }
+
+    /**
+     * block the calling thread until the permits of a publication are taken
+     *
+     * @param userToken token of the user publishing
+     * @param providers providers published to
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting; no permit is taken
+     */
+    public void acquireBlocking(String userToken, Collection<String> providers)
+            throws InterruptedException {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        Waiter waiter = new Waiter(userToken, providers, Cancellation.NONE, release, null);
+        submit(waiter);
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                if (!waiter.granted) {
+                    waiter.abandoned = true;
+                    throw e;
+                }
+            }
+            // permits were taken meanwhile, go ahead
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * pause publications of user, e.g. on a {@code Retry-After} hint of the server
+     *
+     * @param userToken token of the user
+     * @param delay     pause in milliseconds
+     */
+    public void pauseUser(String userToken, long delay) {
+        pause(USER_KEY_PREFIX + userToken, delay);
+    }
+
+    /**
+     * pause publications to provider, e.g. after it has throttled a publication
+     *
+     * @param provider key of the provider
+     * @param delay    pause in milliseconds
+     */
+    public void pauseProvider(String provider, long delay) {
+        pause(PROVIDER_KEY_PREFIX + provider, delay);
+    }
+
+    /**
+     * change the limits. Permits already taken count against the new limits; publications
+     * waiting for their permits are paced by the new limits from now on.
+     *
+     * @param userLimit     limit of publications of every user, across providers
+     * @param providerLimit limit of publications to every provider, across users
+     */
+    public void setLimits(RateLimit userLimit, RateLimit providerLimit) {
+        synchronized (this) {
+            this.userLimit = userLimit;
+            this.providerLimit = providerLimit;
+
+            long now = System.nanoTime();
+            for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+                entry.getValue().setLimit(getLimit(entry.getKey()), now);
+            }
+        }
+        dispatch();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * run publication right away if its permits are available and nobody is waiting, otherwise
+     * queue it
+     */
+    private void submit(Waiter waiter) {
+        boolean granted;
+        synchronized (this) {
+            granted = queues.isEmpty() && tryTake(waiter, System.nanoTime()) == 0;
+            if (!granted) {
+                enqueue(waiter);
+            }
+        }
+
+        if (granted) {
+            waiter.onPermit.run();
+        } else {
+            dispatch();
+        }
+    }
+
+    private void pause(String key, long delay) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            getBucket(key, now).pause(now, TimeUnit.MILLISECONDS.toNanos(delay));
+        }
+        dispatch();
+    }
+
+    /**
+     * start the waiting publications whose permits are available, serving users in turn, and
+     * schedule the next start
+     */
+    private void dispatch() {
+        List<Runnable> ready = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            long earliest = Long.MAX_VALUE;
+
+            boolean progress = true;
+            while (progress && !turns.isEmpty()) {
+                progress = false;
+                earliest = Long.MAX_VALUE;
+
+                // users served in this pass go after the ones still waiting for their turn, so
+                // that users sharing a provider take its permits in turn
+                List<String> served = new ArrayList<>();
+                for (int i = turns.size(); i > 0; i--) {
+                    String user = turns.poll();
+                    Queue<Waiter> queue = queues.get(user);
+
+                    Iterator<Waiter> waiters = queue.iterator();
+                    while (waiters.hasNext()) {
+                        Waiter waiter = waiters.next();
+                        if (waiter.isCancelled()) {
+                            waiters.remove();
+                            if (waiter.onCancelled != null) {
+                                ready.add(waiter.onCancelled);
+                            }
+                        }
+                    }
+
+                    Waiter head = queue.peek();
+                    boolean granted = false;
+                    if (head != null) {
+                        long delay = tryTake(head, now);
+                        if (delay == 0) {
+                            queue.poll();
+                            ready.add(head.onPermit);
+                            progress = true;
+                            granted = true;
+                        } else {
+                            earliest = Math.min(earliest, delay);
+                        }
+                    }
+
+                    if (queue.isEmpty()) {
+                        queues.remove(user);
+                    } else if (granted) {
+                        served.add(user);
+                    } else {
+                        turns.add(user);
+                    }
+                }
+                turns.addAll(served);
+            }
+
+            if (!turns.isEmpty()) {
+                schedule(now, earliest);
+            }
+        }
+
+        for (Runnable task : ready) {
+            task.run();
+        }
+    }
+
+    /**
+     * take the permits of publication if all of them are available
+     *
+     * @return {@code 0} if the permits have been taken, otherwise nanoseconds until they may be
+     */
+    private long tryTake(Waiter waiter, long now) {
+        List<Bucket> needed = new ArrayList<>(1 + waiter.providers.size());
+        needed.add(getBucket(USER_KEY_PREFIX + waiter.userToken, now));
+        for (String provider : waiter.providers) {
+            needed.add(getBucket(PROVIDER_KEY_PREFIX + provider, now));
+        }
+
+        long delay = 0;
+        for (Bucket bucket : needed) {
+            delay = Math.max(delay, bucket.delay(now));
+        }
+        if (delay == 0) {
+            for (Bucket bucket : needed) {
+                bucket.take();
+            }
+            waiter.granted = true;
+        }
+        return delay;
+    }
+
+    private void enqueue(Waiter waiter) {
+        Queue<Waiter> queue = queues.get(waiter.userToken);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(waiter.userToken, queue);
+            turns.add(waiter.userToken);
+        }
+        queue.add(waiter);
+    }
+
+    /**
+     * schedule dispatch, unless an earlier one is scheduled already. Waiting publications are
+     * also checked every second, so that cancelled ones are reported.
+     */
+    private void schedule(long now, long delay) {
+        long wait = Math.min(delay, TimeUnit.SECONDS.toNanos(1));
+        // a wakeup which is due may be the one running this dispatch, it does not count
+        if (wakeup != null && wakeupAt - now > 0 && wakeupAt - (now + wait) <= 0) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAt = now + wait;
+        wakeup = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, wait, TimeUnit.NANOSECONDS);
+    }
+
+    private Bucket getBucket(String key, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_BUCKETS) {
+                pruneBuckets(now);
+            }
+            bucket = new Bucket(getLimit(key), now);
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private RateLimit getLimit(String key) {
+        return key.startsWith(USER_KEY_PREFIX) ? userLimit : providerLimit;
+    }
+
+    /**
+     * drop buckets which are full and not paused, they are the same as new ones
+     */
+    private void pruneBuckets(long now) {
+        Iterator<Bucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isIdle(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // endregion
+}
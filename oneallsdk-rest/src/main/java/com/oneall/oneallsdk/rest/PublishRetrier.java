@@ -0,0 +1,263 @@
+package com.oneall.oneallsdk.rest;
+
+import com.oneall.oneallsdk.rest.MessagePostResult.MessagePostProviderResult;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse.Data.Message.Publication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/**
+ * Publishes a message and sends it again only to the providers which have throttled it (HTTP 429),
+ * see {@link PublicationStatus}. A throttled provider has certainly not published the message, so
+ * it is never published twice, and every retry is smaller than the previous request.
+ *
+ * Providers the message has been published to, or which have rejected it, are never sent it again.
+ * Neither are providers failing otherwise transiently, e.g. with a server error or a timeout: the
+ * failure may have come after the publication, so they are reported with their status instead.
+ *
+ * Each request goes through the {@link ResilientCaller} of the services like any other
+ * publication. Rounds of retries are delayed according to a {@link RetryPolicy}, by default
+ * {@link Settings#getPublicationRetryPolicy()}, and are only made within the deadline and while
+ * the operation is not cancelled.
+ *
+ * The callback receives a single {@link MessagePostResult} merging all rounds, whose
+ * {@link MessagePostResult#wholeResponse} is the response of the first request with the final
+ * publication of every provider. It fails only if the first request fails; a failure of a later
+ * round leaves the providers of that round with their previous, transient, status.
+ */
+public class PublishRetrier {
+
+    // region Constants
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // endregion
+
+    // region Helper classes
+
+    /** single publication going through its rounds */
+    private class Rounds implements Runnable, Callback<PostMessageResponse> {
+        private final String userToken;
+        private final String authHeader;
+        private final Deadline deadline;
+        private final Cancellation cancellation;
+        private final Callback<MessagePostResult> callback;
+
+        /** final publication of every provider, in order of the first response */
+        private final Map<String, Publication> publications = new LinkedHashMap<>();
+
+        /** number of times the message has been sent to every provider */
+        private final Map<String, Integer> attempts = new HashMap<>();
+
+        /** request of the current round */
+        private PostMessageRequest request;
+
+        private PostMessageResponse firstResponse;
+
+        private Response lastResponse;
+
+        private int round;
+
+        Rounds(
+                String userToken,
+                String publishToken,
+                PostMessageRequest request,
+                Deadline deadline,
+                Cancellation cancellation,
+                Callback<MessagePostResult> callback) {
+            this.userToken = userToken;
+            this.authHeader = ServiceManagerProvider.buildPublishAuthHeader(publishToken);
+            this.request = request;
+            this.deadline = deadline;
+            this.cancellation = cancellation;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            round++;
+            final PostMessageRequest roundRequest = request;
+            try {
+                services.getResilientCaller().execute(
+                        ApiEndpoint.PUBLISH,
+                        deadline,
+                        cancellation,
+                        new ServiceCall<PostMessageResponse>() {
+                            @Override
+                            public void execute(Callback<PostMessageResponse> callback) {
+                                // counted here: a round stopped by the cancellation, the deadline
+                                // or the circuit breaker sends nothing
+                                countAttempt(roundRequest);
+                                services.getPostService().post(
+                                        userToken, authHeader, roundRequest, callback);
+                            }
+                        },
+                        this);
+            } catch (RuntimeException e) {
+                if (round == 1) {
+                    throw e;
+                }
+                // a later round runs on the retry executor, which has nobody to throw to
+                failure(RetrofitError.unexpectedError(ApiEndpoint.PUBLISH.name(), e));
+            }
+        }
+
+        @Override
+        public void success(PostMessageResponse response, Response raw) {
+            lastResponse = raw;
+            if (firstResponse == null) {
+                firstResponse = response;
+            }
+
+            List<String> failed = new ArrayList<>();
+            if (response != null && response.data != null && response.data.message != null
+                    && response.data.message.publications != null) {
+                for (Publication publication : response.data.message.publications) {
+                    if (publication == null || publication.provider == null) {
+                        continue;
+                    }
+                    publications.put(publication.provider, publication);
+                    if (isResent(publication)) {
+                        failed.add(publication.provider);
+                    }
+                }
+            }
+
+            if (!failed.isEmpty() && round < policy.getMaxAttempts()
+                    && !cancellation.isCancelled()) {
+                long delay = policy.getDelay(round, random);
+                if (delay < deadline.remaining()) {
+                    request = request.withProviders(failed);
+                    services.getResilientCaller().schedule(this, delay);
+                    return;
+                }
+            }
+
+            deliver();
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            if (firstResponse == null) {
+                callback.failure(error);
+                return;
+            }
+            deliver();
+        }
+
+        private void countAttempt(PostMessageRequest roundRequest) {
+            for (String provider : roundRequest.request.message.providers) {
+                Integer count = attempts.get(provider);
+                attempts.put(provider, count != null ? count + 1 : 1);
+            }
+        }
+
+        private void deliver() {
+            List<MessagePostProviderResult> results = new ArrayList<>();
+            for (Publication publication : publications.values()) {
+                PublicationStatus status = PublicationStatus.of(publication);
+                results.add(new MessagePostProviderResult(
+                        status == PublicationStatus.SUCCESS,
+                        publication.status != null ? publication.status.flag : null,
+                        publication.status != null ? publication.status.code : null,
+                        publication.status != null ? publication.status.message : null,
+                        publication.provider,
+                        status,
+                        attempts.get(publication.provider)));
+            }
+
+            String messageToken = null;
+            if (firstResponse != null && firstResponse.data != null
+                    && firstResponse.data.message != null) {
+                firstResponse.data.message.publications = new ArrayList<>(publications.values());
+                messageToken = firstResponse.data.message.sharingMessageToken;
+            }
+
+            callback.success(
+                    new MessagePostResult(firstResponse, messageToken, results), lastResponse);
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final ServiceManagerProvider services;
+
+    private final RetryPolicy policy;
+
+    private final Random random = new Random();
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates retrier with the publication retry policy of the settings
+     *
+     * @param services services used for publishing
+     */
+    public PublishRetrier(ServiceManagerProvider services) {
+        this(services, Settings.getInstance().getPublicationRetryPolicy());
+    }
+
+    /**
+     * creates retrier
+     *
+     * @param services services used for publishing
+     * @param policy   policy of the rounds: maximum number of times the message is sent to a
+     *                 provider and delays between rounds
+     */
+    public PublishRetrier(ServiceManagerProvider services, RetryPolicy policy) {
+        this.services = services;
+        this.policy = policy;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * publish message, sending it again to providers which have throttled it
+     *
+     * @param userToken    token of the user
+     * @param publishToken publish token of the user
+     * @param request      message to publish
+     * @param deadline     deadline of the whole publication, including the rounds
+     * @param cancellation cancellation of the publication
+     * @param callback     callback receiving the merged result, or the failure of the first request
+     */
+    public void publish(
+            String userToken,
+            String publishToken,
+            PostMessageRequest request,
+            Deadline deadline,
+            Cancellation cancellation,
+            Callback<MessagePostResult> callback) {
+        new Rounds(userToken, publishToken, request, deadline, cancellation, callback).run();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * check whether the message is sent again to the provider of a publication
+     */
+    private static boolean isResent(Publication publication) {
+        return PublicationStatus.of(publication) == PublicationStatus.TRANSIENT_FAILURE
+                && publication.status.code == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    // endregion
+}
@@ -0,0 +1,67 @@
+package com.oneall.oneallsdk.rest;
+
+/**
+ * Immutable description of a token bucket: how many calls can be made in a burst and how fast
+ * the allowance refills afterwards.
+ *
+ * @see PublishRateLimiter
+ */
+public final class RateLimit {
+
+    // region Constants
+
+    /** no limit */
+    public static final RateLimit NONE = new RateLimit(Double.POSITIVE_INFINITY, Integer.MAX_VALUE);
+
+    // endregion
+
+    // region Properties
+
+    private final double permitsPerSecond;
+
+    private final int burst;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates rate limit
+     *
+     * @param permitsPerSecond sustained rate of calls, e.g. {@code 0.5} for a call every two
+     *                         seconds
+     * @param burst            number of calls which can be made at once after a quiet period, at
+     *                         least {@code 1}
+     *
+     * @throws IllegalArgumentException if any of the arguments is out of range
+     */
+    public RateLimit(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0.0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1");
+        }
+
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public boolean isUnlimited() {
+        return Double.isInfinite(permitsPerSecond);
+    }
+
+    // endregion
+}
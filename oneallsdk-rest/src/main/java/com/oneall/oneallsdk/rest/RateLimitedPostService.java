@@ -0,0 +1,208 @@
+package com.oneall.oneallsdk.rest;
+
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse.Data.Message.Publication;
+import com.oneall.oneallsdk.rest.service.MessagePostService;
+
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Message post service making every publication through a {@link PublishRateLimiter}, and
+ * reporting the throttling hints of the responses back to it. Asynchronous publications wait
+ * without blocking; they keep the {@link Cancellation} they are made on behalf of, and fail with
+ * it if it is cancelled while they wait.
+ */
+final class RateLimitedPostService implements MessagePostService {
+
+    // region Constants
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // endregion
+
+    // region Properties
+
+    private final MessagePostService delegate;
+
+    private final PublishRateLimiter limiter;
+
+    /** executor of callbacks of publications failing without reaching Retrofit */
+    private final Executor callbackExecutor;
+
+    // endregion
+
+    // region Lifecycle
+
+    RateLimitedPostService(
+            MessagePostService delegate, PublishRateLimiter limiter, Executor callbackExecutor) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    @Override
+    public void post(
+            final String userToken,
+            final String publishToken,
+            final PostMessageRequest message,
+            Callback<PostMessageResponse> callback) {
+
+        post(userToken, getProviders(message), new ServiceCall<PostMessageResponse>() {
+            @Override
+            public void execute(Callback<PostMessageResponse> callback) {
+                delegate.post(userToken, publishToken, message, callback);
+            }
+        }, callback);
+    }
+
+    @Override
+    public void post(
+            final String userToken,
+            final String publishToken,
+            final TypedOutput message,
+            Callback<PostMessageResponse> callback) {
+
+        post(userToken, getProviders(message), new ServiceCall<PostMessageResponse>() {
+            @Override
+            public void execute(Callback<PostMessageResponse> callback) {
+                delegate.post(userToken, publishToken, message, callback);
+            }
+        }, callback);
+    }
+
+    @Override
+    public PostMessageResponse post(
+            String userToken, String publishToken, PostMessageRequest message) {
+
+        try {
+            limiter.acquireBlocking(userToken, getProviders(message));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw RetrofitError.networkError(
+                    ApiEndpoint.PUBLISH.name(),
+                    new InterruptedIOException("Interrupted while waiting for rate limit"));
+        }
+
+        PostMessageResponse response;
+        try {
+            response = delegate.post(userToken, publishToken, message);
+        } catch (RetrofitError e) {
+            observe(userToken, e);
+            throw e;
+        }
+        observe(response);
+        return response;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private void post(
+            final String userToken,
+            Collection<String> providers,
+            final ServiceCall<PostMessageResponse> call,
+            final Callback<PostMessageResponse> callback) {
+
+        final Cancellation cancellation = Cancellation.current();
+        final Callback<PostMessageResponse> observed = new Callback<PostMessageResponse>() {
+            @Override
+            public void success(PostMessageResponse response, Response raw) {
+                observe(response);
+                callback.success(response, raw);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                observe(userToken, error);
+                callback.failure(error);
+            }
+        };
+
+        limiter.acquire(
+                userToken,
+                providers,
+                cancellation,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        // possibly on another thread, which has to make the call on behalf of
+                        // the same operation
+                        cancellation.execute(call, observed);
+                    }
+                },
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        callbackExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.failure(cancellation.newError(ApiEndpoint.PUBLISH));
+                            }
+                        });
+                    }
+                });
+    }
+
+    /**
+     * pause providers which have throttled their publication
+     */
+    private void observe(PostMessageResponse response) {
+        if (response == null || response.data == null || response.data.message == null
+                || response.data.message.publications == null) {
+            return;
+        }
+
+        for (Publication publication : response.data.message.publications) {
+            if (publication != null && publication.provider != null
+                    && publication.status != null && publication.status.code != null
+                    && publication.status.code == HTTP_TOO_MANY_REQUESTS) {
+                limiter.pauseProvider(
+                        publication.provider, PublishRateLimiter.DEFAULT_THROTTLE_DELAY);
+            }
+        }
+    }
+
+    /**
+     * pause user the server has asked to wait
+     */
+    private void observe(String userToken, RetrofitError error) {
+        long retryAfter = RetryPolicy.getRetryAfter(error);
+        if (retryAfter >= 0) {
+            limiter.pauseUser(userToken, retryAfter);
+        } else if (error.getKind() == RetrofitError.Kind.HTTP && error.getResponse() != null
+                && error.getResponse().getStatus() == HTTP_TOO_MANY_REQUESTS) {
+            limiter.pauseUser(userToken, PublishRateLimiter.DEFAULT_THROTTLE_DELAY);
+        }
+    }
+
+    private static Collection<String> getProviders(PostMessageRequest message) {
+        if (message == null || message.request == null || message.request.message == null
+                || message.request.message.providers == null) {
+            return Collections.emptyList();
+        }
+        return message.request.message.providers;
+    }
+
+    private static Collection<String> getProviders(TypedOutput message) {
+        if (message instanceof PublishBody) {
+            return ((PublishBody) message).getProviders();
+        }
+        return Collections.emptyList();
+    }
+
+    // endregion
+}
@@ -0,0 +1,332 @@
+package com.oneall.oneallsdk.rest;
+
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/**
+ * Resilience layer of OneAll API calls. Calls are made through the circuit breaker of their
+ * endpoint and transient failures are retried according to the endpoint's {@link RetryPolicy}
+ * from {@link Settings}. The callback receives either the first success or the last failure.
+ * Only network errors, request timeouts and server errors count against the breaker; throttled
+ * calls are retried as well, but a server answering {@code 429} is not failing.
+ *
+ * Calls rejected by an open circuit breaker fail with a network {@link RetrofitError} caused by
+ * {@link CircuitBreaker.OpenException}. Calls of a cancelled operation are neither started nor
+ * retried, they fail with one caused by {@link Cancellation.CancelledException}.
+ */
+public class ResilientCaller {
+
+    // region Helper classes
+
+    /** single call going through its attempts */
+    private class Attempts<T> implements Callback<T>, Runnable {
+        private final ApiEndpoint endpoint;
+        private final ServiceCall<T> call;
+        private final Callback<T> callback;
+        private final Deadline deadline;
+        private final Cancellation cancellation;
+        private final RetryPolicy policy;
+        private int attempt;
+
+        Attempts(
+                ApiEndpoint endpoint,
+                Deadline deadline,
+                Cancellation cancellation,
+                ServiceCall<T> call,
+                Callback<T> callback) {
+            this.endpoint = endpoint;
+            this.deadline = deadline;
+            this.cancellation = cancellation;
+            this.call = call;
+            this.callback = callback;
+            this.policy = Settings.getInstance().getRetryPolicy(endpoint);
+        }
+
+        @Override
+        public void run() {
+            if (cancellation.isCancelled()) {
+                deliverFailure(cancellation.newError(endpoint));
+                return;
+            }
+
+            if (deadline.isExpired()) {
+                deliverFailure(RetrofitError.networkError(
+                        endpoint.name(),
+                        new Deadline.ExceededException(String.format(
+                                "Deadline of %s call exceeded", endpoint.name()))));
+                return;
+            }
+
+            CircuitBreaker breaker = breakers.get(endpoint);
+            if (!breaker.allowRequest()) {
+                deliverFailure(RetrofitError.networkError(
+                        endpoint.name(),
+                        new CircuitBreaker.OpenException(String.format(
+                                "Circuit breaker of %s is open", endpoint.name()))));
+                return;
+            }
+
+            attempt++;
+            try {
+                cancellation.execute(call, this);
+            } catch (RuntimeException e) {
+                // not a failure of the endpoint, nor a sign of its health
+                breaker.onAborted();
+                if (attempt == 1) {
+                    throw e;
+                }
+                // a retry has nobody to throw to
+                deliverFailure(RetrofitError.unexpectedError(endpoint.name(), e));
+            }
+        }
+
+        @Override
+        public void success(T t, Response response) {
+            breakers.get(endpoint).onSuccess();
+            callback.success(t, response);
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            CircuitBreaker breaker = breakers.get(endpoint);
+            if (cancellation.isCancelled()) {
+                // aborted on our side, which says nothing about the endpoint
+                breaker.onAborted();
+                callback.failure(error);
+                return;
+            }
+
+            if (!RetryPolicy.isTransient(error)) {
+                // the server has responded, so the endpoint is healthy
+                breaker.onSuccess();
+                callback.failure(error);
+                return;
+            }
+
+            if (RetryPolicy.isThrottled(error)) {
+                // retried after the delay asked for, but the endpoint has responded
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+            if (!policy.shouldRetry(attempt, error)) {
+                callback.failure(error);
+                return;
+            }
+
+            long delay = Math.max(
+                    policy.getDelay(attempt, random), RetryPolicy.getRetryAfter(error));
+            if (delay >= deadline.remaining()) {
+                // the next attempt could not start in time
+                callback.failure(error);
+                return;
+            }
+            scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void deliverFailure(final RetrofitError error) {
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.failure(error);
+                }
+            });
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final Map<ApiEndpoint, CircuitBreaker> breakers = new EnumMap<>(ApiEndpoint.class);
+
+    /** executor of retries, which only start calls and never run callbacks */
+    private final ScheduledExecutorService scheduler;
+
+    /** executor of callbacks of calls failing without reaching Retrofit */
+    private final Executor callbackExecutor;
+
+    private final Random random = new Random();
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates resilience layer with closed circuit breakers
+     *
+     * @param callbackExecutor executor running callbacks, should be the same as Retrofit's
+     */
+    public ResilientCaller(Executor callbackExecutor) {
+        Settings settings = Settings.getInstance();
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            breakers.put(endpoint, new CircuitBreaker(
+                    settings.getCircuitBreakerFailureThreshold(),
+                    settings.getCircuitBreakerOpenDuration()));
+        }
+
+        this.callbackExecutor = callbackExecutor;
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "oneall-retry");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        this.scheduler = executor;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * make call through the circuit breaker and retry policy of its endpoint
+     *
+     * @param endpoint endpoint called
+     * @param call     the call, may be started several times
+     * @param callback callback receiving the final result
+     * @param <T>      type of the response
+     */
+    public <T> void execute(ApiEndpoint endpoint, ServiceCall<T> call, Callback<T> callback) {
+        execute(endpoint, Deadline.NONE, call, callback);
+    }
+
+    /**
+     * make call through the circuit breaker and retry policy of its endpoint, within a deadline.
+     * No attempt is started after the deadline and no retry is scheduled if it could not start
+     * before the deadline.
+     *
+     * @param endpoint endpoint called
+     * @param deadline deadline of the operation the call is part of
+     * @param call     the call, may be started several times
+     * @param callback callback receiving the final result
+     * @param <T>      type of the response
+     */
+    public <T> void execute(
+            ApiEndpoint endpoint,
+            Deadline deadline,
+            ServiceCall<T> call,
+            Callback<T> callback) {
+        execute(endpoint, deadline, Cancellation.NONE, call, callback);
+    }
+
+    /**
+     * make call through the circuit breaker and retry policy of its endpoint, within a deadline
+     * and on behalf of a cancellable operation. Once the operation is cancelled the attempt in
+     * flight is aborted and no other attempt is started.
+     *
+     * @param endpoint     endpoint called
+     * @param deadline     deadline of the operation the call is part of
+     * @param cancellation cancellation of the operation the call is part of
+     * @param call         the call, may be started several times
+     * @param callback     callback receiving the final result
+     * @param <T>          type of the response
+     */
+    public <T> void execute(
+            ApiEndpoint endpoint,
+            Deadline deadline,
+            Cancellation cancellation,
+            ServiceCall<T> call,
+            Callback<T> callback) {
+        new Attempts<>(endpoint, deadline, cancellation, call, callback).run();
+    }
+
+    /**
+     * wrap call so that it is made through the circuit breaker and retry policy of its endpoint,
+     * e.g. to be coalesced by {@link SingleFlight}
+     *
+     * @param endpoint endpoint called
+     * @param call     the call, may be started several times
+     * @param <T>      type of the response
+     *
+     * @return resilient call
+     */
+    public <T> ServiceCall<T> wrap(ApiEndpoint endpoint, ServiceCall<T> call) {
+        return wrap(endpoint, Deadline.NONE, call);
+    }
+
+    /**
+     * wrap call so that it is made through the circuit breaker and retry policy of its endpoint,
+     * within a deadline
+     *
+     * @param endpoint endpoint called
+     * @param deadline deadline of the operation the call is part of
+     * @param call     the call, may be started several times
+     * @param <T>      type of the response
+     *
+     * @return resilient call
+     */
+    public <T> ServiceCall<T> wrap(
+            final ApiEndpoint endpoint,
+            final Deadline deadline,
+            final ServiceCall<T> call) {
+        return wrap(endpoint, deadline, Cancellation.NONE, call);
+    }
+
+    /**
+     * wrap call so that it is made through the circuit breaker and retry policy of its endpoint,
+     * within a deadline and on behalf of a cancellable operation
+     *
+     * @param endpoint     endpoint called
+     * @param deadline     deadline of the operation the call is part of
+     * @param cancellation cancellation of the operation the call is part of
+     * @param call         the call, may be started several times
+     * @param <T>          type of the response
+     *
+     * @return resilient call
+     */
+    public <T> ServiceCall<T> wrap(
+            final ApiEndpoint endpoint,
+            final Deadline deadline,
+            final Cancellation cancellation,
+            final ServiceCall<T> call) {
+        return new ServiceCall<T>() {
+            @Override
+            public void execute(Callback<T> callback) {
+                ResilientCaller.this.execute(endpoint, deadline, cancellation, call, callback);
+            }
+        };
+    }
+
+    /**
+     * run task on the executor of retries after a delay, e.g. a follow-up call. The task must not
+     * throw.
+     *
+     * @param task  task starting calls
+     * @param delay delay in milliseconds
+     */
+    void schedule(Runnable task, long delay) {
+        scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * get circuit breaker of endpoint
+     *
+     * @param endpoint endpoint
+     *
+     * @return circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker(ApiEndpoint endpoint) {
+        return breakers.get(endpoint);
+    }
+
+    // endregion
+}
@@ -0,0 +1,230 @@
+package com.oneall.oneallsdk.rest;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+/**
+ * Immutable description of how a failed API call is retried: how many attempts are made and how
+ * long to wait between them. Delays grow exponentially and are randomized ("jitter"), so that
+ * clients failing at the same time do not retry at the same time.
+ *
+ * Only failures which may succeed on another attempt are retried: network errors, request
+ * timeouts ({@code 408}), throttling ({@code 429}) and server errors ({@code 5xx}). A
+ * {@code Retry-After} hint of the server is honored when it asks for a longer delay.
+ */
+public final class RetryPolicy {
+
+    // region Constants
+
+    /** policy making a single attempt */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 1.0, 0.0);
+
+    /** default policy of idempotent endpoints: 3 attempts, 0.5s and then 1s apart (randomized) */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, 500, 5000, 2.0, 0.5);
+
+    private static final int HTTP_REQUEST_TIMEOUT = 408;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    /** longest {@code Retry-After} delay honored, in milliseconds */
+    private static final long MAX_RETRY_AFTER = 10 * 60 * 1000L;
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    // endregion
+
+    // region Properties
+
+    private final int maxAttempts;
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    private final double multiplier;
+
+    private final double jitter;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates retry policy
+     *
+     * @param maxAttempts  maximum number of attempts including the first one, at least {@code 1}
+     * @param initialDelay delay before the second attempt, in milliseconds
+     * @param maxDelay     upper limit of the delay between attempts, in milliseconds
+     * @param multiplier   factor the delay grows by after each attempt, at least {@code 1}
+     * @param jitter       share of the delay which is randomized, between {@code 0} (fixed
+     *                     delays) and {@code 1} (anything between zero and the full delay)
+     *
+     * @throws IllegalArgumentException if any of the arguments is out of range
+     */
+    public RetryPolicy(
+            int maxAttempts,
+            long initialDelay,
+            long maxDelay,
+            double multiplier,
+            double jitter) {
+
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Invalid delay range");
+        }
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * check whether another attempt should be made after a failure
+     *
+     * @param attempt number of attempts made so far, starting at {@code 1}
+     * @param error   failure of the last attempt
+     *
+     * @return {@code true} if the call should be retried
+     */
+    public boolean shouldRetry(int attempt, RetrofitError error) {
+        return attempt < maxAttempts && isTransient(error);
+    }
+
+    /**
+     * get delay before the next attempt
+     *
+     * @param attempt number of attempts made so far, starting at {@code 1}
+     * @param random  source of randomness for the jitter
+     *
+     * @return delay in milliseconds
+     */
+    public long getDelay(int attempt, Random random) {
+        double delay = initialDelay * Math.pow(multiplier, attempt - 1);
+        delay = Math.min(delay, maxDelay);
+        return (long) (delay * (1.0 - jitter * random.nextDouble()));
+    }
+
+    /**
+     * check whether failure is caused by a condition which may go away, as opposed to a problem
+     * with the request itself
+     *
+     * @param error failure of an API call
+     *
+     * @return {@code true} for network failures, timeouts, throttling and server errors
+     */
+    public static boolean isTransient(RetrofitError error) {
+        switch (error.getKind()) {
+            case NETWORK:
+                return true;
+            case HTTP:
+                return isTransientStatus(
+                        error.getResponse() != null ? error.getResponse().getStatus() : 0);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * check whether failure is a throttling response. The server has answered it, so unlike the
+     * other transient failures it says nothing bad about the health of the endpoint.
+     *
+     * @param error failure of an API call
+     *
+     * @return {@code true} for HTTP {@code 429} responses
+     */
+    public static boolean isThrottled(RetrofitError error) {
+        return error.getKind() == RetrofitError.Kind.HTTP
+                && error.getResponse() != null
+                && error.getResponse().getStatus() == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * get delay the server has asked for before the next call, with a {@code Retry-After} header
+     * of a throttling ({@code 429}) or unavailability ({@code 503}) response
+     *
+     * @param error failure of an API call
+     *
+     * @return delay in milliseconds, up to ten minutes; {@code -1} if there is no hint
+     */
+    public static long getRetryAfter(RetrofitError error) {
+        if (error.getKind() != RetrofitError.Kind.HTTP) {
+            return -1;
+        }
+        return getRetryAfter(error.getResponse());
+    }
+
+    /**
+     * get delay the server has asked for before the next call
+     *
+     * @param response response of an API call, may be {@code null}
+     *
+     * @return delay in milliseconds, up to ten minutes; {@code -1} if there is no hint
+     */
+    public static long getRetryAfter(Response response) {
+        if (response == null || response.getHeaders() == null) {
+            return -1;
+        }
+
+        for (Header header : response.getHeaders()) {
+            if (!HEADER_RETRY_AFTER.equalsIgnoreCase(header.getName()) || header.getValue() == null) {
+                continue;
+            }
+
+            String value = header.getValue().trim();
+            long delay;
+            try {
+                delay = Long.parseLong(value) * 1000L;
+            } catch (NumberFormatException e) {
+                try {
+                    delay = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US).parse(value).getTime()
+                            - System.currentTimeMillis();
+                } catch (ParseException ignored) {
+                    return -1;
+                }
+            }
+            return Math.min(Math.max(delay, 0), MAX_RETRY_AFTER);
+        }
+        return -1;
+    }
+
+    /**
+     * check whether HTTP status code reports a condition which may go away
+     *
+     * @param status HTTP status code
+     *
+     * @return {@code true} for timeouts, throttling and server errors
+     */
+    public static boolean isTransientStatus(int status) {
+        return status == HTTP_REQUEST_TIMEOUT
+                || status == HTTP_TOO_MANY_REQUESTS
+                || status >= HTTP_SERVER_ERROR;
+    }
+
+    // endregion
+}
@@ -0,0 +1,19 @@
+package com.oneall.oneallsdk.rest;
+
+import retrofit.Callback;
+
+/**
+ * Asynchronous call of a OneAll API service, which can be started more than once, e.g. by
+ * {@link SingleFlight} or {@link ResilientCaller}
+ *
+ * @param <T> type of the response
+ */
+public interface ServiceCall<T> {
+
+    /**
+     * start the call
+     *
+     * @param callback callback which must receive the result of the call
+     */
+    void execute(Callback<T> callback);
+}
@@ -0,0 +1,448 @@
+package com.oneall.oneallsdk.rest;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.oneall.oneallsdk.rest.models.JsonModelTypeAdapterFactory;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.service.ConnectionService;
+import com.oneall.oneallsdk.rest.service.MessagePostService;
+import com.oneall.oneallsdk.rest.service.ProviderService;
+import com.oneall.oneallsdk.rest.service.UserService;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import retrofit.RequestInterceptor;
+import retrofit.RestAdapter;
+import retrofit.android.AndroidLog;
+import retrofit.android.MainThreadExecutor;
+import retrofit.converter.GsonConverter;
+
+/**
+ * Manager of services creates API access services. Every service is created once and shared by
+ * all callers.
+ *
+ * The manager has no Android dependencies: on Android callbacks are delivered on the main thread
+ * and network logs go to the Android log, elsewhere callbacks run on the HTTP thread and logs go
+ * to {@link java.util.logging}.
+ */
+public class ServiceManagerProvider {
+
+    // region Constants
+
+    /** maximum number of idle connections kept in the pool */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /** time an idle connection is kept alive in the pool, in milliseconds */
+    private static final long KEEP_ALIVE_DURATION = 5 * 60 * 1000L;
+
+    /** tag of network log messages */
+    private static final String LOG_TAG = "oneall-http";
+
+    /** is the code running on Android, as opposed to a plain JVM */
+    private static final boolean ANDROID = isAndroid();
+
+    // endregion
+
+    // region Helper classes
+
+    /**
+     * HTTP client and the services using it. Replaced as a whole when the application supplies
+     * another client, so a caller never gets services of one client and the client of another.
+     */
+    private static final class Transport {
+        final OkHttpClient httpClient;
+
+        final RestAdapter restAdapter;
+
+        /** services already created by {@link #restAdapter}, by service interface */
+        final ConcurrentHashMap<Class<?>, Object> services = new ConcurrentHashMap<>();
+
+        /** post service going through the publish rate limiter */
+        volatile MessagePostService postService;
+
+        Transport(OkHttpClient httpClient, RestAdapter restAdapter) {
+            this.httpClient = httpClient;
+            this.restAdapter = restAdapter;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private static volatile ServiceManagerProvider mInstance = null;
+
+    /** HTTP client supplied by the application, if any */
+    private static OkHttpClient customHttpClient = null;
+
+    private final String endpoint;
+
+    /** JSON converter of the services */
+    private final Gson gson;
+
+    /** HTTP client and services, see {@link #setHttpClient(OkHttpClient)} */
+    private volatile Transport transport;
+
+    /** coalescing of identical calls made through the services */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /** executor of callbacks of calls failing without reaching Retrofit */
+    private final Executor callbackExecutor = createCallbackExecutor();
+
+    /** retries and circuit breakers of calls made through the services */
+    private final ResilientCaller resilientCaller = new ResilientCaller(callbackExecutor);
+
+    /** pacing of publications made through the post service */
+    private final PublishRateLimiter publishRateLimiter;
+
+    // endregion
+
+    // region Lifecycle
+
+    private ServiceManagerProvider(String subdomain, OkHttpClient client) {
+        endpoint = String.format("https://%s.api.oneall.com", subdomain);
+
+        // generated adapters must be registered first: Gson consults factories in reverse order,
+        // so ItemTypeAdapterFactory delegates to them after unwrapping the response envelope
+        gson = new GsonBuilder()
+                .registerTypeAdapterFactory(new JsonModelTypeAdapterFactory())
+                .registerTypeAdapterFactory(new ItemTypeAdapterFactory())
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .setDateFormat("yyyy'-'MM'-'dd'T'HH':'mm':'ss'.'SSS'Z'")
+                .create();
+
+        Settings settings = Settings.getInstance();
+        publishRateLimiter = new PublishRateLimiter(
+                settings.getUserPublishRateLimit(), settings.getProviderPublishRateLimit());
+
+        transport = createTransport(client);
+    }
+
+    public static ServiceManagerProvider getInstance() {
+        if (mInstance == null) {
+            synchronized (ServiceManagerProvider.class) {
+                String subdomain = Settings.getInstance().getSubdomain();
+                if (mInstance == null && subdomain != null) {
+                    mInstance = new ServiceManagerProvider(subdomain, customHttpClient);
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    /**
+     * create manager of services independent of the shared instance, with its own HTTP client,
+     * connection pool and circuit breakers. Other settings are read from {@link Settings}.
+     *
+     * @param subdomain subdomain of OneAll application
+     *
+     * @return new manager
+     */
+    public static ServiceManagerProvider create(String subdomain) {
+        if (subdomain == null || subdomain.trim().length() == 0) {
+            throw new IllegalArgumentException("Subdomain cannot be empty");
+        }
+        synchronized (ServiceManagerProvider.class) {
+            return new ServiceManagerProvider(subdomain, customHttpClient);
+        }
+    }
+
+    /**
+     * replace the HTTP client used to access OneAll API. Allows the application to share its own
+     * client (and its connection pool) with the SDK. The SDK works on a copy of the client, so
+     * its own interceptors are never added to {@code client}.
+     *
+     * The shared instance switches to the new client right away, keeping its circuit breakers,
+     * calls in flight and rate limits; calls already made finish on the previous client. Services
+     * retrieved before this call keep using the previous client, managers created with
+     * {@link #create(String)} keep theirs.
+     *
+     * @param client client to use, {@code null} to restore the default client
+     */
+    public static void setHttpClient(OkHttpClient client) {
+        synchronized (ServiceManagerProvider.class) {
+            customHttpClient = client;
+            if (mInstance != null) {
+                mInstance.transport = mInstance.createTransport(client);
+            }
+        }
+    }
+
+    /**
+     * apply the publish rate limits of settings to the shared instance, if it exists already
+     *
+     * @param settings settings whose limits have changed
+     */
+    static void applyPublishRateLimits(Settings settings) {
+        ServiceManagerProvider instance = mInstance;
+        if (instance != null && settings == Settings.getInstance()) {
+            instance.publishRateLimiter.setLimits(
+                    settings.getUserPublishRateLimit(), settings.getProviderPublishRateLimit());
+        }
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * get HTTP client used by the services
+     *
+     * @return HTTP client
+     */
+    public OkHttpClient getHttpClient() {
+        return transport.httpClient;
+    }
+
+    /**
+     * get JSON converter of the services, e.g. to serialize request bodies ahead of the calls
+     *
+     * @return Gson instance used by the services
+     */
+    public Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * get coalescing layer for identical calls in flight
+     *
+     * @return single flight instance shared by all users of the services
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * get resilience layer retrying calls and tracking health of the endpoints
+     *
+     * @return resilient caller shared by all users of the services
+     */
+    public ResilientCaller getResilientCaller() {
+        return resilientCaller;
+    }
+
+    /**
+     * get pacing of publications, e.g. to pause a user the server has asked to slow down
+     *
+     * @return rate limiter shared by all users of the post service
+     */
+    public PublishRateLimiter getPublishRateLimiter() {
+        return publishRateLimiter;
+    }
+
+    public ProviderService getService() {
+        return getCachedService(transport, ProviderService.class);
+    }
+
+    public ConnectionService getConnectionService() {
+        return getCachedService(transport, ConnectionService.class);
+    }
+
+    /**
+     * get post service; publications made through it are paced by
+     * {@link #getPublishRateLimiter()}
+     *
+     * @return post service
+     */
+    public MessagePostService getPostService() {
+        Transport current = transport;
+        if (current.postService == null) {
+            synchronized (current) {
+                if (current.postService == null) {
+                    current.postService = new RateLimitedPostService(
+                            getCachedService(current, MessagePostService.class),
+                            publishRateLimiter,
+                            callbackExecutor);
+                }
+            }
+        }
+        return current.postService;
+    }
+
+    public UserService getUserService() {
+        return getCachedService(transport, UserService.class);
+    }
+
+    /**
+     * create all services ahead of their first use. Should be called from a background thread,
+     * so that the first API calls do not pay for the creation of service proxies.
+     */
+    public void prewarm() {
+        getService();
+        getConnectionService();
+        getPostService();
+        getUserService();
+    }
+
+    public static String buildAuthHeader(String nonce) {
+        return String.format("OneAllNonce %s", nonce);
+    }
+
+    public static String buildPublishAuthHeader(String token) {
+        return String.format("OneAllPublishToken %s", token);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * create HTTP client and REST adapter of the services
+     *
+     * @param client HTTP client supplied by the application, {@code null} for the default one
+     *
+     * @return transport without any service created yet
+     */
+    private Transport createTransport(OkHttpClient client) {
+        OkHttpClient httpClient =
+                installNetworkLogger(client != null ? client.clone() : createHttpClient());
+
+        RestAdapter restAdapter = new RestAdapter.Builder()
+                .setLogLevel(RestAdapter.LogLevel.NONE)
+                .setClient(new CancellableOkClient(httpClient))
+                .setRequestInterceptor(new RequestInterceptor() {
+                    @Override
+                    public void intercept(RequestFacade request) {
+                        // runs on the thread making the service call, see Cancellation
+                        String tag = Cancellation.currentTag();
+                        if (tag != null) {
+                            request.addHeader(Cancellation.TAG_HEADER, tag);
+                        }
+                    }
+                })
+                .setEndpoint(endpoint)
+                .setConverter(new GsonConverter(gson))
+                .build();
+
+        return new Transport(httpClient, restAdapter);
+    }
+
+    /**
+     * create default HTTP client: connections to OneAll API are kept alive in a pool and
+     * multiplexed over HTTP/2 when the server and the platform support it, so that consecutive
+     * calls reuse the same TLS connection
+     *
+     * @return HTTP client
+     */
+    private static OkHttpClient createHttpClient() {
+        Settings settings = Settings.getInstance();
+
+        OkHttpClient client = new OkHttpClient();
+        client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION));
+        client.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        client.setConnectTimeout(settings.getConnectTimeout(), TimeUnit.MILLISECONDS);
+        client.setReadTimeout(settings.getReadTimeout(), TimeUnit.MILLISECONDS);
+        client.setWriteTimeout(settings.getWriteTimeout(), TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    /**
+     * add network logger to the HTTP client. The logger follows the network log settings of
+     * {@link Settings} on every request, so they can be changed at any time.
+     *
+     * @param client HTTP client
+     *
+     * @return the same client
+     */
+    private static OkHttpClient installNetworkLogger(OkHttpClient client) {
+        client.interceptors().add(new NetworkLogger(
+                Settings.getInstance(),
+                Arrays.asList(NetworkLogger.DEFAULT_REDACTED_HEADERS),
+                createNetworkLog()));
+        return client;
+    }
+
+    /**
+     * create executor of callbacks of calls failing without reaching Retrofit, the same as
+     * Retrofit uses for the other callbacks
+     *
+     * @return main thread executor on Android, otherwise executor running callbacks right away
+     */
+    private static Executor createCallbackExecutor() {
+        if (ANDROID) {
+            return AndroidPlatform.createCallbackExecutor();
+        }
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+    }
+
+    /**
+     * create log of network logger
+     *
+     * @return Android log on Android, otherwise {@link java.util.logging} log
+     */
+    private static RestAdapter.Log createNetworkLog() {
+        if (ANDROID) {
+            return AndroidPlatform.createLog(LOG_TAG);
+        }
+        final Logger logger = Logger.getLogger(LOG_TAG);
+        return new RestAdapter.Log() {
+            @Override
+            public void log(String message) {
+                logger.info(message);
+            }
+        };
+    }
+
+    /**
+     * detect Android runtime. The Android classes available to unit tests on a JVM report SDK
+     * version {@code 0}, they do not count.
+     *
+     * @return {@code true} on Android
+     */
+    private static boolean isAndroid() {
+        try {
+            return Class.forName("android.os.Build$VERSION").getField("SDK_INT").getInt(null) != 0;
+        } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException
+                | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * parts depending on Android, kept apart so that they are never loaded on a plain JVM
+     */
+    private static final class AndroidPlatform {
+        static Executor createCallbackExecutor() {
+            return new MainThreadExecutor();
+        }
+
+        static RestAdapter.Log createLog(String tag) {
+            return new AndroidLog(tag);
+        }
+    }
+
+    /**
+     * get service of specified type, creating it on first use
+     *
+     * @param transport    transport the service uses
+     * @param serviceClass service interface
+     *
+     * @return service instance
+     */
+    private static <T> T getCachedService(Transport transport, Class<T> serviceClass) {
+        Object service = transport.services.get(serviceClass);
+        if (service == null) {
+            Object created = transport.restAdapter.create(serviceClass);
+            service = transport.services.putIfAbsent(serviceClass, created);
+            if (service == null) {
+                service = created;
+            }
+        }
+        return serviceClass.cast(service);
+    }
+
+    // endregion
+}
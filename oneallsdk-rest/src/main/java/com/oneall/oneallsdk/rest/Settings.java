@@ -0,0 +1,334 @@
+package com.oneall.oneallsdk.rest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Shared settings wrapper
+ */
+public class Settings {
+
+    // region Properties
+
+    private static Settings mInstance = null;
+
+    // endregion
+
+    // region Settings properties
+
+    private String subdomain;
+
+    /** time the cached providers list is used without revalidation, in milliseconds */
+    private long providersTtl = 24 * 60 * 60 * 1000L;
+
+    /** maximum random delay of a background providers list revalidation, in milliseconds */
+    private long providersRefreshJitter = 30 * 1000L;
+
+    /** timeout of establishing connection with OneAll API, in milliseconds */
+    private long connectTimeout = 15 * 1000L;
+
+    /** timeout of reading response from OneAll API, in milliseconds */
+    private long readTimeout = 20 * 1000L;
+
+    /** timeout of sending request to OneAll API, in milliseconds */
+    private long writeTimeout = 20 * 1000L;
+
+    /** amount of information logged about OneAll API requests */
+    private volatile NetworkLogger.Level networkLogLevel = NetworkLogger.Level.NONE;
+
+    /** share of OneAll API requests logged, between 0 and 1 */
+    private volatile double networkLogSampleRate = 1.0;
+
+    /** maximum number of body bytes logged per request and response */
+    private volatile long networkLogMaxBodySize = 4 * 1024L;
+
+    /** time a login may take from its start to the user information, 0 for no limit, in milliseconds */
+    private long loginTimeout = 3 * 60 * 1000L;
+
+    /** time a message post may take, including retries, 0 for no limit, in milliseconds */
+    private long postTimeout = 60 * 1000L;
+
+    /** maximum number of logins in progress at the same time, the oldest one is dropped beyond it */
+    private int maxLoginSessions = 4;
+
+    /** time after which a login is dropped if {@link #loginTimeout} does not limit it, in milliseconds */
+    private long loginSessionMaxAge = 60 * 60 * 1000L;
+
+    /** time a user retrieved after native login is reused for the same native token, 0 to disable, in milliseconds */
+    private long nativeLoginCacheTtl = 10 * 60 * 1000L;
+
+    /** maximum number of users kept for repeated native logins */
+    private int nativeLoginCacheSize = 8;
+
+    /** retry policies by endpoint, endpoints not listed use the default of their kind */
+    private final Map<ApiEndpoint, RetryPolicy> retryPolicies = new EnumMap<>(ApiEndpoint.class);
+
+    /** how providers which have throttled a publication are published to again */
+    private RetryPolicy publicationRetryPolicy = new RetryPolicy(3, 1000, 10 * 1000, 2.0, 0.5);
+
+    /** pacing of the publications of every user, across providers */
+    private RateLimit userPublishRateLimit = RateLimit.NONE;
+
+    /** pacing of the publications to every provider, across users */
+    private RateLimit providerPublishRateLimit = RateLimit.NONE;
+
+    /** maximum number of queued messages sent at a time when the outbox is flushed */
+    private int outboxConcurrency = 2;
+
+    /** number of queued messages sent in one batch, the outbox is read again between batches */
+    private int outboxBatchSize = 10;
+
+    /** delay of the next flush of the outbox after messages could not be delivered, in milliseconds */
+    private long outboxRetryDelay = 60 * 1000L;
+
+    /** number of consecutive failures of an endpoint making the SDK stop calling it for a while */
+    private int circuitBreakerFailureThreshold = 5;
+
+    /** time calls to a failing endpoint are rejected without reaching the network, in milliseconds */
+    private long circuitBreakerOpenDuration = 30 * 1000L;
+
+    // endregion
+
+    // region Lifecycle
+
+    public static Settings getInstance() {
+        if (mInstance == null) {
+            synchronized (Settings.class) {
+                if (mInstance == null) {
+                    mInstance = new Settings();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+
+    // endregion
+
+    // region Settings getters/setters
+
+    public String getSubdomain() {
+        return subdomain;
+    }
+    public void setSubdomain(String subdomain) {
+        this.subdomain = subdomain;
+    }
+
+    public long getProvidersTtl() {
+        return providersTtl;
+    }
+    public void setProvidersTtl(long providersTtl) {
+        this.providersTtl = providersTtl;
+    }
+
+    public long getProvidersRefreshJitter() {
+        return providersRefreshJitter;
+    }
+    public void setProvidersRefreshJitter(long providersRefreshJitter) {
+        this.providersRefreshJitter = providersRefreshJitter;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+    public void setReadTimeout(long readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public long getWriteTimeout() {
+        return writeTimeout;
+    }
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public NetworkLogger.Level getNetworkLogLevel() {
+        return networkLogLevel;
+    }
+    public void setNetworkLogLevel(NetworkLogger.Level networkLogLevel) {
+        this.networkLogLevel = networkLogLevel;
+    }
+
+    public double getNetworkLogSampleRate() {
+        return networkLogSampleRate;
+    }
+    public void setNetworkLogSampleRate(double networkLogSampleRate) {
+        this.networkLogSampleRate = networkLogSampleRate;
+    }
+
+    public long getNetworkLogMaxBodySize() {
+        return networkLogMaxBodySize;
+    }
+    public void setNetworkLogMaxBodySize(long networkLogMaxBodySize) {
+        this.networkLogMaxBodySize = networkLogMaxBodySize;
+    }
+
+    public long getLoginTimeout() {
+        return loginTimeout;
+    }
+    public void setLoginTimeout(long loginTimeout) {
+        this.loginTimeout = loginTimeout;
+    }
+
+    public long getPostTimeout() {
+        return postTimeout;
+    }
+    public void setPostTimeout(long postTimeout) {
+        this.postTimeout = postTimeout;
+    }
+
+    public int getMaxLoginSessions() {
+        return maxLoginSessions;
+    }
+    public void setMaxLoginSessions(int maxLoginSessions) {
+        this.maxLoginSessions = maxLoginSessions;
+    }
+
+    public long getLoginSessionMaxAge() {
+        return loginSessionMaxAge;
+    }
+    public void setLoginSessionMaxAge(long loginSessionMaxAge) {
+        this.loginSessionMaxAge = loginSessionMaxAge;
+    }
+
+    public long getNativeLoginCacheTtl() {
+        return nativeLoginCacheTtl;
+    }
+    public void setNativeLoginCacheTtl(long nativeLoginCacheTtl) {
+        this.nativeLoginCacheTtl = nativeLoginCacheTtl;
+    }
+
+    public int getNativeLoginCacheSize() {
+        return nativeLoginCacheSize;
+    }
+    public void setNativeLoginCacheSize(int nativeLoginCacheSize) {
+        this.nativeLoginCacheSize = nativeLoginCacheSize;
+    }
+
+    /**
+     * get retry policy of endpoint
+     *
+     * @param endpoint API endpoint
+     *
+     * @return policy set by {@link #setRetryPolicy(ApiEndpoint, RetryPolicy)}, otherwise
+     * {@link RetryPolicy#DEFAULT} for idempotent endpoints and {@link RetryPolicy#NONE} for others
+     */
+    public synchronized RetryPolicy getRetryPolicy(ApiEndpoint endpoint) {
+        RetryPolicy policy = retryPolicies.get(endpoint);
+        if (policy != null) {
+            return policy;
+        }
+        return endpoint.isIdempotent() ? RetryPolicy.DEFAULT : RetryPolicy.NONE;
+    }
+    /**
+     * set retry policy of endpoint. Retrying non idempotent endpoints (e.g. publishing) may
+     * duplicate their effect when a response is lost.
+     *
+     * @param endpoint API endpoint
+     * @param policy   retry policy, {@code null} to restore the default
+     */
+    public synchronized void setRetryPolicy(ApiEndpoint endpoint, RetryPolicy policy) {
+        if (policy == null) {
+            retryPolicies.remove(endpoint);
+        } else {
+            retryPolicies.put(endpoint, policy);
+        }
+    }
+
+    /**
+     * get policy of publishing again to the providers which have throttled a message post. Only
+     * these providers are sent the message again: they have certainly not published it, so it is
+     * not published twice.
+     *
+     * @return policy, {@link RetryPolicy#NONE} if failed providers are not published to again
+     */
+    public synchronized RetryPolicy getPublicationRetryPolicy() {
+        return publicationRetryPolicy;
+    }
+    public synchronized void setPublicationRetryPolicy(RetryPolicy publicationRetryPolicy) {
+        this.publicationRetryPolicy =
+                publicationRetryPolicy != null ? publicationRetryPolicy : RetryPolicy.NONE;
+    }
+
+    /**
+     * get pacing of the publications of every user. Changes apply right away to the shared
+     * services; managers created with {@link ServiceManagerProvider#create(String)} keep the
+     * limits they were created with.
+     *
+     * @return rate limit, {@link RateLimit#NONE} by default
+     * @see com.oneall.oneallsdk.rest.PublishRateLimiter
+     */
+    public synchronized RateLimit getUserPublishRateLimit() {
+        return userPublishRateLimit;
+    }
+    public void setUserPublishRateLimit(RateLimit userPublishRateLimit) {
+        synchronized (this) {
+            this.userPublishRateLimit =
+                    userPublishRateLimit != null ? userPublishRateLimit : RateLimit.NONE;
+        }
+        // outside of the lock, the limiter may start waiting publications on this thread
+        ServiceManagerProvider.applyPublishRateLimits(this);
+    }
+
+    /**
+     * get pacing of the publications to every provider. Changes apply as for
+     * {@link #getUserPublishRateLimit()}.
+     *
+     * @return rate limit, {@link RateLimit#NONE} by default
+     * @see com.oneall.oneallsdk.rest.PublishRateLimiter
+     */
+    public synchronized RateLimit getProviderPublishRateLimit() {
+        return providerPublishRateLimit;
+    }
+    public void setProviderPublishRateLimit(RateLimit providerPublishRateLimit) {
+        synchronized (this) {
+            this.providerPublishRateLimit =
+                    providerPublishRateLimit != null ? providerPublishRateLimit : RateLimit.NONE;
+        }
+        ServiceManagerProvider.applyPublishRateLimits(this);
+    }
+
+    public int getOutboxConcurrency() {
+        return outboxConcurrency;
+    }
+    public void setOutboxConcurrency(int outboxConcurrency) {
+        this.outboxConcurrency = outboxConcurrency;
+    }
+
+    public int getOutboxBatchSize() {
+        return outboxBatchSize;
+    }
+    public void setOutboxBatchSize(int outboxBatchSize) {
+        this.outboxBatchSize = outboxBatchSize;
+    }
+
+    public long getOutboxRetryDelay() {
+        return outboxRetryDelay;
+    }
+    public void setOutboxRetryDelay(long outboxRetryDelay) {
+        this.outboxRetryDelay = outboxRetryDelay;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenDuration() {
+        return circuitBreakerOpenDuration;
+    }
+    public void setCircuitBreakerOpenDuration(long circuitBreakerOpenDuration) {
+        this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+    }
+
+    // endregion
+}
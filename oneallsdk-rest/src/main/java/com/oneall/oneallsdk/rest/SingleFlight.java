@@ -0,0 +1,291 @@
+package com.oneall.oneallsdk.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/**
+ * Coalesces identical API calls. While a call identified by a key is in flight, further calls
+ * with the same key do not reach the network: their callbacks are attached to the running call and
+ * receive its result. Once the result has been delivered, the next call with the key goes to the
+ * network again, so results are never cached beyond the lifetime of a call.
+ *
+ * Calls made on behalf of cancellable operations, see
+ * {@link #execute(String, Deadline, Cancellation, SharedCall, Callback)}, belong to none of them:
+ * they have their own cancellation and run until the latest deadline of the operations joining
+ * them. An operation which is cancelled leaves the call, which is only cancelled once all of its
+ * operations have left.
+ *
+ * Only calls without side effects on the server should be coalesced. The response object is
+ * shared by all callbacks of a call and should not be modified by them.
+ */
+public class SingleFlight {
+
+    // region Helper classes
+
+    /**
+     * call shared by several cancellable operations
+     *
+     * @param <T> type of the response
+     */
+    public interface SharedCall<T> {
+
+        /**
+         * start the call
+         *
+         * @param deadline     deadline of the call, extended as operations join it
+         * @param cancellation cancellation of the call, cancelled once all operations have left
+         * @param callback     callback which must receive the result of the call
+         */
+        void execute(Deadline deadline, Cancellation cancellation, Callback<T> callback);
+    }
+
+    /** callback waiting for the result of a call, along with the operation it belongs to */
+    private class Member<T> implements Runnable {
+        private final Flight<T> flight;
+        private final Callback<T> callback;
+        private final Cancellation cancellation;
+
+        Member(Flight<T> flight, Callback<T> callback, Cancellation cancellation) {
+            this.flight = flight;
+            this.callback = callback;
+            this.cancellation = cancellation;
+        }
+
+        /** the operation has been cancelled */
+        @Override
+        public void run() {
+            leave(this);
+        }
+    }
+
+    /** call in flight along with the callbacks waiting for its result */
+    private class Flight<T> implements Callback<T> {
+        private final String key;
+        private final List<Member<T>> members = new ArrayList<>(2);
+
+        /** deadline of a shared call, {@code null} for other calls */
+        private final Deadline deadline;
+
+        /** cancellation of a shared call, {@code null} for other calls */
+        private final Cancellation cancellation;
+
+        Flight(String key, Deadline deadline, Cancellation cancellation) {
+            this.key = key;
+            this.deadline = deadline;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void success(T t, Response response) {
+            for (Callback<T> callback : land(this)) {
+                callback.success(t, response);
+            }
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            for (Callback<T> callback : land(this)) {
+                callback.failure(error);
+            }
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    /** calls in flight by their keys, guarded by itself */
+    private final Map<String, Flight<?>> flights = new HashMap<>();
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * start call unless an identical one is in flight, in which case {@code callback} receives the
+     * result of the call in flight
+     *
+     * @param key      key identifying the call, e.g. resource path with parameters
+     * @param call     call to start if there is no call with {@code key} in flight
+     * @param callback callback to receive the result
+     * @param <T>      type of the response
+     *
+     * @return {@code true} if a new call has been started, {@code false} if the callback has been
+     * attached to a call in flight
+     */
+    public <T> boolean execute(String key, final ServiceCall<T> call, Callback<T> callback) {
+        return execute(key, null, Cancellation.NONE, new SharedCall<T>() {
+            @Override
+            public void execute(
+                    Deadline deadline, Cancellation cancellation, Callback<T> callback) {
+                call.execute(callback);
+            }
+        }, callback, true);
+    }
+
+    /**
+     * start call on behalf of a cancellable operation unless an identical one is in flight, in
+     * which case {@code callback} receives the result of the call in flight. Once the operation is
+     * cancelled {@code callback} is detached from the call and never invoked; the call itself is
+     * cancelled only if no other operation waits for it.
+     *
+     * @param key          key identifying the call, e.g. resource path with parameters
+     * @param deadline     deadline of the operation
+     * @param cancellation cancellation of the operation
+     * @param call         call to start if there is no call with {@code key} in flight
+     * @param callback     callback to receive the result
+     * @param <T>          type of the response
+     *
+     * @return {@code true} if a new call has been started, {@code false} if the callback has been
+     * attached to a call in flight
+     */
+    public <T> boolean execute(
+            String key,
+            Deadline deadline,
+            Cancellation cancellation,
+            SharedCall<T> call,
+            Callback<T> callback) {
+        return execute(key, deadline, cancellation, call, callback, true);
+    }
+
+    /**
+     * start call unless an identical one is in flight, in which case the request is dropped and
+     * {@code callback} is never invoked. Suitable for calls whose results are consumed as a side
+     * effect of the callback of the call in flight, e.g. refreshing shared state.
+     *
+     * @param key      key identifying the call, e.g. resource path with parameters
+     * @param call     call to start if there is no call with {@code key} in flight
+     * @param callback callback to receive the result if the call is started
+     * @param <T>      type of the response
+     *
+     * @return {@code true} if a new call has been started, {@code false} if the request has been
+     * dropped
+     */
+    public <T> boolean executeIfIdle(String key, final ServiceCall<T> call, Callback<T> callback) {
+        return execute(key, null, Cancellation.NONE, new SharedCall<T>() {
+            @Override
+            public void execute(
+                    Deadline deadline, Cancellation cancellation, Callback<T> callback) {
+                call.execute(callback);
+            }
+        }, callback, false);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * start call or join the identical one in flight
+     *
+     * @param deadline deadline of the operation, {@code null} for calls which are not shared
+     */
+    private <T> boolean execute(
+            String key,
+            Deadline deadline,
+            Cancellation cancellation,
+            SharedCall<T> call,
+            Callback<T> callback,
+            boolean join) {
+
+        Flight<T> flight;
+        Member<T> member;
+        boolean started;
+        synchronized (flights) {
+            @SuppressWarnings("unchecked")
+            Flight<T> existing = (Flight<T>) flights.get(key);
+            flight = existing;
+            started = flight == null;
+            if (started) {
+                flight = deadline != null
+                        ? new Flight<T>(key, Deadline.extendable(deadline), new Cancellation())
+                        : new Flight<T>(key, null, null);
+                flights.put(key, flight);
+            } else if (!join) {
+                return false;
+            } else if (flight.deadline != null) {
+                flight.deadline.extendTo(deadline != null ? deadline : Deadline.NONE);
+            }
+            member = new Member<>(flight, callback, cancellation);
+            flight.members.add(member);
+        }
+
+        // outside of the lock: the listener runs right away if the operation is cancelled already
+        cancellation.addListener(member);
+        if (!started) {
+            return false;
+        }
+
+        try {
+            call.execute(
+                    flight.deadline != null ? flight.deadline : Deadline.NONE,
+                    flight.cancellation != null ? flight.cancellation : Cancellation.NONE,
+                    flight);
+        } catch (RuntimeException e) {
+            // the call has never started: the caller gets the exception, callbacks attached in the
+            // meantime get a failure instead of waiting forever
+            RetrofitError error = RetrofitError.unexpectedError(key, e);
+            for (Callback<T> waiting : land(flight)) {
+                if (waiting != callback) {
+                    waiting.failure(error);
+                }
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * detach callback of a cancelled operation from its call, and cancel the call if it was the
+     * last one waiting
+     *
+     * @param member callback of the cancelled operation
+     */
+    private <T> void leave(Member<T> member) {
+        Flight<T> flight = member.flight;
+        synchronized (flights) {
+            if (!flight.members.remove(member) || !flight.members.isEmpty()
+                    || flight.cancellation == null) {
+                return;
+            }
+            // the next call with the key has to start afresh
+            if (flights.get(flight.key) == flight) {
+                flights.remove(flight.key);
+            }
+        }
+        flight.cancellation.cancel();
+    }
+
+    /**
+     * remove call from the calls in flight
+     *
+     * @param flight call which result has been received
+     *
+     * @return callbacks waiting for the result
+     */
+    private <T> List<Callback<T>> land(Flight<T> flight) {
+        List<Member<T>> members;
+        synchronized (flights) {
+            if (flights.get(flight.key) == flight) {
+                flights.remove(flight.key);
+            }
+            members = new ArrayList<>(flight.members);
+            flight.members.clear();
+        }
+
+        List<Callback<T>> callbacks = new ArrayList<>(members.size());
+        for (Member<T> member : members) {
+            member.cancellation.removeListener(member);
+            callbacks.add(member.callback);
+        }
+        return callbacks;
+    }
+
+    // endregion
+}
@@ -0,0 +1,158 @@
+package com.oneall.oneallsdk.rest;
+
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/**
+ * Makes one call per item of a source through the {@link ResilientCaller} of the services, with at
+ * most a fixed number of calls in flight. Items are pulled from their source only when a slot is
+ * free, so that arbitrarily long sources are never buffered in memory. Used by the bulk
+ * operations, e.g. {@link BulkPublisher}.
+ *
+ * Results are handled as calls complete, in no particular order, on the thread Retrofit delivers
+ * them on; a failed call is handled and does not stop the batch. A dispatch runs one batch.
+ *
+ * @param <I> type of the items
+ * @param <T> type of the results of the calls
+ */
+final class WindowedDispatch<I, T> {
+
+    // region Helper classes and interfaces
+
+    /**
+     * makes the call of an item and handles its result. Result methods may be called from several
+     * threads at the same time.
+     */
+    interface Handler<I, T> {
+        /** @return call of item, made by the calling thread of {@link #run} */
+        ServiceCall<T> createCall(I item);
+        void onSuccess(I item, T result);
+        void onFailure(I item, RetrofitError error);
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final ResilientCaller caller;
+
+    private final ApiEndpoint endpoint;
+
+    private final int window;
+
+    private final Handler<I, T> handler;
+
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates dispatch
+     *
+     * @param caller   caller making the calls
+     * @param endpoint endpoint of the calls, for their retry policy and circuit breaker
+     * @param window   maximum number of calls in flight at a time, positive
+     * @param handler  handler of the items
+     */
+    WindowedDispatch(
+            ResilientCaller caller, ApiEndpoint endpoint, int window, Handler<I, T> handler) {
+        this.caller = caller;
+        this.endpoint = endpoint;
+        this.window = window;
+        this.handler = handler;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * make the calls of items pulled from a source one by one, as slots become free, and wait
+     * until all of them are complete
+     *
+     * @param items        source of items, only used by the calling thread
+     * @param cancellation cancellation of the batch; once cancelled no more items are pulled and
+     *                     calls in flight are aborted
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting; calls in
+     *                              flight are cancelled
+     */
+    void run(Iterator<I> items, Cancellation cancellation) throws InterruptedException {
+        final Semaphore slots = new Semaphore(window);
+
+        try {
+            while (!cancellation.isCancelled() && items.hasNext()) {
+                slots.acquire();
+                try {
+                    I item = items.next();
+                    caller.execute(
+                            endpoint,
+                            Deadline.NONE,
+                            cancellation,
+                            handler.createCall(item),
+                            createCallback(item, slots));
+                } catch (RuntimeException e) {
+                    // the callback will never run
+                    slots.release();
+                    throw e;
+                }
+            }
+
+            // wait for the calls in flight
+            slots.acquire(window);
+            slots.release(window);
+        } catch (InterruptedException | RuntimeException e) {
+            cancellation.cancel();
+            throw e;
+        }
+    }
+
+    /** @return number of calls which have succeeded */
+    int getSucceeded() {
+        return succeeded.get();
+    }
+
+    /** @return number of calls which have failed, including aborted ones */
+    int getFailed() {
+        return failed.get();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private Callback<T> createCallback(final I item, final Semaphore slots) {
+        return new Callback<T>() {
+            @Override
+            public void success(T result, Response response) {
+                succeeded.incrementAndGet();
+                try {
+                    handler.onSuccess(item, result);
+                } finally {
+                    slots.release();
+                }
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                failed.incrementAndGet();
+                try {
+                    handler.onFailure(item, error);
+                } finally {
+                    slots.release();
+                }
+            }
+        };
+    }
+
+    // endregion
+}
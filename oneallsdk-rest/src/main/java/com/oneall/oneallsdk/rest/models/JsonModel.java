@@ -0,0 +1,20 @@
+package com.oneall.oneallsdk.rest.models;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class for which a Gson type adapter is generated at compile time. Adapters are
+ * generated for the class and all classes nested in it, and returned by
+ * {@code JsonModelTypeAdapterFactory} of the package.
+ *
+ * Fields are mapped to JSON members named by {@link com.google.gson.annotations.SerializedName}
+ * or, when there is none, by the field name in lower case with underscores. Private fields must
+ * have a getter and a setter.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
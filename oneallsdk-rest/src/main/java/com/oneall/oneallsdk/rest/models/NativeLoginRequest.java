@@ -9,15 +9,20 @@ import java.lang.reflect.Type;
 
 /** model of object sent to OneAll API server to login using access token received from native
  * authentication */
+@JsonModel
 public class NativeLoginRequest {
-    public class Request {
-        public class User {
-            public class Identity {
-                public class Source {
-                    public class AccessToken {
+    public static class Request {
+        public static class User {
+            public static class Identity {
+                public static class Source {
+                    public static class AccessToken {
                         public String key;
                         public String secret;
 
+                        /** used by the generated type adapter */
+                        AccessToken() {
+                        }
+
                         public AccessToken(String accessToken, String secret) {
                             this.key = accessToken;
                             this.secret = secret;
@@ -26,6 +31,10 @@ public class NativeLoginRequest {
                     public String key;
                     public AccessToken accessToken;
 
+                    /** used by the generated type adapter */
+                    Source() {
+                    }
+
                     public Source(String provider, String accessToken, String secret) {
                         this.key = provider;
                         this.accessToken = new AccessToken(accessToken, secret);
@@ -33,6 +42,10 @@ public class NativeLoginRequest {
                 }
                 public Source source;
 
+                /** used by the generated type adapter */
+                Identity() {
+                }
+
                 public Identity(String provider, String accessToken, String secret) {
                     this.source = new Source(provider, accessToken, secret);
                 }
@@ -40,18 +53,30 @@ public class NativeLoginRequest {
             public String action = "import_from_access_token";
             public Identity identity;
 
+            /** used by the generated type adapter */
+            User() {
+            }
+
             public User(String provider, String accessToken, String secret) {
                 this.identity = new Identity(provider, accessToken, secret);
             }
         }
         public User user;
 
+        /** used by the generated type adapter */
+        Request() {
+        }
+
         public Request(String provider, String accessToken, String secret) {
             this.user = new User(provider, accessToken, secret);
         }
     }
     public Request request;
 
+    /** used by the generated type adapter */
+    NativeLoginRequest() {
+    }
+
     public NativeLoginRequest(String provider, String accessToken, String secret) {
         this.request = new Request(provider, accessToken, secret);
     }
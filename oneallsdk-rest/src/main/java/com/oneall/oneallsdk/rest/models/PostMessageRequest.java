@@ -3,12 +3,13 @@ package com.oneall.oneallsdk.rest.models;
 import java.util.ArrayList;
 import java.util.Collection;
 
+@JsonModel
 public class PostMessageRequest {
     public static class Request {
         public static class Message {
             public static class Parts {
 
-                private static class Link {
+                public static class Link {
                     public String url;
                     public String name;
                     public String caption;
@@ -78,4 +79,25 @@ public class PostMessageRequest {
         this.request.message.parts.flags = new Request.Message.Parts.Flags();
         this.request.message.parts.flags.enableTracking = enableTracking ? 1 : 0;
     }
-}
\ No newline at end of file
+
+    /** used by the generated type adapter */
+    PostMessageRequest() {
+    }
+
+    /**
+     * create copy of the request publishing the same message to other providers. The parts of the
+     * message are shared with this request.
+     *
+     * @param providers providers to publish to
+     *
+     * @return new request
+     */
+    public PostMessageRequest withProviders(Collection<String> providers) {
+        PostMessageRequest copy = new PostMessageRequest();
+        copy.request = new Request();
+        copy.request.message = new Request.Message();
+        copy.request.message.parts = this.request.message.parts;
+        copy.request.message.providers = new ArrayList<>(providers);
+        return copy;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Collection;
 /**
  * Created by urk on 15/3/15.
  */
+@JsonModel
 public class PostMessageResponse {
     public static class Data {
         public static class Message {
@@ -5,8 +5,9 @@ import java.io.Serializable;
 /**
  * Created by urk on 9/3/15.
  */
+@JsonModel
 public class Provider implements Serializable {
-    public class Configuration implements Serializable {
+    public static class Configuration implements Serializable {
         private Boolean isRequired;
         private Boolean isCompleted;
 
@@ -27,7 +28,7 @@ public class Provider implements Serializable {
         }
     }
 
-    public class Authentication implements Serializable {
+    public static class Authentication implements Serializable {
         private Boolean isUserInputRequired;
         private String userInputType;
 
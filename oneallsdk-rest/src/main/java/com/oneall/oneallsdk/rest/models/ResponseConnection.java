@@ -6,16 +6,17 @@ import java.util.List;
 /**
  * data model for connection
  */
+@JsonModel
 public class ResponseConnection implements Serializable {
 
-    public class Status {
+    public static class Status {
         public String flag;
         public Integer code;
         public String info;
     }
 
-    public class Data {
-        public class Connection implements Serializable {
+    public static class Data {
+        public static class Connection implements Serializable {
             public String connectionToken;
             public String date;
             public String plugin;
@@ -6,10 +6,11 @@ import java.util.List;
 /**
  * Created by urk on 9/3/15.
  */
+@JsonModel
 public class ResponseProvidersList implements Serializable {
 
-    public class Data implements Serializable {
-        public class Providers implements Serializable {
+    public static class Data implements Serializable {
+        public static class Providers implements Serializable {
             private Integer count;
             private List<Provider> entries;
 
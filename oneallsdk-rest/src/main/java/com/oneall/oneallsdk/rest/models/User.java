@@ -16,31 +16,32 @@ import java.util.List;
  *
  * @see <a href="https://docs.oneall.com/api/resources/users/read-user-details/">OneAll- read user details</a>
  */
+@JsonModel
 public class User implements Serializable {
-    public class Identity implements Serializable{
+    public static class Identity implements Serializable{
 
-        public class Name implements Serializable {
+        public static class Name implements Serializable {
             public String formatted;
         }
 
-        public class IdentityUrl implements Serializable {
+        public static class IdentityUrl implements Serializable {
             public String value;
             public String type;
         }
 
-        public class Account implements Serializable {
+        public static class Account implements Serializable {
             public String domain;
             public String userId;
             public String username;
         }
 
-        public class Photo implements Serializable {
+        public static class Photo implements Serializable {
             public String value;
             public String type;
             public String size;
         }
 
-        public class Email implements Serializable {
+        public static class Email implements Serializable {
             public String value;
             public Boolean isVerified;
         }
@@ -84,7 +85,7 @@ public class User implements Serializable {
         public List<Photo> photos;
     }
 
-    public class PublishToken implements Serializable {
+    public static class PublishToken implements Serializable {
         public String key;
 
         public String date_creation;
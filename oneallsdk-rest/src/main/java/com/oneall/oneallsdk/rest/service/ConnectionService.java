@@ -17,4 +17,10 @@ public interface ConnectionService {
             @Header("Authorization") String nonce,
             @Path("token") String token,
             Callback<ResponseConnection> cb);
+
+    /** synchronous variant of {@link #info(String, String, Callback)}, blocks the calling thread */
+    @GET("/connection/{token}.json")
+    ResponseConnection info(
+            @Header("Authorization") String nonce,
+            @Path("token") String token);
 }
@@ -0,0 +1,44 @@
+package com.oneall.oneallsdk.rest.service;
+
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+
+import retrofit.Callback;
+import retrofit.http.Body;
+import retrofit.http.Header;
+import retrofit.http.POST;
+import retrofit.http.Path;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Created by urk on 15/3/15.
+ */
+public interface MessagePostService {
+    @POST("/users/{token}/publish.json")
+    void post(
+            @Path("token") String userToken,
+            @Header("Authorization") String publishToken,
+            @Body PostMessageRequest message,
+            Callback<PostMessageResponse> callback);
+
+    /**
+     * variant of {@link #post(String, String, PostMessageRequest, Callback)} with the message
+     * already serialized, so that the same body can be sent for many users
+     */
+    @POST("/users/{token}/publish.json")
+    void post(
+            @Path("token") String userToken,
+            @Header("Authorization") String publishToken,
+            @Body TypedOutput message,
+            Callback<PostMessageResponse> callback);
+
+    /**
+     * synchronous variant of {@link #post(String, String, PostMessageRequest, Callback)}, blocks
+     * the calling thread
+     */
+    @POST("/users/{token}/publish.json")
+    PostMessageResponse post(
+            @Path("token") String userToken,
+            @Header("Authorization") String publishToken,
+            @Body PostMessageRequest message);
+}
@@ -0,0 +1,32 @@
+package com.oneall.oneallsdk.rest.service;
+
+import com.oneall.oneallsdk.rest.models.ResponseProvidersList;
+
+import retrofit.Callback;
+import retrofit.http.GET;
+import retrofit.http.Header;
+
+/**
+ * Service used to retrieve list of providers from OneAll API
+ */
+public interface ProviderService {
+
+    // region providers list API
+
+    /**
+     * retrieve list of providers. If validators of the previously received list are specified and
+     * the list has not changed since, the server replies with {@code 304 Not Modified}, which is
+     * reported to {@code cb} as a failure with HTTP status {@code 304} and an empty body.
+     *
+     * @param etag         (optional) {@code ETag} of the previously received list
+     * @param lastModified (optional) {@code Last-Modified} of the previously received list
+     * @param cb           callback
+     */
+    @GET("/providers.json")
+    void listProviders(
+            @Header("If-None-Match") String etag,
+            @Header("If-Modified-Since") String lastModified,
+            Callback<ResponseProvidersList> cb);
+
+    // endregion
+}
@@ -13,4 +13,8 @@ import retrofit.http.PUT;
 public interface UserService {
     @PUT("/users.json")
     void info(@Body NativeLoginRequest requestBody, Callback<ResponseConnection> callback);
+
+    /** synchronous variant of {@link #info(NativeLoginRequest, Callback)}, blocks the calling thread */
+    @PUT("/users.json")
+    ResponseConnection info(@Body NativeLoginRequest requestBody);
 }
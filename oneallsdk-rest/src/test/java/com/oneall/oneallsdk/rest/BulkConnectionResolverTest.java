@@ -0,0 +1,259 @@
+package com.oneall.oneallsdk.rest;
+
+import com.oneall.oneallsdk.rest.models.ResponseConnection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.ResponseBody;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Batches of lookups against a fake server answering from an interceptor of the HTTP client, so
+ * that the lookups in flight can be counted.
+ */
+public class BulkConnectionResolverTest {
+
+    // region Constants
+
+    private static final int MAX_CONCURRENCY = 4;
+
+    /** time the fake server takes to answer, in milliseconds */
+    private static final long LATENCY = 30;
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    // endregion
+
+    // region Helper classes
+
+    /** fake server: connection tokens starting with "missing" are unknown */
+    private static final class FakeServer implements Interceptor {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public com.squareup.okhttp.Response intercept(Chain chain) throws IOException {
+            requests.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            while (true) {
+                int max = maxInFlight.get();
+                if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                    break;
+                }
+            }
+
+            try {
+                Thread.sleep(LATENCY);
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted", e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            String path = chain.request().url().getPath();
+            String token = path.substring(
+                    path.lastIndexOf('/') + 1, path.length() - ".json".length());
+            boolean missing = token.startsWith("missing");
+            return new com.squareup.okhttp.Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(missing ? 404 : 200)
+                    .message(missing ? "Not Found" : "OK")
+                    .body(ResponseBody.create(JSON, missing ? "{}" : connection(token)))
+                    .build();
+        }
+
+        private static String connection(String token) {
+            return "{\"response\":{\"request\":{\"status\":{\"flag\":\"success\",\"code\":200}},"
+                    + "\"result\":{\"data\":{\"connection\":{\"connection_token\":\"" + token
+                    + "\",\"plugin\":\"social_login\"}}}}}";
+        }
+    }
+
+    /** listener collecting the results */
+    private static class Results implements BulkConnectionResolver.Listener {
+        final List<String> resolved = new ArrayList<>();
+        final List<String> failed = new ArrayList<>();
+        final List<String> mismatched = new ArrayList<>();
+
+        @Override
+        public synchronized void onResolved(String connectionToken, ResponseConnection connection) {
+            resolved.add(connectionToken);
+            if (!connectionToken.equals(connection.data.connection.connectionToken)) {
+                mismatched.add(connectionToken);
+            }
+        }
+
+        @Override
+        public synchronized void onFailed(String connectionToken, RetrofitError error) {
+            failed.add(connectionToken);
+        }
+
+        synchronized int reported() {
+            return resolved.size() + failed.size();
+        }
+    }
+
+    /** source of tokens checking that tokens are pulled only when a lookup slot is free */
+    private static class Tokens implements Iterator<String> {
+        private final int count;
+        private final Results results;
+        int pulled;
+        int pulledAhead;
+
+        Tokens(int count, Results results) {
+            this.count = count;
+            this.results = results;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pulled < count;
+        }
+
+        @Override
+        public String next() {
+            pulled++;
+            pulledAhead = Math.max(pulledAhead, pulled - results.reported());
+            return (pulled % 5 == 0 ? "missing" : "token") + pulled;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private FakeServer server;
+
+    private ServiceManagerProvider services;
+
+    // endregion
+
+    // region Lifecycle
+
+    @Before
+    public void setUp() {
+        server = new FakeServer();
+        OkHttpClient client = new OkHttpClient();
+        client.interceptors().add(server);
+        ServiceManagerProvider.setHttpClient(client);
+        services = ServiceManagerProvider.create("test");
+    }
+
+    @After
+    public void tearDown() {
+        ServiceManagerProvider.setHttpClient(null);
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void lookupsInFlightAreBounded() throws InterruptedException {
+        Results results = new Results();
+        Tokens tokens = new Tokens(20, results);
+
+        BulkConnectionResolver.Summary summary = new BulkConnectionResolver(
+                services, MAX_CONCURRENCY).resolve("nonce", tokens, new Cancellation(), results);
+
+        assertEquals(16, summary.getResolved());
+        assertEquals(4, summary.getFailed());
+        assertFalse(summary.isCancelled());
+        assertEquals(16, results.resolved.size());
+        assertEquals(4, results.failed.size());
+        assertTrue("results mixed up: " + results.mismatched, results.mismatched.isEmpty());
+
+        // unknown tokens are not retried
+        assertEquals(20, server.requests.get());
+        assertEquals(MAX_CONCURRENCY, server.maxInFlight.get());
+        assertTrue("tokens pulled ahead of free slots", tokens.pulledAhead <= MAX_CONCURRENCY);
+    }
+
+    @Test
+    public void singleSlotResolvesOneByOne() throws InterruptedException {
+        Results results = new Results();
+        Tokens tokens = new Tokens(6, results);
+
+        BulkConnectionResolver.Summary summary = new BulkConnectionResolver(services, 1)
+                .resolve("nonce", tokens, new Cancellation(), results);
+
+        assertEquals(5, summary.getResolved());
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, server.maxInFlight.get());
+    }
+
+    @Test
+    public void cancelledBatchStopsPullingTokens() throws InterruptedException {
+        final Cancellation cancellation = new Cancellation();
+        Results results = new Results() {
+            @Override
+            public synchronized void onResolved(String token, ResponseConnection connection) {
+                super.onResolved(token, connection);
+                if (resolved.size() == 3) {
+                    cancellation.cancel();
+                }
+            }
+        };
+        Tokens tokens = new Tokens(100, results);
+
+        BulkConnectionResolver.Summary summary = new BulkConnectionResolver(
+                services, MAX_CONCURRENCY).resolve("nonce", tokens, cancellation, results);
+
+        assertTrue(summary.isCancelled());
+        assertTrue("batch should stop early, pulled " + tokens.pulled, tokens.pulled < 20);
+        // every lookup started has been reported before the batch returned
+        assertEquals(tokens.pulled, results.reported());
+        assertEquals(tokens.pulled, summary.getResolved() + summary.getFailed());
+    }
+
+    @Test
+    public void failingSourceCancelsBatch() throws InterruptedException {
+        Results results = new Results();
+        Cancellation cancellation = new Cancellation();
+        Tokens tokens = new Tokens(20, results) {
+            @Override
+            public String next() {
+                if (pulled == 6) {
+                    throw new IllegalStateException("cursor closed");
+                }
+                return super.next();
+            }
+        };
+
+        try {
+            new BulkConnectionResolver(services, MAX_CONCURRENCY)
+                    .resolve("nonce", tokens, cancellation, results);
+            fail("failure of the source should end the batch");
+        } catch (IllegalStateException e) {
+            assertEquals("cursor closed", e.getMessage());
+        }
+        assertTrue(cancellation.isCancelled());
+        assertEquals(6, tokens.pulled);
+    }
+
+    // endregion
+}
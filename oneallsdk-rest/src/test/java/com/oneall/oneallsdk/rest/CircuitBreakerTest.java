@@ -0,0 +1,129 @@
+package com.oneall.oneallsdk.rest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    // region Constants
+
+    /** open duration of breakers which must not let a trial through during a test */
+    private static final long LONG_OPEN_DURATION = 60 * 1000L;
+
+    /** open duration of breakers which go half open during a test */
+    private static final long SHORT_OPEN_DURATION = 50L;
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, LONG_OPEN_DURATION);
+
+        fail(breaker, 2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(3, LONG_OPEN_DURATION);
+
+        fail(breaker, 2);
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        fail(breaker, 2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void letsSingleTrialThroughOnceOpenDurationIsOver() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, SHORT_OPEN_DURATION);
+        fail(breaker, 1);
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(SHORT_OPEN_DURATION + 20);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("only one trial at a time", breaker.allowRequest());
+    }
+
+    @Test
+    public void successfulTrialCloses() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialReopens() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void abortedTrialGivesItsSlotBack() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+
+        breaker.onAborted();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue("next call should be a trial right away", breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void abortedCallLeavesClosedBreakerAlone() {
+        CircuitBreaker breaker = new CircuitBreaker(3, LONG_OPEN_DURATION);
+
+        fail(breaker, 2);
+        assertTrue(breaker.allowRequest());
+        breaker.onAborted();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // the failures before the aborted call still count
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static void fail(CircuitBreaker breaker, int failures) {
+        for (int i = 0; i < failures; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.onFailure();
+        }
+    }
+
+    /** create breaker whose trial call is in flight */
+    private static CircuitBreaker halfOpen() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, SHORT_OPEN_DURATION);
+        fail(breaker, 1);
+        Thread.sleep(SHORT_OPEN_DURATION + 20);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        return breaker;
+    }
+
+    // endregion
+}
@@ -0,0 +1,65 @@
+package com.oneall.oneallsdk.rest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ItemTypeAdapterFactoryTest {
+
+    // region Helper classes
+
+    private static class Item {
+        String name;
+        Item child;
+    }
+
+    // endregion
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new ItemTypeAdapterFactory())
+            .create();
+
+    // region Tests
+
+    @Test
+    public void documentIsUnwrapped() {
+        Item item = gson.fromJson(
+                "{\"response\":{\"request\":{},\"result\":{\"name\":\"top\"}}}", Item.class);
+
+        assertEquals("top", item.name);
+    }
+
+    @Test
+    public void nestedObjectsAreNotUnwrapped() {
+        Item item = gson.fromJson(
+                "{\"name\":\"top\",\"child\":{\"name\":\"child\","
+                        + "\"child\":{\"response\":{\"result\":{\"name\":\"inner\"}}}}}",
+                Item.class);
+
+        assertEquals("child", item.child.name);
+        assertNull(item.child.child.name);
+    }
+
+    @Test
+    public void elementsOfArrayDocumentAreUnwrapped() {
+        List<List<Item>> items = gson.fromJson(
+                "[[{\"response\":{\"result\":{\"name\":\"first\"}}},"
+                        + "{\"response\":{\"request\":{\"name\":\"second\"}}}],"
+                        + "[{\"name\":\"third\",\"child\":{\"response\":{}}}]]",
+                new TypeToken<List<List<Item>>>() {}.getType());
+
+        assertEquals("first", items.get(0).get(0).name);
+        assertEquals("second", items.get(0).get(1).name);
+        assertEquals("third", items.get(1).get(0).name);
+        assertNull(items.get(1).get(0).child.name);
+    }
+
+    // endregion
+}
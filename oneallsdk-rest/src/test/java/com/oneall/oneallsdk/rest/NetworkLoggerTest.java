@@ -0,0 +1,105 @@
+package com.oneall.oneallsdk.rest;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import retrofit.RestAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkLoggerTest {
+
+    // region Helper classes
+
+    /** answers every request from an interceptor of the HTTP client */
+    private static final class FakeServer implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+                    .build();
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final List<String> lines = new ArrayList<>();
+
+    private Settings settings;
+
+    private OkHttpClient client;
+
+    // endregion
+
+    // region Lifecycle
+
+    @Before
+    public void setUp() {
+        settings = new Settings();
+        client = new OkHttpClient();
+        client.interceptors().add(new NetworkLogger(
+                settings,
+                Arrays.asList(NetworkLogger.DEFAULT_REDACTED_HEADERS),
+                new RestAdapter.Log() {
+                    @Override
+                    public void log(String message) {
+                        lines.add(message);
+                    }
+                }));
+        client.interceptors().add(new FakeServer());
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void levelChangedAfterCreationIsFollowed() throws IOException {
+        call();
+        assertTrue(lines.isEmpty());
+
+        settings.setNetworkLogLevel(NetworkLogger.Level.HEADERS);
+        call();
+        assertFalse(lines.isEmpty());
+        assertTrue(lines.contains("Authorization: <redacted>"));
+
+        lines.clear();
+        settings.setNetworkLogLevel(NetworkLogger.Level.NONE);
+        call();
+        assertEquals(0, lines.size());
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private void call() throws IOException {
+        client.newCall(new Request.Builder()
+                .url("https://test.api.oneall.com/providers.json")
+                .header("Authorization", "OneAllNonce secret")
+                .build()).execute().body().close();
+    }
+
+    // endregion
+}
@@ -0,0 +1,223 @@
+package com.oneall.oneallsdk.rest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PublishRateLimiterTest {
+
+    // region Constants
+
+    private static final Collection<String> TWITTER = Collections.singletonList("twitter");
+
+    private static final Collection<String> NO_PROVIDERS = Collections.emptyList();
+
+    // endregion
+
+    // region Helper classes
+
+    /** permits and cancellations in the order they are reported */
+    private static final class Events {
+        private final List<String> events = new ArrayList<>();
+        private final List<Long> times = new ArrayList<>();
+        private final long start = System.nanoTime();
+        private CountDownLatch remaining;
+
+        Events(int expected) {
+            remaining = new CountDownLatch(expected);
+        }
+
+        Runnable record(final String event) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (Events.this) {
+                        events.add(event);
+                        times.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                    remaining.countDown();
+                }
+            };
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("events missing: " + get(), remaining.await(5, TimeUnit.SECONDS));
+        }
+
+        synchronized List<String> get() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized long timeOf(String event) {
+            return times.get(events.indexOf(event));
+        }
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void publicationsOfUserArePacedInOrder() throws InterruptedException {
+        PublishRateLimiter limiter = new PublishRateLimiter(new RateLimit(20, 1), RateLimit.NONE);
+        Events events = new Events(5);
+
+        for (int i = 1; i <= 5; i++) {
+            limiter.acquire(
+                    "alice", NO_PROVIDERS, Cancellation.NONE, events.record("alice" + i), null);
+        }
+        events.await();
+
+        assertEquals(
+                Arrays.asList("alice1", "alice2", "alice3", "alice4", "alice5"),
+                events.get());
+        assertTrue("first permit should be immediate", events.timeOf("alice1") < 40);
+        // one permit every 50 ms after the first one
+        assertTrue("permits should be paced", events.timeOf("alice5") >= 190);
+    }
+
+    @Test
+    public void bulkUserDoesNotHoldBackOthers() throws InterruptedException {
+        PublishRateLimiter limiter = new PublishRateLimiter(new RateLimit(10, 1), RateLimit.NONE);
+        Events events = new Events(6);
+
+        for (int i = 1; i <= 5; i++) {
+            limiter.acquire(
+                    "alice", NO_PROVIDERS, Cancellation.NONE, events.record("alice" + i), null);
+        }
+        limiter.acquire("bob", NO_PROVIDERS, Cancellation.NONE, events.record("bob1"), null);
+        events.await();
+
+        // bob's bucket is full, so bob does not wait behind alice's queue
+        assertEquals(1, events.get().indexOf("bob1"));
+        assertTrue(events.timeOf("bob1") < 50);
+    }
+
+    @Test
+    public void usersSharingProviderAreServedInTurn() throws InterruptedException {
+        PublishRateLimiter limiter = new PublishRateLimiter(RateLimit.NONE, new RateLimit(20, 1));
+        Events events = new Events(9);
+
+        for (int i = 1; i <= 6; i++) {
+            limiter.acquire("alice", TWITTER, Cancellation.NONE, events.record("alice" + i), null);
+        }
+        for (int i = 1; i <= 3; i++) {
+            limiter.acquire("bob", TWITTER, Cancellation.NONE, events.record("bob" + i), null);
+        }
+        events.await();
+
+        assertEquals(
+                Arrays.asList(
+                        "alice1", "alice2", "bob1", "alice3", "bob2", "alice4", "bob3",
+                        "alice5", "alice6"),
+                events.get());
+    }
+
+    @Test
+    public void changedLimitsApplyToWaitingPublications() throws InterruptedException {
+        PublishRateLimiter limiter = new PublishRateLimiter(new RateLimit(0.1, 1), RateLimit.NONE);
+        Events events = new Events(4);
+
+        for (int i = 1; i <= 4; i++) {
+            limiter.acquire(
+                    "alice", NO_PROVIDERS, Cancellation.NONE, events.record("alice" + i), null);
+        }
+        assertEquals(Collections.singletonList("alice1"), events.get());
+
+        // one permit every 10 seconds would leave the others waiting past the timeout
+        limiter.setLimits(new RateLimit(20, 1), RateLimit.NONE);
+        events.await();
+
+        assertEquals(Arrays.asList("alice1", "alice2", "alice3", "alice4"), events.get());
+        // the permit taken under the old limit still counts, the bucket starts empty
+        assertTrue("permits should be paced", events.timeOf("alice4") >= 140);
+    }
+
+    @Test
+    public void cancelledPublicationsAreReportedAndTakeNoPermit() throws InterruptedException {
+        PublishRateLimiter limiter = new PublishRateLimiter(new RateLimit(4, 1), RateLimit.NONE);
+        Events events = new Events(4);
+        Cancellation second = new Cancellation();
+        Cancellation third = new Cancellation();
+
+        limiter.acquire("alice", NO_PROVIDERS, Cancellation.NONE,
+                events.record("alice1"), events.record("cancelled1"));
+        limiter.acquire("alice", NO_PROVIDERS, second,
+                events.record("alice2"), events.record("cancelled2"));
+        limiter.acquire("alice", NO_PROVIDERS, third,
+                events.record("alice3"), events.record("cancelled3"));
+        limiter.acquire("alice", NO_PROVIDERS, Cancellation.NONE,
+                events.record("alice4"), events.record("cancelled4"));
+
+        // cancelled behind the head of the queue, and at its head
+        third.cancel();
+        second.cancel();
+        events.await();
+
+        List<String> order = events.get();
+        assertEquals("alice1", order.get(0));
+        assertTrue(order.contains("cancelled2"));
+        assertTrue(order.contains("cancelled3"));
+        assertFalse(order.contains("alice2"));
+        assertFalse(order.contains("alice3"));
+        // alice4 takes the permit the cancelled publications have left
+        assertTrue("alice4 should not wait for cancelled publications",
+                events.timeOf("alice4") < 400);
+    }
+
+    @Test
+    public void pausedUserWaitsForPause() throws InterruptedException {
+        PublishRateLimiter limiter = new PublishRateLimiter(new RateLimit(100, 10), RateLimit.NONE);
+        Events events = new Events(2);
+
+        limiter.pauseUser("alice", 300);
+        limiter.acquire("alice", NO_PROVIDERS, Cancellation.NONE, events.record("alice1"), null);
+        limiter.acquire("bob", NO_PROVIDERS, Cancellation.NONE, events.record("bob1"), null);
+        events.await();
+
+        assertEquals("bob1", events.get().get(0));
+        assertTrue(events.timeOf("alice1") >= 290);
+    }
+
+    @Test
+    public void interruptedBlockingAcquireTakesNoPermit() throws InterruptedException {
+        final PublishRateLimiter limiter =
+                new PublishRateLimiter(new RateLimit(2, 1), RateLimit.NONE);
+        limiter.acquireBlocking("alice", NO_PROVIDERS);
+
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquireBlocking("alice", NO_PROVIDERS);
+                } catch (Throwable e) {
+                    thrown.set(e);
+                }
+            }
+        });
+        waiting.start();
+        Thread.sleep(100);
+        waiting.interrupt();
+        waiting.join(1000);
+        assertTrue(thrown.get() instanceof InterruptedException);
+
+        // the next permit, 500 ms after the first one, is still there
+        long start = System.nanoTime();
+        limiter.acquireBlocking("alice", NO_PROVIDERS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 700);
+    }
+
+    // endregion
+}
@@ -0,0 +1,309 @@
+package com.oneall.oneallsdk.rest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.oneall.oneallsdk.rest.MessagePostResult.MessagePostProviderResult;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse;
+import com.oneall.oneallsdk.rest.models.PostMessageResponse.Data.Message.Publication;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.ResponseBody;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rounds of publications against a fake server answering from an interceptor of the HTTP client,
+ * with a scripted status per provider and round.
+ */
+public class PublishRetrierTest {
+
+    // region Constants
+
+    /** three rounds, right after each other */
+    private static final RetryPolicy QUICK_ROUNDS = new RetryPolicy(3, 10, 10, 1.0, 0.0);
+
+    /** three rounds, a second apart */
+    private static final RetryPolicy SLOW_ROUNDS = new RetryPolicy(3, 1000, 1000, 1.0, 0.0);
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    // endregion
+
+    // region Helper classes
+
+    /** fake server: providers answer with their scripted statuses, then with success */
+    private static final class FakeServer implements Interceptor {
+        private final Map<String, Queue<Integer>> statuses = new HashMap<>();
+
+        /** providers of every request received */
+        final List<List<String>> requests = new ArrayList<>();
+
+        synchronized void script(String provider, Integer... codes) {
+            statuses.put(provider, new ArrayDeque<>(Arrays.asList(codes)));
+        }
+
+        synchronized int requestCount() {
+            return requests.size();
+        }
+
+        @Override
+        public com.squareup.okhttp.Response intercept(Chain chain) throws IOException {
+            Buffer body = new Buffer();
+            chain.request().body().writeTo(body);
+            JsonArray providers = new JsonParser().parse(body.readUtf8()).getAsJsonObject()
+                    .getAsJsonObject("request")
+                    .getAsJsonObject("message")
+                    .getAsJsonArray("providers");
+
+            StringBuilder publications = new StringBuilder();
+            List<String> received = new ArrayList<>();
+            synchronized (this) {
+                for (JsonElement element : providers) {
+                    String provider = element.getAsString();
+                    received.add(provider);
+                    Queue<Integer> codes = statuses.get(provider);
+                    Integer code = codes != null ? codes.poll() : null;
+                    publications.append(publications.length() > 0 ? "," : "")
+                            .append(publication(provider, code != null ? code : 200));
+                }
+                requests.add(received);
+            }
+
+            return new com.squareup.okhttp.Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(JSON, message(publications.toString())))
+                    .build();
+        }
+
+        private static String publication(String provider, int code) {
+            return "{\"provider\":\"" + provider + "\",\"status\":{\"flag\":\""
+                    + (code == 200 ? "success" : "error") + "\",\"code\":" + code
+                    + ",\"message\":\"status " + code + "\"}}";
+        }
+
+        private static String message(String publications) {
+            return "{\"response\":{\"request\":{\"status\":{\"flag\":\"success\",\"code\":200}},"
+                    + "\"result\":{\"data\":{\"message\":{\"sharing_message_token\":\"message\","
+                    + "\"publications\":[" + publications + "]}}}}}";
+        }
+    }
+
+    /** callback waiting for the merged result */
+    private static final class Result implements Callback<MessagePostResult> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        MessagePostResult value;
+        RetrofitError error;
+
+        @Override
+        public void success(MessagePostResult value, Response response) {
+            this.value = value;
+            done.countDown();
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        Result await() throws InterruptedException {
+            assertTrue("publication has not completed", done.await(10, TimeUnit.SECONDS));
+            assertNotNull("publication failed: " + error, value);
+            return this;
+        }
+
+        MessagePostProviderResult provider(String provider) {
+            for (MessagePostProviderResult result : value.providerResults) {
+                if (provider.equals(result.provider)) {
+                    return result;
+                }
+            }
+            throw new AssertionError("no result of " + provider);
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private FakeServer server;
+
+    private ServiceManagerProvider services;
+
+    // endregion
+
+    // region Lifecycle
+
+    @Before
+    public void setUp() {
+        server = new FakeServer();
+        OkHttpClient client = new OkHttpClient();
+        client.interceptors().add(server);
+        ServiceManagerProvider.setHttpClient(client);
+        services = ServiceManagerProvider.create("test");
+    }
+
+    @After
+    public void tearDown() {
+        ServiceManagerProvider.setHttpClient(null);
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void onlyThrottledProvidersAreSentAgain() throws InterruptedException {
+        server.script("facebook", 429);
+        server.script("linkedin", 503);
+        server.script("google", 408);
+
+        Result result = publish(QUICK_ROUNDS, Deadline.NONE, Cancellation.NONE,
+                "twitter", "facebook", "linkedin", "google").await();
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("twitter", "facebook", "linkedin", "google"),
+                Collections.singletonList("facebook")), server.requests);
+
+        assertEquals(PublicationStatus.SUCCESS, result.provider("twitter").status);
+        assertEquals(PublicationStatus.SUCCESS, result.provider("facebook").status);
+        assertEquals(Integer.valueOf(2), result.provider("facebook").attempts);
+        assertEquals(Integer.valueOf(1), result.provider("twitter").attempts);
+
+        // the failure may have come after the publication, so they are reported as they are
+        assertEquals(PublicationStatus.TRANSIENT_FAILURE, result.provider("linkedin").status);
+        assertEquals(Integer.valueOf(503), result.provider("linkedin").code);
+        assertEquals(Integer.valueOf(1), result.provider("linkedin").attempts);
+        assertEquals(PublicationStatus.TRANSIENT_FAILURE, result.provider("google").status);
+        assertEquals(Integer.valueOf(408), result.provider("google").code);
+        assertEquals(Integer.valueOf(1), result.provider("google").attempts);
+
+        assertEquals("message", result.value.messageToken);
+        Map<String, Integer> codes = publishedCodes(result);
+        assertEquals(Arrays.asList("twitter", "facebook", "linkedin", "google"),
+                new ArrayList<>(codes.keySet()));
+        assertEquals(Integer.valueOf(200), codes.get("facebook"));
+        assertEquals(Integer.valueOf(503), codes.get("linkedin"));
+    }
+
+    @Test
+    public void serverErrorsAndTimeoutsAreNeverSentAgain() throws InterruptedException {
+        server.script("linkedin", 500, 500, 500);
+        server.script("google", 504, 504, 504);
+
+        Result result = publish(QUICK_ROUNDS, Deadline.NONE, Cancellation.NONE,
+                "linkedin", "google").await();
+
+        assertEquals(1, server.requestCount());
+        assertEquals(Integer.valueOf(1), result.provider("linkedin").attempts);
+        assertEquals(Integer.valueOf(1), result.provider("google").attempts);
+    }
+
+    @Test
+    public void roundsAreLimitedByPolicy() throws InterruptedException {
+        server.script("facebook", 429, 429, 429, 429);
+
+        Result result = publish(QUICK_ROUNDS, Deadline.NONE, Cancellation.NONE,
+                "twitter", "facebook").await();
+
+        assertEquals(3, server.requestCount());
+        assertEquals(Integer.valueOf(3), result.provider("facebook").attempts);
+        assertEquals(Integer.valueOf(429), result.provider("facebook").code);
+        assertEquals(PublicationStatus.TRANSIENT_FAILURE, result.provider("facebook").status);
+        assertEquals(Integer.valueOf(429), publishedCodes(result).get("facebook"));
+        assertEquals(Integer.valueOf(200), publishedCodes(result).get("twitter"));
+    }
+
+    @Test
+    public void noRoundIsStartedBeyondDeadline() throws InterruptedException {
+        server.script("facebook", 429);
+
+        Result result = publish(SLOW_ROUNDS, Deadline.after(200), Cancellation.NONE,
+                "twitter", "facebook").await();
+
+        assertEquals(1, server.requestCount());
+        assertEquals(Integer.valueOf(1), result.provider("facebook").attempts);
+        assertEquals(Integer.valueOf(429), result.provider("facebook").code);
+    }
+
+    @Test
+    public void cancellationStopsRounds() throws InterruptedException {
+        server.script("facebook", 429);
+        Cancellation cancellation = new Cancellation();
+
+        Result result = publish(SLOW_ROUNDS, Deadline.NONE, cancellation, "twitter", "facebook");
+        // cancel while the next round is waiting for its delay
+        long timeout = System.currentTimeMillis() + 5000;
+        while (server.requestCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        cancellation.cancel();
+        result.await();
+
+        assertEquals(1, server.requestCount());
+        assertEquals(Integer.valueOf(1), result.provider("facebook").attempts);
+        assertEquals(PublicationStatus.SUCCESS, result.provider("twitter").status);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private Result publish(
+            RetryPolicy policy,
+            Deadline deadline,
+            Cancellation cancellation,
+            String... providers) {
+
+        PostMessageRequest request = new PostMessageRequest(
+                Arrays.asList(providers), "hello", null, null, null, null, null, null, false);
+        Result result = new Result();
+        new PublishRetrier(services, policy)
+                .publish("user", "publish", request, deadline, cancellation, result);
+        return result;
+    }
+
+    /** status codes of the publications of the whole response, by provider in response order */
+    private static Map<String, Integer> publishedCodes(Result result) {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        PostMessageResponse response = (PostMessageResponse) result.value.wholeResponse;
+        for (Publication publication : response.data.message.publications) {
+            codes.put(publication.provider, publication.status.code);
+        }
+        return codes;
+    }
+
+    // endregion
+}
@@ -0,0 +1,296 @@
+package com.oneall.oneallsdk.rest;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResilientCallerTest {
+
+    // region Constants
+
+    private static final ApiEndpoint ENDPOINT = ApiEndpoint.PROVIDERS;
+
+    private static final int FAILURE_THRESHOLD = 2;
+
+    /** retrying right away, so that tests do not wait */
+    private static final RetryPolicy QUICK_RETRIES = new RetryPolicy(3, 10, 10, 1.0, 0.0);
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // endregion
+
+    // region Helper classes
+
+    /** call completing right away with scripted outcomes, a string or a failure per attempt */
+    private static final class ScriptedCall implements ServiceCall<String> {
+        private final Queue<Object> outcomes;
+        final AtomicInteger attempts = new AtomicInteger();
+
+        ScriptedCall(Object... outcomes) {
+            this.outcomes = new ArrayDeque<>(Arrays.asList(outcomes));
+        }
+
+        @Override
+        public void execute(Callback<String> callback) {
+            attempts.incrementAndGet();
+            Object outcome = outcomes.poll();
+            if (outcome instanceof RetrofitError) {
+                callback.failure((RetrofitError) outcome);
+            } else {
+                callback.success((String) outcome, response(200));
+            }
+        }
+    }
+
+    /** callback waiting for the final result */
+    private static final class Result implements Callback<String> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        String value;
+        RetrofitError error;
+
+        @Override
+        public void success(String value, Response response) {
+            this.value = value;
+            done.countDown();
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        Result await() throws InterruptedException {
+            assertTrue("call has not completed", done.await(5, TimeUnit.SECONDS));
+            return this;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private int previousThreshold;
+
+    private ResilientCaller caller;
+
+    // endregion
+
+    // region Lifecycle
+
+    @Before
+    public void setUp() {
+        Settings settings = Settings.getInstance();
+        previousThreshold = settings.getCircuitBreakerFailureThreshold();
+        settings.setCircuitBreakerFailureThreshold(FAILURE_THRESHOLD);
+        settings.setRetryPolicy(ENDPOINT, QUICK_RETRIES);
+
+        caller = new ResilientCaller(DIRECT);
+    }
+
+    @After
+    public void tearDown() {
+        Settings settings = Settings.getInstance();
+        settings.setCircuitBreakerFailureThreshold(previousThreshold);
+        settings.setRetryPolicy(ENDPOINT, null);
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void transientFailuresAreRetried() throws InterruptedException {
+        Settings.getInstance().setCircuitBreakerFailureThreshold(10);
+        caller = new ResilientCaller(DIRECT);
+        ScriptedCall call = new ScriptedCall(networkError(), httpError(503), "providers");
+
+        Result result = execute(Deadline.NONE, Cancellation.NONE, call).await();
+
+        assertEquals("providers", result.value);
+        assertEquals(3, call.attempts.get());
+        assertEquals(CircuitBreaker.State.CLOSED, caller.getCircuitBreaker(ENDPOINT).getState());
+    }
+
+    @Test
+    public void lastFailureIsReportedOnceAttemptsAreUsedUp() throws InterruptedException {
+        Settings.getInstance().setCircuitBreakerFailureThreshold(10);
+        caller = new ResilientCaller(DIRECT);
+        RetrofitError last = httpError(500);
+        ScriptedCall call = new ScriptedCall(networkError(), networkError(), last);
+
+        Result result = execute(Deadline.NONE, Cancellation.NONE, call).await();
+
+        assertSame(last, result.error);
+        assertEquals(3, call.attempts.get());
+    }
+
+    @Test
+    public void clientErrorsAreNeitherRetriedNorHeldAgainstEndpoint()
+            throws InterruptedException {
+        for (int i = 0; i < FAILURE_THRESHOLD + 1; i++) {
+            ScriptedCall call = new ScriptedCall(httpError(404));
+            Result result = execute(Deadline.NONE, Cancellation.NONE, call).await();
+
+            assertEquals(404, result.error.getResponse().getStatus());
+            assertEquals(1, call.attempts.get());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, caller.getCircuitBreaker(ENDPOINT).getState());
+    }
+
+    @Test
+    public void throttledCallsAreRetriedButNotHeldAgainstEndpoint()
+            throws InterruptedException {
+        for (int i = 0; i < FAILURE_THRESHOLD + 1; i++) {
+            ScriptedCall call = new ScriptedCall(httpError(429), httpError(429), httpError(429));
+            Result result = execute(Deadline.NONE, Cancellation.NONE, call).await();
+
+            assertEquals(429, result.error.getResponse().getStatus());
+            assertEquals(3, call.attempts.get());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, caller.getCircuitBreaker(ENDPOINT).getState());
+
+        // a throttled call does not add up with the failures around it either
+        Settings.getInstance().setRetryPolicy(ENDPOINT, RetryPolicy.NONE);
+        execute(Deadline.NONE, Cancellation.NONE, new ScriptedCall(networkError())).await();
+        execute(Deadline.NONE, Cancellation.NONE, new ScriptedCall(httpError(429))).await();
+        execute(Deadline.NONE, Cancellation.NONE, new ScriptedCall(networkError())).await();
+        assertEquals(CircuitBreaker.State.CLOSED, caller.getCircuitBreaker(ENDPOINT).getState());
+    }
+
+    @Test
+    public void openBreakerRejectsCallsWithoutReachingEndpoint() throws InterruptedException {
+        Settings.getInstance().setRetryPolicy(ENDPOINT, RetryPolicy.NONE);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            execute(Deadline.NONE, Cancellation.NONE, new ScriptedCall(networkError())).await();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, caller.getCircuitBreaker(ENDPOINT).getState());
+
+        ScriptedCall call = new ScriptedCall("providers");
+        Result result = execute(Deadline.NONE, Cancellation.NONE, call).await();
+
+        assertEquals(0, call.attempts.get());
+        assertTrue(result.error.getCause() instanceof CircuitBreaker.OpenException);
+
+        // other endpoints have their own breakers
+        assertEquals(
+                CircuitBreaker.State.CLOSED,
+                caller.getCircuitBreaker(ApiEndpoint.CONNECTION).getState());
+    }
+
+    @Test
+    public void cancelledOperationMakesNoCall() throws InterruptedException {
+        Cancellation cancellation = new Cancellation();
+        cancellation.cancel();
+        ScriptedCall call = new ScriptedCall("providers");
+
+        Result result = execute(Deadline.NONE, cancellation, call).await();
+
+        assertEquals(0, call.attempts.get());
+        assertTrue(result.error.getCause() instanceof Cancellation.CancelledException);
+        assertEquals(CircuitBreaker.State.CLOSED, caller.getCircuitBreaker(ENDPOINT).getState());
+    }
+
+    @Test
+    public void operationCancelledDuringCallIsNotRetriedNorHeldAgainstEndpoint()
+            throws InterruptedException {
+        // a single failure would open the breaker
+        Settings.getInstance().setCircuitBreakerFailureThreshold(1);
+        caller = new ResilientCaller(DIRECT);
+        final Cancellation cancellation = new Cancellation();
+        final AtomicInteger attempts = new AtomicInteger();
+        ServiceCall<String> call = new ServiceCall<String>() {
+            @Override
+            public void execute(Callback<String> callback) {
+                attempts.incrementAndGet();
+                cancellation.cancel();
+                callback.failure(RetrofitError.networkError(
+                        "providers", new IOException("Canceled")));
+            }
+        };
+
+        Result result = execute(Deadline.NONE, cancellation, call).await();
+
+        assertTrue(result.error != null);
+        assertEquals(1, attempts.get());
+        assertEquals(CircuitBreaker.State.CLOSED, caller.getCircuitBreaker(ENDPOINT).getState());
+    }
+
+    @Test
+    public void noRetryIsScheduledBeyondDeadline() throws InterruptedException {
+        Settings.getInstance().setRetryPolicy(ENDPOINT, new RetryPolicy(3, 500, 500, 1.0, 0.0));
+        ScriptedCall call = new ScriptedCall(networkError(), "providers");
+
+        long start = System.nanoTime();
+        Result result = execute(Deadline.after(100), Cancellation.NONE, call).await();
+
+        assertNull(result.value);
+        assertEquals(1, call.attempts.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 400);
+    }
+
+    @Test
+    public void expiredDeadlineMakesNoCall() throws InterruptedException {
+        Deadline deadline = Deadline.after(1);
+        Thread.sleep(5);
+        ScriptedCall call = new ScriptedCall("providers");
+
+        Result result = execute(deadline, Cancellation.NONE, call).await();
+
+        assertEquals(0, call.attempts.get());
+        assertTrue(result.error.getCause() instanceof Deadline.ExceededException);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private Result execute(Deadline deadline, Cancellation cancellation, ServiceCall<String> call) {
+        Result result = new Result();
+        caller.execute(ENDPOINT, deadline, cancellation, call, result);
+        return result;
+    }
+
+    private static Response response(int status) {
+        return new Response(
+                "http://localhost/providers.json", status, "", new ArrayList<Header>(), null);
+    }
+
+    private static RetrofitError networkError() {
+        return RetrofitError.networkError(
+                "http://localhost/providers.json", new IOException("Connection reset"));
+    }
+
+    private static RetrofitError httpError(int status) {
+        return RetrofitError.httpError(
+                "http://localhost/providers.json", response(status), null, String.class);
+    }
+
+    // endregion
+}
@@ -0,0 +1,55 @@
+package com.oneall.oneallsdk.rest;
+
+import com.squareup.okhttp.OkHttpClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ServiceManagerProviderTest {
+
+    // region Lifecycle
+
+    @Before
+    public void setUp() {
+        Settings.getInstance().setSubdomain("test");
+    }
+
+    @After
+    public void tearDown() {
+        ServiceManagerProvider.setHttpClient(null);
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void replacingClientKeepsSharedState() {
+        ServiceManagerProvider services = ServiceManagerProvider.getInstance();
+        SingleFlight singleFlight = services.getSingleFlight();
+        ResilientCaller resilientCaller = services.getResilientCaller();
+        PublishRateLimiter limiter = services.getPublishRateLimiter();
+        OkHttpClient previousClient = services.getHttpClient();
+        Object previousService = services.getUserService();
+
+        OkHttpClient client = new OkHttpClient();
+        ServiceManagerProvider.setHttpClient(client);
+
+        assertSame(services, ServiceManagerProvider.getInstance());
+        assertSame(singleFlight, services.getSingleFlight());
+        assertSame(resilientCaller, services.getResilientCaller());
+        assertSame(limiter, services.getPublishRateLimiter());
+
+        // the services work on a copy of the new client
+        assertNotSame(previousClient, services.getHttpClient());
+        assertNotSame(client, services.getHttpClient());
+        assertNotSame(previousService, services.getUserService());
+        assertSame(services.getUserService(), services.getUserService());
+    }
+
+    // endregion
+}
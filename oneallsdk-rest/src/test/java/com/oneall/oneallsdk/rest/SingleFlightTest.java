@@ -0,0 +1,258 @@
+package com.oneall.oneallsdk.rest;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    // region Constants
+
+    private static final Response RESPONSE =
+            new Response("http://localhost/", 200, "OK", new ArrayList<Header>(), null);
+
+    // endregion
+
+    // region Helper classes
+
+    /** call completed by the test, recording how it has been started */
+    private static final class FakeCall
+            implements ServiceCall<String>, SingleFlight.SharedCall<String> {
+        final List<Callback<String>> started = new ArrayList<>();
+        Deadline deadline;
+        Cancellation cancellation;
+
+        @Override
+        public void execute(Callback<String> callback) {
+            started.add(callback);
+        }
+
+        @Override
+        public void execute(
+                Deadline deadline, Cancellation cancellation, Callback<String> callback) {
+            this.deadline = deadline;
+            this.cancellation = cancellation;
+            started.add(callback);
+        }
+
+        void succeed(String result) {
+            started.get(started.size() - 1).success(result, RESPONSE);
+        }
+
+        void fail(RetrofitError error) {
+            started.get(started.size() - 1).failure(error);
+        }
+    }
+
+    /** callback recording what it receives */
+    private static final class Recorder implements Callback<String> {
+        final List<Object> received = new ArrayList<>();
+
+        @Override
+        public void success(String result, Response response) {
+            received.add(result);
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            received.add(error);
+        }
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void identicalCallsInFlightAreMerged() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+
+        assertTrue(singleFlight.execute("providers", call, first));
+        assertFalse(singleFlight.execute("providers", call, second));
+        assertEquals(1, call.started.size());
+
+        call.succeed("result");
+
+        assertEquals(1, first.received.size());
+        assertEquals(1, second.received.size());
+        assertSame(first.received.get(0), second.received.get(0));
+    }
+
+    @Test
+    public void failureReachesAllCallbacks() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        singleFlight.execute("providers", call, first);
+        singleFlight.execute("providers", call, second);
+
+        RetrofitError error = RetrofitError.networkError("providers", new IOException("offline"));
+        call.fail(error);
+
+        assertSame(error, first.received.get(0));
+        assertSame(error, second.received.get(0));
+    }
+
+    @Test
+    public void nextCallAfterResultGoesToNetwork() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        singleFlight.execute("providers", call, new Recorder());
+        call.succeed("first");
+
+        Recorder later = new Recorder();
+        assertTrue(singleFlight.execute("providers", call, later));
+        assertEquals(2, call.started.size());
+
+        call.succeed("second");
+        assertEquals("second", later.received.get(0));
+    }
+
+    @Test
+    public void callsWithOtherKeysAreNotMerged() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+
+        assertTrue(singleFlight.execute("connection/a", call, new Recorder()));
+        assertTrue(singleFlight.execute("connection/b", call, new Recorder()));
+        assertEquals(2, call.started.size());
+    }
+
+    @Test
+    public void executeIfIdleDropsCallInFlight() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        Recorder first = new Recorder();
+        Recorder dropped = new Recorder();
+
+        assertTrue(singleFlight.executeIfIdle("providers", call, first));
+        assertFalse(singleFlight.executeIfIdle("providers", call, dropped));
+        call.succeed("result");
+
+        assertEquals(1, first.received.size());
+        assertTrue(dropped.received.isEmpty());
+    }
+
+    @Test
+    public void callbacksJoiningCallWhichThrowsReceiveFailure() {
+        final SingleFlight singleFlight = new SingleFlight();
+        final Recorder joined = new Recorder();
+        final FakeCall other = new FakeCall();
+
+        try {
+            singleFlight.execute("providers", new ServiceCall<String>() {
+                @Override
+                public void execute(Callback<String> callback) {
+                    singleFlight.execute("providers", other, joined);
+                    throw new IllegalStateException("no network service");
+                }
+            }, new Recorder());
+            fail("exception should reach the caller");
+        } catch (IllegalStateException expected) {
+            // the caller is told by the exception, not by its callback
+        }
+
+        assertTrue(joined.received.get(0) instanceof RetrofitError);
+        assertTrue(other.started.isEmpty());
+        assertTrue("flight should be gone",
+                singleFlight.execute("providers", other, new Recorder()));
+    }
+
+    @Test
+    public void sharedCallOutlivesCancelledOperation() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        Cancellation first = new Cancellation();
+        Cancellation second = new Cancellation();
+        Recorder firstCallback = new Recorder();
+        Recorder secondCallback = new Recorder();
+
+        singleFlight.execute("connection/a", Deadline.after(1000), first, call, firstCallback);
+        singleFlight.execute("connection/a", Deadline.after(1000), second, call, secondCallback);
+
+        assertEquals(1, call.started.size());
+        assertFalse("call should have its own cancellation", call.cancellation == first);
+
+        first.cancel();
+        assertFalse(call.cancellation.isCancelled());
+
+        call.succeed("result");
+        assertTrue(firstCallback.received.isEmpty());
+        assertEquals("result", secondCallback.received.get(0));
+    }
+
+    @Test
+    public void sharedCallIsCancelledOnceAllOperationsHaveLeft() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        Cancellation first = new Cancellation();
+        Cancellation second = new Cancellation();
+
+        singleFlight.execute("connection/a", Deadline.after(1000), first, call, new Recorder());
+        singleFlight.execute("connection/a", Deadline.after(1000), second, call, new Recorder());
+        Cancellation shared = call.cancellation;
+
+        first.cancel();
+        second.cancel();
+        assertTrue(shared.isCancelled());
+
+        // the cancelled call is not joined anymore
+        Recorder later = new Recorder();
+        assertTrue(singleFlight.execute(
+                "connection/a", Deadline.after(1000), new Cancellation(), call, later));
+        assertFalse(call.cancellation.isCancelled());
+    }
+
+    @Test
+    public void sharedCallRunsUntilLatestDeadline() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+
+        singleFlight.execute(
+                "connection/a", Deadline.after(100), new Cancellation(), call, new Recorder());
+        assertTrue(call.deadline.remaining() <= 100);
+
+        singleFlight.execute(
+                "connection/a", Deadline.after(10000), new Cancellation(), call, new Recorder());
+        assertTrue(call.deadline.remaining() > 1000);
+
+        // an operation without deadline lifts it
+        singleFlight.execute(
+                "connection/a", Deadline.NONE, new Cancellation(), call, new Recorder());
+        assertFalse(call.deadline.isBounded());
+    }
+
+    @Test
+    public void alreadyCancelledOperationDoesNotWait() {
+        SingleFlight singleFlight = new SingleFlight();
+        FakeCall call = new FakeCall();
+        Cancellation cancelled = new Cancellation();
+        cancelled.cancel();
+        Recorder callback = new Recorder();
+
+        singleFlight.execute("connection/a", Deadline.NONE, cancelled, call, callback);
+
+        assertTrue(call.cancellation.isCancelled());
+        call.succeed("result");
+        assertTrue(callback.received.isEmpty());
+    }
+
+    // endregion
+}
@@ -0,0 +1,51 @@
+package com.oneall.oneallsdk.rest.models;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonModelTypeAdapterFactoryTest {
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new JsonModelTypeAdapterFactory())
+            .create();
+
+    // region Tests
+
+    @Test
+    public void postMessageRequestIsReadBack() {
+        PostMessageRequest request = new PostMessageRequest(
+                Arrays.asList("twitter", "facebook"),
+                "hello", null, null, "http://example.com", "name", null, null, true);
+
+        PostMessageRequest copy = gson.fromJson(gson.toJson(request), PostMessageRequest.class);
+
+        assertEquals(Arrays.asList("twitter", "facebook"), copy.request.message.providers);
+        assertEquals("hello", copy.request.message.parts.text.body);
+        assertEquals("http://example.com", copy.request.message.parts.link.url);
+        assertEquals("name", copy.request.message.parts.link.name);
+        assertNull(copy.request.message.parts.picture);
+        assertEquals(Integer.valueOf(1), copy.request.message.parts.flags.enableTracking);
+    }
+
+    @Test
+    public void nativeLoginRequestIsReadBack() {
+        NativeLoginRequest request = new NativeLoginRequest("twitter", "token", "secret");
+
+        NativeLoginRequest copy = gson.fromJson(gson.toJson(request), NativeLoginRequest.class);
+
+        NativeLoginRequest.Request.User user = copy.request.user;
+        assertEquals("import_from_access_token", user.action);
+        assertEquals("twitter", user.identity.source.key);
+        assertEquals("token", user.identity.source.accessToken.key);
+        assertEquals("secret", user.identity.source.accessToken.secret);
+    }
+
+    // endregion
+}
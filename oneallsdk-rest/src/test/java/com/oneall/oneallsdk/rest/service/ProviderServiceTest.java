@@ -0,0 +1,206 @@
+package com.oneall.oneallsdk.rest.service;
+
+import com.oneall.oneallsdk.rest.ServiceManagerProvider;
+import com.oneall.oneallsdk.rest.models.ResponseProvidersList;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import retrofit.Callback;
+import retrofit.RestAdapter;
+import retrofit.RetrofitError;
+import retrofit.client.OkClient;
+import retrofit.client.Response;
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.converter.GsonConverter;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Conditional requests of the providers list against a local server: a list which has not
+ * changed costs neither a body nor a parse.
+ */
+public class ProviderServiceTest {
+
+    // region Constants
+
+    private static final String ETAG = "\"providers-1\"";
+
+    private static final String PROVIDERS_JSON = "{\"response\":{"
+            + "\"request\":{\"date\":\"Mon, 14 Sep 2015 10:00:00 +0200\",\"resource\":\"/providers.json\","
+            + "\"status\":{\"flag\":\"success\",\"code\":200,\"info\":\"ok\"}},"
+            + "\"result\":{\"data\":{\"providers\":{\"count\":2,\"entries\":["
+            + "{\"name\":\"Facebook\",\"key\":\"facebook\",\"is_configurable\":true,"
+            + "\"configuration\":{\"is_required\":true,\"is_completed\":true}},"
+            + "{\"name\":\"OpenID\",\"key\":\"openid\",\"is_configurable\":false,"
+            + "\"authentication\":{\"is_user_input_required\":true,\"user_input_type\":\"url\"}}"
+            + "]}}}}}";
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // endregion
+
+    // region Properties
+
+    private MockWebServer server;
+
+    /** converter of the services, counting the responses it parses */
+    private CountingConverter converter;
+
+    /** content length of every response body received from the server */
+    private final List<Long> bodyLengths = new ArrayList<>();
+
+    private ProviderService service;
+
+    // endregion
+
+    // region Lifecycle
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        OkHttpClient client = new OkHttpClient();
+        client.networkInterceptors().add(new Interceptor() {
+            @Override
+            public com.squareup.okhttp.Response intercept(Chain chain) throws IOException {
+                com.squareup.okhttp.Response response = chain.proceed(chain.request());
+                bodyLengths.add(response.body().contentLength());
+                return response;
+            }
+        });
+
+        converter = new CountingConverter(
+                new GsonConverter(ServiceManagerProvider.create("test").getGson()));
+
+        // callbacks run on the calling thread, so every call completes before it returns
+        service = new RestAdapter.Builder()
+                .setEndpoint(server.url("/").toString())
+                .setClient(new OkClient(client))
+                .setConverter(converter)
+                .setExecutors(DIRECT, DIRECT)
+                .build()
+                .create(ProviderService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // endregion
+
+    // region Tests
+
+    @Test
+    public void unchangedListIsNeitherTransferredNorParsed() throws InterruptedException {
+        server.enqueue(new MockResponse()
+                .setHeader("ETag", ETAG)
+                .setBody(PROVIDERS_JSON));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", ETAG));
+
+        ResultCallback first = new ResultCallback();
+        service.listProviders(null, null, first);
+
+        assertNotNull(first.result);
+        assertEquals(2, first.result.getData().getProviders().getEntries().size());
+        assertEquals(ETAG, header(first.response, "ETag"));
+        assertEquals(1, converter.parsed);
+
+        RecordedRequest unconditional = server.takeRequest();
+        assertNull(unconditional.getHeader("If-None-Match"));
+
+        ResultCallback second = new ResultCallback();
+        service.listProviders(header(first.response, "ETag"), null, second);
+
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals(ETAG, conditional.getHeader("If-None-Match"));
+        assertNull(conditional.getHeader("If-Modified-Since"));
+
+        assertNull(second.result);
+        assertNotNull(second.error);
+        assertEquals(304, second.error.getResponse().getStatus());
+        assertNull("304 should carry no body", second.error.getResponse().getBody());
+
+        assertEquals(2, bodyLengths.size());
+        assertEquals(PROVIDERS_JSON.length(), (long) bodyLengths.get(0));
+        assertEquals(0L, (long) bodyLengths.get(1));
+        assertEquals("304 should not be parsed", 1, converter.parsed);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static String header(Response response, String name) {
+        for (retrofit.client.Header header : response.getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static final class ResultCallback implements Callback<ResponseProvidersList> {
+        ResponseProvidersList result;
+        Response response;
+        RetrofitError error;
+
+        @Override
+        public void success(ResponseProvidersList result, Response response) {
+            this.result = result;
+            this.response = response;
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            this.error = error;
+        }
+    }
+
+    private static final class CountingConverter implements Converter {
+        private final Converter delegate;
+
+        int parsed;
+
+        CountingConverter(Converter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object fromBody(TypedInput body, Type type) throws ConversionException {
+            parsed++;
+            return delegate.fromBody(body, type);
+        }
+
+        @Override
+        public TypedOutput toBody(Object object) {
+            return delegate.toBody(object);
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,68 @@
+package com.oneall.oneallsdk;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Native Twitter login, using Twitter SDK through {@link TwitterWrapper}. The consumer key and
+ * secret are the ones passed to {@link OAManager#setup(Context, String, String, String)}.
+ */
+public class TwitterPlugin extends NativeLoginPlugin {
+
+    // region Interface methods
+
+    @Override
+    public void initialize(Context context) {
+        OAManager manager = OAManager.getInstance();
+        TwitterWrapper.getInstance().configure(
+                context, manager.getTwitterConsumerKey(), manager.getTwitterConsumerSecret());
+    }
+
+    @Override
+    public String getProviderKey() {
+        return "twitter";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return TwitterWrapper.getInstance().isAvailable();
+    }
+
+    @Override
+    public void prewarm() {
+        TwitterWrapper.getInstance().prewarm();
+    }
+
+    @Override
+    public boolean login(Activity activity, final LoginCallback callback) {
+        TwitterWrapper.getInstance().login(activity, new TwitterWrapper.LoginComplete() {
+            @Override
+            public void success(String accessToken, String secret) {
+                callback.success(accessToken, secret);
+            }
+
+            @Override
+            public void failure(OAError error) {
+                callback.failure(error);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        TwitterWrapper.destroyInstance();
+    }
+
+    // endregion
+
+    // region Activity lifecycle responders
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        TwitterWrapper.getInstance().onActivityResult(requestCode, resultCode, data);
+    }
+
+    // endregion
+}
@@ -0,0 +1,198 @@
+package com.oneall.oneallsdk;
+
+import com.twitter.sdk.android.core.Callback;
+import com.twitter.sdk.android.core.Result;
+import com.twitter.sdk.android.core.TwitterAuthConfig;
+import com.twitter.sdk.android.core.TwitterCore;
+import com.twitter.sdk.android.core.TwitterException;
+import com.twitter.sdk.android.core.TwitterSession;
+import com.twitter.sdk.android.core.identity.TwitterAuthClient;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+
+import io.fabric.sdk.android.Fabric;
+
+/**
+ * Class used to take care of Twitter authentication. Fabric and the Twitter client are started on
+ * first use only, so that applications whose users never log in with Twitter do not pay for them.
+ */
+public class TwitterWrapper {
+
+    // region Helper classes and interfaces
+
+    /**
+     * interface used for callbacks to the calling application
+     */
+    public interface LoginComplete {
+        void success(String accessToken, String secret);
+        void failure(OAError error);
+    }
+
+    // endregion
+
+    // region Properties
+
+    /** application context used to start Fabric */
+    private Context context;
+
+    private String consumerKey;
+
+    private String consumerSecret;
+
+    /** twitter authentication client, created on first use */
+    private TwitterAuthClient client;
+
+    // endregion
+
+    // region Lifecycle
+
+    private static TwitterWrapper mInstance = null;
+
+    private TwitterWrapper() {
+    }
+
+    /**
+     * get instance of this wrapper
+     *
+     * @return a wrapper of Twitter client
+     */
+    public static TwitterWrapper getInstance() {
+        if (mInstance == null) {
+            synchronized (TwitterWrapper.class) {
+                if (mInstance == null) {
+                    mInstance = new TwitterWrapper();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    public static void destroyInstance() {
+        synchronized (TwitterWrapper.class) {
+            if (mInstance != null) {
+                mInstance = null;
+            }
+        }
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * store the settings required to start Twitter integration; nothing is started yet
+     *
+     * @param context        application context
+     * @param consumerKey    (optional) Twitter consumer key
+     * @param consumerSecret (optional) Twitter consumer secret
+     */
+    public synchronized void configure(Context context, String consumerKey, String consumerSecret) {
+        this.context = context.getApplicationContext();
+        this.consumerKey = consumerKey;
+        this.consumerSecret = consumerSecret;
+    }
+
+    /**
+     * check whether native Twitter login can be used
+     *
+     * @return {@code true} if Twitter consumer key and secret have been configured, or the
+     * application has started Fabric with Twitter itself
+     */
+    public synchronized boolean isAvailable() {
+        if (consumerKey != null && consumerSecret != null) {
+            return true;
+        }
+        return Fabric.isInitialized() && Fabric.getKit(TwitterCore.class) != null;
+    }
+
+    /**
+     * start Fabric and Twitter client ahead of their first use. Blocking, should be called from a
+     * background thread.
+     */
+    public void prewarm() {
+        if (isAvailable()) {
+            getClient();
+        }
+    }
+
+    /**
+     * Login into Twitter using native Android method and Twitter SDK
+     *
+     * @param activity activity to use during login
+     *
+     * @param callback callback to use to inform the caller about operation completion
+     */
+    public void login(Activity activity, final LoginComplete callback) {
+        getClient().authorize(activity, new Callback<TwitterSession>() {
+            @Override
+            public void success(Result<TwitterSession> twitterSessionResult) {
+                if (callback != null) {
+                    callback.success(
+                            twitterSessionResult.data.getAuthToken().token,
+                            twitterSessionResult.data.getAuthToken().secret);
+                }
+            }
+
+            @Override
+            public void failure(TwitterException e) {
+                if (callback != null) {
+                    callback.failure(
+                            new OAError(OAError.ErrorCode.OA_ERROR_AUTH_FAIL, e.getMessage()));
+                }
+            }
+        });
+    }
+
+    /**
+     * should be called by the user to process response callbacks from Twitter window
+     */
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        TwitterAuthClient client;
+        synchronized (this) {
+            client = this.client;
+        }
+
+        // no Twitter login has been started, the result belongs to someone else
+        if (client != null) {
+            client.onActivityResult(requestCode, resultCode, data);
+        }
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * get Twitter authentication client, starting Fabric with Twitter if needed
+     *
+     * @return client
+     */
+    private synchronized TwitterAuthClient getClient() {
+        if (client == null) {
+            startFabric();
+            client = new TwitterAuthClient();
+        }
+        return client;
+    }
+
+    private void startFabric() {
+        // if the parent app already initialized Fabric for some of its other modules
+        // make sure it includes the required TwitterCore. Otherwise, init it ourselves
+        if (!Fabric.isInitialized()) {
+            OALog.info("Starting Twitter integration");
+            TwitterAuthConfig authConfig = new TwitterAuthConfig(consumerKey, consumerSecret);
+            Fabric.with(context, new TwitterCore(authConfig));
+        } else {
+            if (Fabric.getKit(TwitterCore.class) == null) {
+                OALog.error("Twitter's Fabric is already initialized but it doesn't include TwitterCore kit which is" +
+                        "required for Auth calls");
+            } else {
+                OALog.warn("Twitter's Fabric was already initialized with a TwitterCore kit. Reusing existing kit");
+            }
+        }
+    }
+
+    // endregion
+}
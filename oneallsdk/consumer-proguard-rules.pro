@@ -0,0 +1,4 @@
+# Plugins of the SDK are instantiated by reflection from their manifest declarations
+-keep public class * extends com.oneall.oneallsdk.OAPlugin {
+    public <init>();
+}
@@ -0,0 +1,79 @@
+package com.oneall.oneallsdk;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Whole-file reads and writes of the files the SDK keeps in the application's storage. A file is
+ * replaced by writing a temporary file next to it, syncing it to disk and renaming it over the
+ * original, so a crash in the middle of the write leaves either the old or the new content.
+ */
+final class AtomicFiles {
+
+    // region Lifecycle
+
+    private AtomicFiles() {
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * replace content of file
+     *
+     * @param file destination file, created if it does not exist
+     * @param data new content
+     *
+     * @throws IOException on write failure; the file keeps its previous content
+     */
+    static void write(File file, byte[] data) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(data);
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            try { fos.close(); } catch (IOException ignored) { }
+        }
+
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Cannot replace " + file.getName());
+        }
+    }
+
+    /**
+     * read whole file
+     *
+     * @param file    source file
+     * @param maxSize size above which the file is rejected instead of being read
+     *
+     * @return content of the file
+     *
+     * @throws java.io.FileNotFoundException if there is no such file
+     * @throws IOException if the file cannot be read or is too big
+     */
+    static byte[] readFully(File file, long maxSize) throws IOException {
+        long size = file.length();
+        if (size > maxSize) {
+            throw new IOException(String.format("%s is too big", file.getName()));
+        }
+
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) size];
+            new DataInputStream(fis).readFully(data);
+            return data;
+        } finally {
+            try { fis.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    // endregion
+}
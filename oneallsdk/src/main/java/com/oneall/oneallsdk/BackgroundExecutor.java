@@ -0,0 +1,114 @@
+package com.oneall.oneallsdk;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor used by the SDK to run blocking work (disk I/O, third party initialization) away from
+ * the main thread, and to deliver the results back to it.
+ */
+final class BackgroundExecutor {
+
+    // region Constants
+
+    private static final String THREAD_NAME = "oneall-background";
+
+    // endregion
+
+    // region Properties
+
+    private static BackgroundExecutor mInstance = null;
+
+    private final ScheduledExecutorService executor;
+
+    private final Handler mainHandler;
+
+    // endregion
+
+    // region Lifecycle
+
+    private BackgroundExecutor() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * get instance of the executor
+     *
+     * @return an executor
+     */
+    static BackgroundExecutor getInstance() {
+        if (mInstance == null) {
+            synchronized (BackgroundExecutor.class) {
+                if (mInstance == null) {
+                    mInstance = new BackgroundExecutor();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * run task on background thread
+     *
+     * @param task task to run
+     */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * run task on background thread after specified delay
+     *
+     * @param task    task to run
+     * @param delayMs delay in milliseconds
+     *
+     * @return future which can be used to cancel the task
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * run task on the main thread. If called from the main thread the task is still posted and
+     * executed later.
+     *
+     * @param task task to run
+     */
+    void postToMainThread(Runnable task) {
+        mainHandler.post(task);
+    }
+
+    /**
+     * run task on the main thread: right away if called from the main thread, otherwise as soon
+     * as possible
+     *
+     * @param task task to run
+     */
+    void runOnMainThread(Runnable task) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.run();
+        } else {
+            mainHandler.post(task);
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,225 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.Cancellation;
+import com.oneall.oneallsdk.rest.Deadline;
+import com.oneall.oneallsdk.rest.models.Provider;
+
+import android.app.Activity;
+import android.app.ProgressDialog;
+import android.os.SystemClock;
+
+import java.lang.ref.WeakReference;
+import java.util.UUID;
+
+/**
+ * State of a single login flow started by {@link OAManager}, from its start to the user
+ * information. Every login has its own session identified by its nonce, so that several logins
+ * can be in progress at the same time.
+ *
+ * Sessions are used on the main thread only.
+ */
+final class LoginSession {
+
+    // region Helper classes
+
+    /** stops a login cancelled by its handle */
+    interface Canceller {
+        void cancel(LoginSession session);
+    }
+
+    enum State {
+        /** waiting for the SDK setup to complete */
+        PENDING,
+
+        /** {@link ProviderSelectActivity} is open */
+        SELECTING_PROVIDER,
+
+        /** provider has been selected, the login continues in {@link OAManager#onPostResume} */
+        PROVIDER_SELECTED,
+
+        /** the user authenticates with the provider, natively or in {@link WebLoginActivity} */
+        AUTHENTICATING,
+
+        /** user information is being retrieved from OneAll API */
+        RETRIEVING_USER,
+
+        /** the login has ended, successfully or not */
+        ENDED
+    }
+
+    // endregion
+
+    // region Properties
+
+    /** nonce of the login, identifies the session */
+    private final String nonce = UUID.randomUUID().toString();
+
+    /** start of the login, on {@link SystemClock#elapsedRealtime()} clock */
+    private final long startedAt = SystemClock.elapsedRealtime();
+
+    private final Deadline deadline;
+
+    private final Cancellation cancellation = new Cancellation();
+
+    private final OAOperation operation;
+
+    private State state = State.PENDING;
+
+    /** handler of the login result, {@code null} once the login has ended */
+    private OAManager.LoginHandler handler;
+
+    /**
+     * activity the login runs in, {@code null} once the login has ended. Held weakly, so that a
+     * login waiting for the setup does not keep a closed activity alive.
+     */
+    private WeakReference<Activity> activity;
+
+    private Provider provider;
+
+    /** key of the provider selected in {@link ProviderSelectActivity} */
+    private String selectedProviderKey;
+
+    /** dialog shown while user information is retrieved */
+    private ProgressDialog progressDialog;
+
+    /** request code of the activity opened for result by the login, if any */
+    private Integer openRequestCode;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates session of new login
+     *
+     * @param activity  activity the login is started from
+     * @param handler   handler of the login result
+     * @param timeout   time the login may take, in milliseconds, {@code 0} for no limit
+     * @param canceller called on the main thread when the login is cancelled by its handle
+     */
+    LoginSession(
+            Activity activity,
+            OAManager.LoginHandler handler,
+            long timeout,
+            final Canceller canceller) {
+        this.activity = new WeakReference<>(activity);
+        this.handler = handler;
+        this.deadline = Deadline.after(timeout);
+        this.operation = new OAOperation(new Runnable() {
+            @Override
+            public void run() {
+                canceller.cancel(LoginSession.this);
+            }
+        });
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    String getNonce() {
+        return nonce;
+    }
+
+    Deadline getDeadline() {
+        return deadline;
+    }
+
+    Cancellation getCancellation() {
+        return cancellation;
+    }
+
+    OAOperation getOperation() {
+        return operation;
+    }
+
+    State getState() {
+        return state;
+    }
+    void setState(State state) {
+        this.state = state;
+    }
+
+    OAManager.LoginHandler getHandler() {
+        return handler;
+    }
+
+    /** @return activity the login runs in, {@code null} if it has been destroyed meanwhile */
+    Activity getActivity() {
+        return activity != null ? activity.get() : null;
+    }
+    void setActivity(Activity activity) {
+        this.activity = new WeakReference<>(activity);
+    }
+
+    Provider getProvider() {
+        return provider;
+    }
+    void setProvider(Provider provider) {
+        this.provider = provider;
+    }
+
+    String getSelectedProviderKey() {
+        return selectedProviderKey;
+    }
+    void setSelectedProviderKey(String selectedProviderKey) {
+        this.selectedProviderKey = selectedProviderKey;
+    }
+
+    ProgressDialog getProgressDialog() {
+        return progressDialog;
+    }
+    void setProgressDialog(ProgressDialog progressDialog) {
+        this.progressDialog = progressDialog;
+    }
+
+    Integer getOpenRequestCode() {
+        return openRequestCode;
+    }
+    void setOpenRequestCode(Integer openRequestCode) {
+        this.openRequestCode = openRequestCode;
+    }
+
+    /**
+     * check whether the login is still in progress
+     *
+     * @return {@code false} once the login has ended
+     */
+    boolean isActive() {
+        return state != State.ENDED;
+    }
+
+    /**
+     * check whether the session should be dropped: its deadline has expired, or it has no
+     * deadline and is older than {@code maxAge}
+     *
+     * @param maxAge maximum age of sessions without deadline, in milliseconds
+     *
+     * @return {@code true} if the session is stale
+     */
+    boolean isStale(long maxAge) {
+        if (deadline.isBounded()) {
+            return deadline.isExpired();
+        }
+        return SystemClock.elapsedRealtime() - startedAt > maxAge;
+    }
+
+    /**
+     * end the login and release everything it holds
+     *
+     * @return handler of the login if it had not ended yet, otherwise {@code null}
+     */
+    OAManager.LoginHandler end() {
+        OAManager.LoginHandler result = handler;
+
+        state = State.ENDED;
+        handler = null;
+        activity = null;
+        progressDialog = null;
+        openRequestCode = null;
+        operation.complete();
+        return result;
+    }
+
+    // endregion
+}
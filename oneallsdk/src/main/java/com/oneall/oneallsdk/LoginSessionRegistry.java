@@ -0,0 +1,155 @@
+package com.oneall.oneallsdk;
+
+import android.app.Activity;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logins in progress, by nonce. The number of sessions is bounded, the oldest ones are dropped to
+ * make room for new ones, and stale sessions can be dropped at any time. Dropped sessions are
+ * returned to the caller, which has to end them.
+ *
+ * The registry is used on the main thread only.
+ */
+final class LoginSessionRegistry {
+
+    // region Properties
+
+    /** sessions by nonce, oldest first */
+    private final Map<String, LoginSession> sessions = new LinkedHashMap<>();
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * register new login
+     *
+     * @param session  session of the login
+     * @param capacity maximum number of sessions, including the new one
+     *
+     * @return sessions dropped to make room for the new one, oldest first
+     */
+    List<LoginSession> add(LoginSession session, int capacity) {
+        List<LoginSession> dropped = new ArrayList<>();
+
+        Iterator<LoginSession> it = sessions.values().iterator();
+        while (sessions.size() >= Math.max(capacity, 1) && it.hasNext()) {
+            dropped.add(it.next());
+            it.remove();
+        }
+
+        sessions.put(session.getNonce(), session);
+        return dropped;
+    }
+
+    /**
+     * find login by nonce
+     *
+     * @param nonce nonce of the login, may be {@code null}
+     *
+     * @return session, {@code null} if there is no such login in progress
+     */
+    LoginSession get(String nonce) {
+        return nonce != null ? sessions.get(nonce) : null;
+    }
+
+    /**
+     * unregister login
+     *
+     * @param session session of the login
+     */
+    void remove(LoginSession session) {
+        sessions.remove(session.getNonce());
+    }
+
+    /**
+     * find logins in specified state
+     *
+     * @param state state of the logins
+     *
+     * @return sessions, oldest first
+     */
+    List<LoginSession> findByState(LoginSession.State state) {
+        List<LoginSession> result = new ArrayList<>();
+        for (LoginSession session : sessions.values()) {
+            if (session.getState() == state) {
+                result.add(session);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * find the login waiting for the result of an activity, if there is only one
+     *
+     * @param requestCode request code the activity has been started with
+     *
+     * @return session, {@code null} if no login or more than one waits for such a result
+     */
+    LoginSession findOnlyByRequestCode(int requestCode) {
+        LoginSession result = null;
+        for (LoginSession session : sessions.values()) {
+            Integer code = session.getOpenRequestCode();
+            if (code != null && code == requestCode) {
+                if (result != null) {
+                    return null;
+                }
+                result = session;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * check whether another login has an activity open from the same activity with the same
+     * request code, which {@link Activity#finishActivity(int)} would close as well
+     *
+     * @param session session of a login
+     *
+     * @return {@code true} if the activity opened by the login is shared
+     */
+    boolean isRequestShared(LoginSession session) {
+        Integer code = session.getOpenRequestCode();
+        Activity activity = session.getActivity();
+        if (code == null || activity == null) {
+            return false;
+        }
+
+        for (LoginSession other : sessions.values()) {
+            if (other != session
+                    && activity == other.getActivity()
+                    && code.equals(other.getOpenRequestCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * remove stale logins
+     *
+     * @param maxAge maximum age of sessions without deadline, in milliseconds
+     *
+     * @return removed sessions, oldest first
+     */
+    List<LoginSession> removeStale(long maxAge) {
+        List<LoginSession> stale = new ArrayList<>();
+
+        Iterator<LoginSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            LoginSession session = it.next();
+            if (session.isStale(maxAge)) {
+                stale.add(session);
+                it.remove();
+            }
+        }
+        return stale;
+    }
+
+    // endregion
+}
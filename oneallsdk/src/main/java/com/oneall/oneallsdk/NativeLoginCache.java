@@ -0,0 +1,150 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.models.User;
+
+import android.os.SystemClock;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Users retrieved from OneAll API after native (Facebook, Twitter) authentication, by native
+ * credentials. A repeated login with the same credentials within the freshness window gets the
+ * user without calling the API again.
+ *
+ * The cache is kept in memory only and holds a bounded number of users, the least recently used
+ * ones are dropped first. Credentials are not kept: entries are keyed by their SHA-256 hash.
+ */
+final class NativeLoginCache {
+
+    // region Helper classes
+
+    private static final class Entry {
+        final User user;
+
+        /** time the user has been retrieved, on {@link SystemClock#elapsedRealtime()} clock */
+        final long storedAt;
+
+        Entry(User user, long storedAt) {
+            this.user = user;
+            this.storedAt = storedAt;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    /** users by hash of native credentials, least recently used first */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * get user retrieved earlier with the same native credentials
+     *
+     * @param platform    platform of the native authentication
+     * @param accessToken access token received during native authentication
+     * @param secret      (optional) secret received during native authentication
+     * @param ttl         time a user is used after its retrieval, in milliseconds
+     *
+     * @return user, {@code null} if there is none retrieved within {@code ttl} or its publish
+     * token has expired
+     */
+    synchronized User get(String platform, String accessToken, String secret, long ttl) {
+        if (accessToken == null || ttl <= 0) {
+            return null;
+        }
+
+        String key = buildKey(platform, accessToken, secret);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (SystemClock.elapsedRealtime() - entry.storedAt > ttl
+                || !UserSessionStore.isPublishTokenValid(entry.user, System.currentTimeMillis())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.user;
+    }
+
+    /**
+     * store user retrieved with native credentials
+     *
+     * @param platform    platform of the native authentication
+     * @param accessToken access token received during native authentication
+     * @param secret      (optional) secret received during native authentication
+     * @param user        user retrieved from OneAll API
+     * @param capacity    maximum number of users kept, {@code 0} disables the cache
+     */
+    synchronized void put(String platform, String accessToken, String secret, User user, int capacity) {
+        if (accessToken == null || user == null || capacity <= 0) {
+            return;
+        }
+
+        entries.put(
+                buildKey(platform, accessToken, secret),
+                new Entry(user, SystemClock.elapsedRealtime()));
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * forget all users
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * build key of native credentials, also used to share the request looking their user up
+     *
+     * @param platform    platform of the native authentication
+     * @param accessToken access token
+     * @param secret      (optional) secret
+     *
+     * @return hex encoded SHA-256 of the credentials
+     */
+    static String buildKey(String platform, String accessToken, String secret) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // separators keep ("ab", "c") and ("a", "bc") apart; a missing secret differs from an
+            // empty one
+            digest.update(String.valueOf(platform).getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(accessToken.getBytes("UTF-8"));
+            if (secret != null) {
+                digest.update((byte) 0);
+                digest.update(secret.getBytes("UTF-8"));
+            }
+
+            byte[] hash = digest.digest();
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // both are mandatory on every platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,86 @@
+package com.oneall.oneallsdk;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+
+/**
+ * Plugin authenticating with a provider using its native Android SDK instead of the web login.
+ * The access token received is exchanged for OneAll user by the manager.
+ *
+ * The activity lifecycle is forwarded to the plugin by the manager; the plugin should not start
+ * its SDK before the first {@link #login(Activity, LoginCallback)} or {@link #prewarm()}.
+ */
+public abstract class NativeLoginPlugin extends OAPlugin {
+
+    // region Helper classes and interfaces
+
+    /**
+     * interface used to report the result of native authentication
+     */
+    public interface LoginCallback {
+        void success(String accessToken, String secret);
+        void failure(OAError error);
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * get key of the provider the plugin authenticates with
+     *
+     * @return provider key, e.g. {@code "facebook"}
+     */
+    public abstract String getProviderKey();
+
+    /**
+     * check whether native login can be used, e.g. the required keys are configured
+     *
+     * @return {@code false} to use the web login instead
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * start the parts of native SDK that do not need an activity. Called on a background thread,
+     * see {@link OAManager#prewarmProviders(String...)}.
+     */
+    public void prewarm() {
+    }
+
+    /**
+     * authenticate with the provider
+     *
+     * @param activity current activity
+     * @param callback callback informed about the result, on the main thread
+     *
+     * @return {@code false} if the native login cannot be started, the web login is used instead
+     */
+    public abstract boolean login(Activity activity, LoginCallback callback);
+
+    // endregion
+
+    // region Activity lifecycle responders
+
+    public void onCreate(Activity activity, Bundle savedInstanceState) {
+    }
+
+    public void onResume() {
+    }
+
+    public void onPause() {
+    }
+
+    public void onSaveInstanceState(Bundle outState) {
+    }
+
+    public void onDestroy() {
+    }
+
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+    }
+
+    // endregion
+}
@@ -19,7 +19,10 @@ public class OAError {
         OA_ERROR_TIMEOUT,
 
         /** failure to retrieve user details after successful authentication */
-        OA_ERROR_CONNECTION_ERROR
+        OA_ERROR_CONNECTION_ERROR,
+
+        /** initialization of the SDK has failed, see {@link SetupHandle#getFailure()} */
+        OA_ERROR_SETUP_FAILED
     }
 
     /** detailed human readable message */
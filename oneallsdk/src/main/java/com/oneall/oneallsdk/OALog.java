@@ -1,14 +1,11 @@
 package com.oneall.oneallsdk;
 
-import com.logentries.android.AndroidLogger;
-
-import android.content.Context;
 import android.util.Log;
 
 /**
- * Wrapper class for error logger, able to handle multiple types of logs: LogEntries, regular
- * Android log. The class is used internally by OneAll SDK and should not be used by the external
- * application.
+ * Wrapper class for error logger, writing to the regular Android log and to the remote logs
+ * provided by plugins, see {@link RemoteLogPlugin}. The class is used internally by OneAll SDK and
+ * should not be used by the external application.
  */
 class OALog {
 
@@ -18,58 +15,12 @@ class OALog {
 
     // endregion
 
-    // region Properties
-
-    private static OALog mInstance = null;
-
-    private AndroidLogger logger = null;
-
-    // endregion
-
     // region Lifecycle
 
     /** block creation of log using {@code new OALog()} by making constructor private */
     private OALog() {
     }
 
-    /**
-     * constructor of the instance
-     *
-     * @param context context to use for logging operations
-     */
-    private OALog(Context context) {
-        if (BuildConfig.DEBUG) {
-            logger = AndroidLogger.getLogger(context, context.getString(R.string.logentries_token));
-        }
-    }
-
-    /**
-     * initialization method, should be called before using {@code OALog}
-     *
-     * @param context context under which the log should run
-     */
-    public static void init(Context context) {
-        synchronized (OALog.class) {
-            mInstance = new OALog(context);
-        }
-    }
-
-    /**
-     * get instance of the log
-     *
-     * @return a log
-     */
-    public static OALog getInstance() {
-        if (mInstance == null) {
-            synchronized (OALog.class) {
-                if (mInstance == null) {
-                    mInstance = new OALog();
-                }
-            }
-        }
-        return mInstance;
-    }
-
     // endregion
 
     // region Interface methods
@@ -81,9 +32,7 @@ class OALog {
      */
     public static void info(String logMessage) {
         Log.i(TAG, logMessage);
-        if (getInstance().logger != null) {
-            getInstance().logger.info(logMessage);
-        }
+        logRemote(Log.INFO, logMessage);
     }
 
     /**
@@ -93,9 +42,7 @@ class OALog {
      */
     public static void warn(String logMessage) {
         Log.w(TAG, logMessage);
-        if (getInstance().logger != null) {
-            getInstance().logger.warn(logMessage);
-        }
+        logRemote(Log.WARN, logMessage);
     }
 
     /**
@@ -105,8 +52,16 @@ class OALog {
      */
     public static void error(String logMessage) {
         Log.e(TAG, logMessage);
-        if (getInstance().logger != null) {
-            getInstance().logger.error(logMessage);
+        logRemote(Log.ERROR, logMessage);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static void logRemote(int priority, String logMessage) {
+        for (RemoteLogPlugin plugin : PluginRegistry.getInstance().getLogPlugins()) {
+            plugin.log(priority, logMessage);
         }
     }
 
@@ -1,8 +1,16 @@
 package com.oneall.oneallsdk;
 
 import com.oneall.oneallsdk.OAError.ErrorCode;
+import com.oneall.oneallsdk.rest.ApiEndpoint;
+import com.oneall.oneallsdk.rest.Cancellation;
+import com.oneall.oneallsdk.rest.Deadline;
+import com.oneall.oneallsdk.rest.MessagePostResult;
+import com.oneall.oneallsdk.rest.PublishRetrier;
+import com.oneall.oneallsdk.rest.ServiceCall;
 import com.oneall.oneallsdk.rest.ServiceCallback;
 import com.oneall.oneallsdk.rest.ServiceManagerProvider;
+import com.oneall.oneallsdk.rest.Settings;
+import com.oneall.oneallsdk.rest.SingleFlight;
 import com.oneall.oneallsdk.rest.models.NativeLoginRequest;
 import com.oneall.oneallsdk.rest.models.PostMessageRequest;
 import com.oneall.oneallsdk.rest.models.PostMessageResponse;
@@ -10,27 +18,27 @@ import com.oneall.oneallsdk.rest.models.Provider;
 import com.oneall.oneallsdk.rest.models.ResponseConnection;
 import com.oneall.oneallsdk.rest.models.User;
 import com.oneall.oneallsdk.rest.service.ConnectionService;
-import com.oneall.oneallsdk.rest.service.MessagePostService;
 import com.oneall.oneallsdk.rest.service.UserService;
-import com.twitter.sdk.android.core.TwitterAuthConfig;
-import com.twitter.sdk.android.core.TwitterCore;
 
 import android.app.Activity;
+import android.app.DialogFragment;
+import android.app.Fragment;
 import android.app.FragmentManager;
 import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.view.WindowManager;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import io.fabric.sdk.android.Fabric;
 import retrofit.Callback;
 import retrofit.RetrofitError;
 import retrofit.client.Response;
@@ -45,6 +53,8 @@ public class OAManager {
     private static final Integer INTENT_REQUEST_CODE_SELECT_ACTIVITY = 0;
     private static final Integer INTENT_REQUEST_CODE_LOGIN = 1;
 
+    private static final String USER_INPUT_DIALOG_TAG = "user_input_dialog";
+
     // endregion
 
     // region Helper classes and interfaces
@@ -61,6 +71,72 @@ public class OAManager {
         void postComplete(Boolean success, PostMessageResponse response);
     }
 
+    /**
+     * post handler interested in the reason of failures, which are reported to
+     * {@link #postFailure(OAError, PostMessageResponse)} instead of
+     * {@link #postComplete(Boolean, PostMessageResponse)}
+     */
+    public interface OAManagerPostFailureHandler extends OAManagerPostHandler {
+
+        /**
+         * message post failure
+         *
+         * @param error    reason of the failure, {@link OAError.ErrorCode#OA_ERROR_TIMEOUT} if the
+         *                 post did not complete in {@link Settings#getPostTimeout()}
+         * @param response server response if any, otherwise {@code null}
+         */
+        void postFailure(OAError error, PostMessageResponse response);
+    }
+
+    /**
+     * post handler interested in the result of every provider, which is reported to
+     * {@link #postResult(MessagePostResult)} instead of
+     * {@link #postComplete(Boolean, PostMessageResponse)}
+     */
+    public interface OAManagerPostResultHandler extends OAManagerPostHandler {
+
+        /**
+         * message post completion
+         *
+         * @param result final result of every provider, after providers which have throttled the
+         *               message have been published to again
+         */
+        void postResult(MessagePostResult result);
+    }
+
+    /**
+     * listener of the messages queued with
+     * {@link #queueMessage(String, String, String, String, String, String, String, String, Boolean, String, String, Collection)},
+     * called on the main thread
+     */
+    public interface OAOutboxListener {
+
+        /**
+         * queued message has been published
+         *
+         * @param key    idempotency key of the message
+         * @param result result of every provider
+         */
+        void messageSent(String key, MessagePostResult result);
+
+        /**
+         * queued message has been rejected and will not be sent again
+         *
+         * @param key   idempotency key of the message
+         * @param error reason of the failure
+         */
+        void messageFailed(String key, OAError error);
+
+        /**
+         * sending of queued message has been interrupted, e.g. by the application being killed
+         * or the connection being lost after the request was sent. The message may or may not
+         * have been published; it is not sent again, so that it is never published twice.
+         *
+         * @param key idempotency key of the message
+         */
+        void messageUncertain(String key);
+    }
+
     // endregion
 
     // region Properties
@@ -71,20 +147,29 @@ public class OAManager {
     /** application context */
     private Context mAppContext = null;
 
-    /** login handler to call back */
-    private LoginHandler loginHandler;
+    /** logins in progress */
+    private final LoginSessionRegistry loginSessions = new LoginSessionRegistry();
+
+    /** readiness of the last setup */
+    private volatile SetupHandle setupHandle;
+
+    /** handler of the main thread, used to enforce deadlines */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** logged in user, kept between application runs */
+    private volatile UserSessionStore userSessions;
 
-    /** nonce generated by the last login request */
-    private String lastNonce;
+    /** users retrieved after native logins, by native credentials */
+    private final NativeLoginCache nativeLogins = new NativeLoginCache();
 
-    /** state flag, bad, bad, bad, see onPostResume() for explanation */
-    private Boolean loginOnResume = false;
+    /** messages queued to be posted when the device is online */
+    private volatile PostOutbox outbox;
 
-    /** key of the provider selected */
-    private String loginOnResumeProvider;
+    /** Twitter consumer key passed to the setup, used by native Twitter login if installed */
+    private volatile String twitterConsumerKey;
 
-    /** currently selected provider */
-    private Provider selectedProvider;
+    /** Twitter consumer secret passed to the setup, used by native Twitter login if installed */
+    private volatile String twitterConsumerSecret;
 
     // endregion
 
@@ -114,8 +199,7 @@ public class OAManager {
         synchronized (OAManager.class) {
             if (mInstance != null) {
                 // clean up
-                FacebookWrapper.destroyInstance();
-                TwitterWrapper.destroyInstance();
+                PluginRegistry.destroyInstance();
                 // allow instance to be GCed
                 mInstance = null;
             }
@@ -128,7 +212,8 @@ public class OAManager {
 
     /**
      * setup manager instance. should be called before using the manager. Otherwise the manager will
-     * not function.
+     * not function. The initialization is performed on the calling thread, including disk access;
+     * see {@link #setupAsync(Context, String, String, String)} for a non-blocking alternative.
      *
      * @param context            context
      * @param subdomain          subdomain of your OneAll application
@@ -145,37 +230,73 @@ public class OAManager {
             String twitterConsumerKey,
             String twitterSecret) {
 
-        if (context == null) {
-            throw new NullPointerException("context cannot be null");
-        }
-
-        if (subdomain == null || subdomain.trim().length() == 0) {
-            throw new IllegalArgumentException("Subdomain cannot be empty");
+        SetupHandle handle = prepareSetup(context, subdomain);
+        try {
+            initialize(subdomain, twitterConsumerKey, twitterSecret);
+        } catch (RuntimeException | Error e) {
+            handle.markFailed(e);
+            throw e;
         }
+        handle.markReady();
+    }
 
-        // make sure the ref we hold is from the application context
-        mAppContext = context.getApplicationContext();
-
-        OALog.init(mAppContext);
-
-        // if the parent app already initialized Fabric for some of its other modules
-        // make sure it includes the required TwitterCore. Otherwise, init it ourselves
-        if (!Fabric.isInitialized()) {
-            TwitterAuthConfig authConfig = new TwitterAuthConfig(twitterConsumerKey, twitterSecret);
-            Fabric.with(this.mAppContext, new TwitterCore(authConfig));
-        } else {
-            if (Fabric.getKit(TwitterCore.class) == null) {
-                OALog.error("Twitter's Fabric is already initialized but it doesn't include TwitterCore kit which is" +
-                        "required for Auth calls");
-            } else {
-                OALog.warn("Twitter's Fabric was already initialized with a TwitterCore kit. Reusing existing kit");
+    /**
+     * setup manager instance without blocking the calling thread. Arguments are validated
+     * immediately, while logging and loading of cached providers are performed on a background
+     * thread.
+     *
+     * The manager can be used right after this call: {@link #login(Activity, String, LoginHandler)}
+     * and {@link #login(Activity, LoginHandler)} called before the initialization is complete are
+     * postponed until it is, and {@link #getProviders()} returns the providers known so far.
+     *
+     * @param context            context
+     * @param subdomain          subdomain of your OneAll application
+     * @param twitterConsumerKey (optional) Twitter consumer key from
+     *                           {@link <a href="https://apps.twitter.com/">https://apps.twitter.com/</a>}
+     * @param twitterSecret      (optional) Twitter secret key from
+     *                           {@link <a href="https://apps.twitter.com/">https://apps.twitter.com/</a>}
+     * @return handle which can be used to wait for the initialization to complete; if the
+     * initialization fails the handle is marked failed and postponed logins fail with
+     * {@link OAError.ErrorCode#OA_ERROR_SETUP_FAILED}
+     * @throws java.lang.NullPointerException     if {@code context} is null
+     * @throws java.lang.IllegalArgumentException if {@code subdomain} is null or empty
+     */
+    public SetupHandle setupAsync(
+            Context context,
+            final String subdomain,
+            final String twitterConsumerKey,
+            final String twitterSecret) {
+
+        final SetupHandle handle = prepareSetup(context, subdomain);
+        BackgroundExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    initialize(subdomain, twitterConsumerKey, twitterSecret);
+                } catch (RuntimeException | Error e) {
+                    // nobody would see the exception thrown on the background thread
+                    OALog.error(String.format("SDK initialization failed: %s", e));
+                    handle.markFailed(e);
+                    return;
+                }
+                handle.markReady();
             }
-        }
+        });
+        return handle;
+    }
 
-        OALog.info(String.format("SDK init with subdomain %s", subdomain));
+    /**
+     * get readiness handle of the last setup of the manager
+     *
+     * @return setup handle
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     */
+    public SetupHandle getSetupHandle() {
+        if (mAppContext == null) {
+            throw new IllegalStateException("Manager not initialized");
+        }
 
-        Settings.getInstance().setSubdomain(subdomain);
-        ProviderManager.getInstance().refreshProviders(mAppContext);
+        return setupHandle;
     }
 
     /**
@@ -186,72 +307,68 @@ public class OAManager {
      * result. Information about the user is retrieved as part of the authentication process and
      * returned to {@code handler} callback.
      *
-     * If the provider specified is "{@code facebook}" native device Facebook authentication is
-     * used to login the user by using Facebook SDK for Android. If the provider specified is
-     * "{@code twitter}" native device authentication is used to login the user with help of
-     * Twitter SDK.
+     * If the provider has a native login plugin, e.g. "{@code facebook}" or "{@code twitter}"
+     * when their SDK modules are included in the application, native device authentication is
+     * used to login the user with the provider SDK. Other providers use the web login.
+     *
+     * If the login does not complete in {@link Settings#getLoginTimeout()}, it is abandoned and
+     * {@code handler} receives {@link OAError.ErrorCode#OA_ERROR_TIMEOUT} error.
+     *
+     * Logins do not replace each other: every login has its own nonce and reports to its own
+     * handler, up to {@link Settings#getMaxLoginSessions()} logins in progress at the same time.
      *
      * @param activity current activity
      * @param provider provider to use for authentication; list of supported providers can be
      *                 retrieved using {@link #getProviders()}
      * @param handler  completion handler, will be used to inform the caller about the end of the
      *                 authentication (either success or failure)
-     * @return {@code true} if the login process has started successfully, {@code false} otherwise;
-     * in case of {@code false} return code, {@code handler} will not be called
-     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     * @return handle of the login, which can be used to cancel it; {@code handler} is not called
+     * for a cancelled login
+     * @throws java.lang.IllegalStateException    if the manager has not been initialized
+     * @throws java.lang.IllegalArgumentException if {@code provider} does not exist
      */
-    public Boolean login(final Activity activity, String provider, LoginHandler handler) {
+    public OAOperation login(Activity activity, final String provider, LoginHandler handler) {
         validateInitialization();
 
-        loginHandler = handler;
-        selectedProvider = ProviderManager.getInstance().findByKey(provider);
-
-        if (selectedProvider == null) {
-            throw new IllegalArgumentException("Specified provider does not exist");
+        final SetupHandle setup = setupHandle;
+        if (!setup.isReady()) {
+            final LoginSession session = beginLogin(activity, handler);
+            setup.whenComplete(new Runnable() {
+                @Override
+                public void run() {
+                    if (!session.isActive()) {
+                        return;
+                    }
+                    if (!setup.isReady()) {
+                        reportLoginFailure(session, setupError(setup));
+                        return;
+                    }
+                    Activity origin = getLiveActivity(session);
+                    if (origin == null) {
+                        return;
+                    }
+                    Provider selected = ProviderManager.getInstance().findByKey(provider);
+                    if (selected == null) {
+                        // the caller is gone by now, report through the handler instead
+                        reportLoginFailure(session, new OAError(
+                                ErrorCode.OA_ERROR_AUTH_FAIL, "Specified provider does not exist"));
+                    } else {
+                        loginWithProvider(session, origin, selected);
+                    }
+                }
+            });
+            return session.getOperation();
         }
 
-        lastNonce = UUID.randomUUID().toString();
-
-        switch (provider) {
-            case "facebook":
-                boolean res =
-                        FacebookWrapper.getInstance().login(
-                                activity,
-                                new FacebookWrapper.SessionStateListener() {
-                                    @Override
-                                    public void success(String accessToken) {
-                                        facebookLoginSuccess(activity, accessToken);
-                                    }
-
-                                    @Override
-                                    public void failure(OAError error) {
-                                        facebookLoginFailure(error);
-                                    }
-                                });
-
-                if (!res) {
-                    webLoginWithProvider(activity, selectedProvider);
-                }
-                break;
-            case "twitter":
-                TwitterWrapper.getInstance().login(activity, new TwitterWrapper.LoginComplete() {
-                    @Override
-                    public void success(String accessToken, String secret) {
-                        twitterLoginSuccess(activity, accessToken, secret);
-                    }
+        Provider selected = ProviderManager.getInstance().findByKey(provider);
 
-                    @Override
-                    public void failure(OAError error) {
-                        twitterLoginFailure(error);
-                    }
-                });
-                break;
-            default:
-                webLoginWithProvider(activity, selectedProvider);
-                break;
+        if (selected == null) {
+            throw new IllegalArgumentException("Specified provider does not exist");
         }
 
-        return true;
+        LoginSession session = beginLogin(activity, handler);
+        loginWithProvider(session, activity, selected);
+        return session.getOperation();
     }
 
     /**
@@ -263,31 +380,60 @@ public class OAManager {
      * to inform the caller on operation result. Information about the user is retrieved as part of
      * the authentication process and returned to {@code handler} callback.
      *
-     * If the provider specified is "{@code facebook}" native device Facebook authentication is
-     * used to login the user by using Facebook SDK for Android. If the provider specified is
-     * "{@code twitter}" native device authentication is used to login the user with help of
-     * Twitter SDK.
+     * If the provider has a native login plugin, e.g. "{@code facebook}" or "{@code twitter}"
+     * when their SDK modules are included in the application, native device authentication is
+     * used to login the user with the provider SDK. Other providers use the web login.
+     *
+     * If the login does not complete in {@link Settings#getLoginTimeout()}, it is abandoned and
+     * {@code handler} receives {@link OAError.ErrorCode#OA_ERROR_TIMEOUT} error.
+     *
+     * Logins do not replace each other: every login has its own nonce and reports to its own
+     * handler, up to {@link Settings#getMaxLoginSessions()} logins in progress at the same time.
      *
      * @param activity current activity
      * @param handler  completion handler, will be used to inform the caller about the end of the
      *                 authentication (either success or failure)
-     * @return {@code true} if the login process has started successfully, {@code false} otherwise;
-     * in case of {@code false} return code, {@code handler} will not be called
+     * @return handle of the login, which can be used to cancel it; {@code handler} is not called
+     * for a cancelled login
      * @throws java.lang.IllegalStateException if the manager has not been initialized
      */
-    public Boolean login(Activity activity, LoginHandler handler) {
+    public OAOperation login(Activity activity, LoginHandler handler) {
         validateInitialization();
 
-        loginHandler = handler;
+        final LoginSession session = beginLogin(activity, handler);
 
-        Intent intent = new Intent(activity, ProviderSelectActivity.class);
-        activity.startActivityForResult(intent, INTENT_REQUEST_CODE_SELECT_ACTIVITY);
-        return true;
+        final SetupHandle setup = setupHandle;
+        if (!setup.isReady()) {
+            setup.whenComplete(new Runnable() {
+                @Override
+                public void run() {
+                    if (!session.isActive()) {
+                        return;
+                    }
+                    if (!setup.isReady()) {
+                        reportLoginFailure(session, setupError(setup));
+                        return;
+                    }
+                    if (getLiveActivity(session) != null) {
+                        selectProvider(session);
+                    }
+                }
+            });
+            return session.getOperation();
+        }
+
+        selectProvider(session);
+        return session.getOperation();
     }
 
     /**
      * Method used to post message to user wall. Response will include general {@code success} flag
-     * as well as detailed result as received from the server ({@link com.oneall.oneallsdk.MessagePostResult}
+     * as well as detailed result as received from the server ({@link com.oneall.oneallsdk.rest.MessagePostResult}
+     *
+     * Providers which throttle the publication (HTTP 429) are sent the message again, alone,
+     * according to {@link Settings#getPublicationRetryPolicy()}. Providers failing otherwise, even
+     * with a timeout or a server error, may have published the message and are not sent it again.
+     * The response holds the final publication of every provider.
      *
      * @param text            body of the message to be posted
      * @param pictureUrl      (optional) url of the image to be posted
@@ -302,13 +448,20 @@ public class OAManager {
      * @param publishToken    publish token received as part of {@link com.oneall.oneallsdk.rest.models.User#publishToken} object received during
      *                        authentication
      * @param providers       array of provider identifiers; list of providers can be obtained by {@link #getProviders()}
-     * @param handler         response handler called on either posting success of failure
+     * @param handler         response handler called on either posting success of failure; if it
+     *                        implements {@link OAManagerPostFailureHandler} failures are reported
+     *                        with their reason, including {@link OAError.ErrorCode#OA_ERROR_TIMEOUT}
+     *                        if the post does not complete in {@link Settings#getPostTimeout()}; if
+     *                        it implements {@link OAManagerPostResultHandler} the result is
+     *                        reported per provider
+     * @return handle of the post, which can be used to cancel it; {@code handler} is not called
+     * for a cancelled post
      * @throws java.lang.IllegalStateException if the manager has not been initialized
      * @see #getProviders()
      * @see com.oneall.oneallsdk.rest.models.User
-     * @see com.oneall.oneallsdk.MessagePostResult
+     * @see com.oneall.oneallsdk.rest.MessagePostResult
      */
-    public void postMessage(
+    public OAOperation postMessage(
             String text,
             String pictureUrl,
             String videoUrl,
@@ -317,15 +470,15 @@ public class OAManager {
             String linkCaption,
             String linkDescription,
             Boolean enableTracking,
-            String userToken,
+            final String userToken,
             String publishToken,
             final Collection<String> providers,
             final OAManagerPostHandler handler) {
 
         validateInitialization();
 
-        MessagePostService service = ServiceManagerProvider.getInstance().getPostService();
-        PostMessageRequest request = new PostMessageRequest(
+        final ServiceManagerProvider services = ServiceManagerProvider.getInstance();
+        final PostMessageRequest request = new PostMessageRequest(
                 providers,
                 text,
                 pictureUrl,
@@ -338,16 +491,57 @@ public class OAManager {
 
         OALog.info("Posting message to providers");
 
-        service.post(
+        final Deadline deadline = Deadline.after(Settings.getInstance().getPostTimeout());
+
+        // the handler gets either the result or the timeout, whichever comes first, and nothing
+        // once the post is cancelled
+        final AtomicBoolean completed = new AtomicBoolean();
+        final Cancellation cancellation = new Cancellation();
+        final Runnable timeoutTask = new Runnable() {
+            @Override
+            public void run() {
+                if (completed.compareAndSet(false, true)) {
+                    OALog.warn("Message post timed out");
+                    cancellation.cancel();
+                    reportPostFailure(
+                            handler,
+                            new OAError(
+                                    ErrorCode.OA_ERROR_TIMEOUT,
+                                    mAppContext.getResources().getString(R.string.post_timeout)),
+                            null);
+                }
+            }
+        };
+        final OAOperation operation = new OAOperation(new Runnable() {
+            @Override
+            public void run() {
+                if (completed.compareAndSet(false, true)) {
+                    OALog.info("Message post cancelled");
+                    mainHandler.removeCallbacks(timeoutTask);
+                    cancellation.cancel();
+                }
+            }
+        });
+        if (deadline.isBounded()) {
+            mainHandler.postDelayed(timeoutTask, deadline.remaining());
+        }
+
+        // publishing is not idempotent, so a whole request is only retried if the application
+        // configures it; providers which have throttled it are published to again on their own
+        new PublishRetrier(services).publish(
                 userToken,
-                ServiceManagerProvider.buildPublishAuthHeader(publishToken),
+                publishToken,
                 request,
-                new ServiceCallback<PostMessageResponse>() {
+                deadline,
+                cancellation,
+                new ServiceCallback<MessagePostResult>() {
                     @Override
-                    public void success(PostMessageResponse postMessageResponse, Response response) {
+                    public void success(MessagePostResult result, Response response) {
                         OALog.info(String.format("Message post succeeded: %s", response.toString()));
-                        if (handler != null) {
-                            handler.postComplete(true, postMessageResponse);
+                        mainHandler.removeCallbacks(timeoutTask);
+                        operation.complete();
+                        if (completed.compareAndSet(false, true)) {
+                            reportPostResult(handler, result);
                         }
                     }
 
@@ -357,11 +551,173 @@ public class OAManager {
                         OALog.warn(String.format(
                                 "Message post failed: %s", error.getRetrofitError().getMessage()));
 
-                        if (handler != null) {
-                            handler.postComplete(false, error.getResponse());
+                        mainHandler.removeCallbacks(timeoutTask);
+                        operation.complete();
+                        if (completed.compareAndSet(false, true)) {
+                            ErrorCode code = Deadline.isTimeout(error.getRetrofitError())
+                                    ? ErrorCode.OA_ERROR_TIMEOUT
+                                    : ErrorCode.OA_ERROR_MESSAGE_POST_FAIL;
+                            //noinspection ThrowableResultOfMethodCallIgnored
+                            reportPostFailure(
+                                    handler,
+                                    new OAError(code, error.getRetrofitError().getMessage()),
+                                    error.getResponse());
                         }
                     }
                 });
+        return operation;
+    }
+
+    /**
+     * Post message to the wall of the logged in user, see {@link #getLoggedInUser()}. Same as
+     * {@link #postMessage(String, String, String, String, String, String, String, Boolean, String, String, Collection, OAManagerPostHandler)}
+     * with the tokens of the logged in user. No request is made if there is no logged in user or
+     * the publish token has expired: the post fails with
+     * {@link OAError.ErrorCode#OA_ERROR_MESSAGE_POST_FAIL} and the user has to log in again.
+     *
+     * @param text            body of the message to be posted
+     * @param pictureUrl      (optional) url of the image to be posted
+     * @param videoUrl        (optional) URL of video to be post
+     * @param linkUrl         (optional) URL to attach to the post
+     * @param linkName        (optional) name of the link posted; has no effect if {@code linkUrl} is {@code null}
+     * @param linkCaption     (optional) caption of the link posted; has no effect if {@code linkUrl} is {@code null}
+     * @param linkDescription (optional) description of the link posted; has no effect if {@code linkUrl} is {@code null}
+     * @param enableTracking  should the {@code linkUrl} posted use OneAll link tracking?; has no effect if {@code linkUrl} is {@code null}
+     * @param providers       array of provider identifiers; list of providers can be obtained by {@link #getProviders()}
+     * @param handler         response handler called on either posting success of failure
+     * @return handle of the post, which can be used to cancel it
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     * @see #hasValidPublishToken()
+     */
+    public OAOperation postMessage(
+            String text,
+            String pictureUrl,
+            String videoUrl,
+            String linkUrl,
+            String linkName,
+            String linkCaption,
+            String linkDescription,
+            Boolean enableTracking,
+            Collection<String> providers,
+            final OAManagerPostHandler handler) {
+
+        validateInitialization();
+
+        User user = userSessions.get();
+        if (!UserSessionStore.isPublishTokenValid(user, System.currentTimeMillis())) {
+            OALog.warn("Message post requires login: no valid publish token");
+
+            final OAError error = new OAError(
+                    ErrorCode.OA_ERROR_MESSAGE_POST_FAIL,
+                    mAppContext.getResources().getString(R.string.session_expired));
+            BackgroundExecutor.getInstance().postToMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    reportPostFailure(handler, error, null);
+                }
+            });
+
+            OAOperation operation = new OAOperation(null);
+            operation.complete();
+            return operation;
+        }
+
+        return postMessage(
+                text,
+                pictureUrl,
+                videoUrl,
+                linkUrl,
+                linkName,
+                linkCaption,
+                linkDescription,
+                enableTracking,
+                user.userToken,
+                user.publishToken.key,
+                providers,
+                handler);
+    }
+
+    /**
+     * Queue message to be posted to user wall as soon as the device is online. The message is
+     * stored on disk, encrypted, and survives restarts of the application; the call returns
+     * right away. Queued messages are sent in batches when connectivity is restored, when
+     * {@link #flushOutbox()} is called, or on the next setup of the manager. Their outcome is
+     * reported to the listener set with {@link #setOutboxListener(OAOutboxListener)}.
+     *
+     * A message is published at most once: it is only sent again if it has certainly not
+     * reached OneAll, or only to providers which have throttled it, and queueing a key which is
+     * already queued has no effect. Providers failing otherwise are reported with their status
+     * instead of being sent the message again.
+     *
+     * @param key             (optional) idempotency key of the message, e.g. id of the draft it is
+     *                        posted from; generated if {@code null}
+     * @param text            body of the message to be posted
+     * @param pictureUrl      (optional) url of the image to be posted
+     * @param videoUrl        (optional) URL of video to be post
+     * @param linkUrl         (optional) URL to attach to the post
+     * @param linkName        (optional) name of the link posted; has no effect if {@code linkUrl} is {@code null}
+     * @param linkCaption     (optional) caption of the link posted; has no effect if {@code linkUrl} is {@code null}
+     * @param linkDescription (optional) description of the link posted; has no effect if {@code linkUrl} is {@code null}
+     * @param enableTracking  should the {@code linkUrl} posted use OneAll link tracking?; has no effect if {@code linkUrl} is {@code null}
+     * @param userToken       user token received as part of {@link com.oneall.oneallsdk.rest.models.User#userToken}
+     * @param publishToken    publish token received as part of {@link com.oneall.oneallsdk.rest.models.User#publishToken}
+     * @param providers       array of provider identifiers; list of providers can be obtained by {@link #getProviders()}
+     * @return idempotency key of the message
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     * @see OAOutboxListener
+     */
+    public String queueMessage(
+            String key,
+            String text,
+            String pictureUrl,
+            String videoUrl,
+            String linkUrl,
+            String linkName,
+            String linkCaption,
+            String linkDescription,
+            Boolean enableTracking,
+            String userToken,
+            String publishToken,
+            Collection<String> providers) {
+
+        validateInitialization();
+
+        PostMessageRequest request = new PostMessageRequest(
+                providers,
+                text,
+                pictureUrl,
+                videoUrl,
+                linkUrl,
+                linkName,
+                linkCaption,
+                linkDescription,
+                enableTracking);
+        return outbox.enqueue(key, userToken, publishToken, request);
+    }
+
+    /**
+     * Send the queued messages now, e.g. when the user asks for it. Has no effect if the outbox
+     * is empty or is being sent already.
+     *
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     */
+    public void flushOutbox() {
+        validateInitialization();
+
+        outbox.flush();
+    }
+
+    /**
+     * Set listener of the queued messages. Messages whose sending has been interrupted in a
+     * previous run of the application are reported to it as uncertain.
+     *
+     * @param listener listener, {@code null} to stop listening
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     */
+    public void setOutboxListener(OAOutboxListener listener) {
+        validateInitialization();
+
+        outbox.setListener(listener);
     }
 
     /**
@@ -375,97 +731,256 @@ public class OAManager {
          * onPostResume() takes care of this when the state has been restored. An ugly solution for an
          * ugly problem.
          */
-        if (loginOnResume) {
-            String providerKey = loginOnResumeProvider;
-            loginOnResume = false;
-            loginOnResumeProvider = null;
+        for (LoginSession session : loginSessions.findByState(LoginSession.State.PROVIDER_SELECTED)) {
+            // continue logins started by login(Activity, LoginHandler) from this activity, or from
+            // the activity it replaces, within their deadlines
+            Activity origin = session.getActivity();
+            if (origin != activity && origin != null
+                    && !origin.isFinishing() && !origin.isChangingConfigurations()) {
+                continue;
+            }
 
-            login(activity, providerKey, loginHandler);
+            Provider provider = ProviderManager.getInstance().findByKey(
+                    session.getSelectedProviderKey());
+            if (provider != null) {
+                loginWithProvider(session, activity, provider);
+            } else {
+                reportLoginFailure(session, new OAError(
+                        ErrorCode.OA_ERROR_AUTH_FAIL, "Specified provider does not exist"));
+            }
         }
     }
 
     /**
      * Get list of supported providers. All providers are returned and not only ones configured for
-     * specified application
+     * specified application. Never blocks: if the manager is still being initialized by
+     * {@link #setupAsync(Context, String, String, String)} the providers known so far are returned,
+     * which may be an empty collection.
      *
-     * @return array of providers supported by OneAll API
+     * @return unmodifiable collection of providers supported by OneAll API
      */
     public Collection<String> getProviders() {
         validateInitialization();
 
-        ArrayList<String> rv = new ArrayList<>();
-        for (Provider p : ProviderManager.getInstance().getProviders()) {
-            rv.add(p.getKey());
-        }
-        return rv;
+        return ProviderManager.getInstance().getCatalog().getKeys();
     }
 
-    // endregion
+    /**
+     * Retrieve list of providers from the server right away, ignoring the age of the cached list.
+     * Normally the list is refreshed automatically in background when it gets stale.
+     *
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     * @see Settings#setProvidersTtl(long)
+     */
+    public void refreshProviders() {
+        validateInitialization();
 
-    // region Utilities
+        ProviderManager.getInstance().forceRefreshProviders(mAppContext);
+    }
 
     /**
-     * callback taking care of connection details retrieval. This is the end of authentication
-     * process, so the user of {@code OAManager} is informed using {@link #loginHandler} listener
+     * Hint that the user is likely to log in with specified providers soon. Native provider SDKs
+     * are normally started on the first login with their provider; this starts the parts that do
+     * not need an activity on a background thread ahead of time. Unknown providers and providers
+     * without native integration are ignored.
+     *
+     * @param providers provider identifiers, e.g. {@code "twitter"} or {@code "facebook"}
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
      */
-    private Callback<ResponseConnection> connectionCallback = new Callback<ResponseConnection>() {
-        @Override
-        public void success(ResponseConnection connection, Response response) {
-            if (loginHandler != null) {
-                loginHandler.loginSuccess(connection.data.user, false);
-                loginHandler = null;
-            }
-        }
+    public void prewarmProviders(final String... providers) {
+        validateInitialization();
 
-        @Override
-        public void failure(RetrofitError error) {
-            if (loginHandler != null) {
-                loginHandler.loginFailure(new OAError(
-                        OAError.ErrorCode.OA_ERROR_CONNECTION_ERROR,
-                        mAppContext.getResources().getString(R.string.connection_failure)));
-                loginHandler = null;
+        BackgroundExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String provider : providers) {
+                    NativeLoginPlugin plugin = PluginRegistry.getInstance().getLoginPlugin(provider);
+                    if (plugin != null) {
+                        plugin.prewarm();
+                    }
+                }
             }
+        });
+    }
+
+    /**
+     * Add plugin of the SDK. Plugins declared in the manifests of the SDK modules are discovered
+     * automatically, this is only needed for plugins without such a declaration. Can be called
+     * before {@link #setup(Context, String, String, String)}.
+     *
+     * @param plugin plugin, e.g. native login with a provider
+     * @see OAPlugin
+     */
+    public void registerPlugin(OAPlugin plugin) {
+        if (plugin == null) {
+            throw new NullPointerException("plugin cannot be null");
         }
-    };
+
+        PluginRegistry.getInstance().register(plugin);
+    }
+
+    /**
+     * Get the user of the last successful login. The user is stored by the SDK, encrypted, and
+     * is available again after the application restarts, until {@link #logout()}.
+     *
+     * @return logged in user, {@code null} if no user has logged in
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     * @see #hasValidPublishToken()
+     */
+    @Nullable
+    public User getLoggedInUser() {
+        validateInitialization();
+
+        return userSessions.get();
+    }
 
     /**
-     * handler of login completion by {@link com.oneall.oneallsdk.WebLoginActivity}
+     * Check whether the logged in user can post messages without logging in again, i.e. whether
+     * the publish token received on login has not expired yet. No request is made.
      *
-     * @param data intent data filled in with login result
+     * @return {@code true} if there is a logged in user with a valid publish token
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
      */
-    private void webLoginComplete(Intent data) {
+    public boolean hasValidPublishToken() {
+        validateInitialization();
+
+        return UserSessionStore.isPublishTokenValid(
+                userSessions.get(), System.currentTimeMillis());
+    }
+
+    /**
+     * Forget the logged in user, both in memory and on disk.
+     *
+     * @throws java.lang.IllegalStateException if the manager has not been initialized
+     */
+    public void logout() {
+        validateInitialization();
+
+        OALog.info("Logging out");
+        userSessions.clear();
+        nativeLogins.clear();
+    }
+
+    /**
+     * get Twitter consumer key passed to the setup, for the native Twitter login plugin
+     *
+     * @return consumer key, {@code null} if none was passed or the manager is not set up yet
+     */
+    String getTwitterConsumerKey() {
+        return twitterConsumerKey;
+    }
+
+    /**
+     * get Twitter consumer secret passed to the setup, for the native Twitter login plugin
+     *
+     * @return consumer secret, {@code null} if none was passed or the manager is not set up yet
+     */
+    String getTwitterConsumerSecret() {
+        return twitterConsumerSecret;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * handler of login completion by {@link com.oneall.oneallsdk.WebLoginActivity}. Retrieval of
+     * connection details is the end of authentication process, so the user of {@code OAManager}
+     * is informed using the handler of the login
+     *
+     * @param session session of the login
+     * @param data    intent data filled in with login result
+     */
+    private void webLoginComplete(final LoginSession session, Intent data) {
         String url = data.getExtras().getString(WebLoginActivity.INTENT_EXTRA_URL);
 
         OALog.info(String.format("Web login completed with URL %s", url));
 
-        ConnectionService service = ServiceManagerProvider.getInstance().getConnectionService();
+        session.setOpenRequestCode(null);
+        session.setState(LoginSession.State.RETRIEVING_USER);
+
+        final ServiceManagerProvider services = ServiceManagerProvider.getInstance();
+        final String nonce = session.getNonce();
+        final String token = Uri.parse(url).getQueryParameter("connection_token");
+
+        // the call is shared with other logins completed with the same token, cancelling this
+        // one only detaches it
+        services.getSingleFlight().execute(
+                "connection:" + token,
+                session.getDeadline(),
+                session.getCancellation(),
+                new SingleFlight.SharedCall<ResponseConnection>() {
+                    @Override
+                    public void execute(
+                            Deadline deadline,
+                            Cancellation cancellation,
+                            Callback<ResponseConnection> callback) {
+                        services.getResilientCaller().execute(
+                                ApiEndpoint.CONNECTION,
+                                deadline,
+                                cancellation,
+                                new ServiceCall<ResponseConnection>() {
+                                    @Override
+                                    public void execute(Callback<ResponseConnection> callback) {
+                                        ConnectionService service =
+                                                services.getConnectionService();
+                                        service.info(
+                                                ServiceManagerProvider.buildAuthHeader(nonce),
+                                                token,
+                                                callback);
+                                    }
+                                },
+                                callback);
+                    }
+                },
+                new Callback<ResponseConnection>() {
+                    @Override
+                    public void success(ResponseConnection connection, Response response) {
+                        reportLoginSuccess(session, connection.data.user);
+                    }
 
-        service.info(
-                ServiceManagerProvider.buildAuthHeader(lastNonce),
-                Uri.parse(url).getQueryParameter("connection_token"),
-                connectionCallback);
+                    @Override
+                    public void failure(RetrofitError error) {
+                        reportLoginFailure(session, connectionError(error));
+                    }
+                });
     }
 
     /**
      * actual login with user information already filled in
      *
+     * @param session   session of the login
+     * @param activity  current activity
      * @param userInput user information if required by this provider, can be null
      */
-    private void webLoginWithLoginData(Activity activity, Provider provider, String userInput) {
-        String url = getApiUrlForProvider(provider, lastNonce, userInput);
+    private void webLoginWithLoginData(LoginSession session, Activity activity, String userInput) {
+        Provider provider = session.getProvider();
+        String url = getApiUrlForProvider(provider, session.getNonce(), userInput);
         OALog.info(String.format(
                 "Web login with provider %s and url: %s", provider.getKey(), url));
         Intent i = new Intent(activity, WebLoginActivity.class);
         i.putExtra(WebLoginActivity.INTENT_EXTRA_URL, url);
+        i.putExtra(WebLoginActivity.INTENT_EXTRA_NONCE, session.getNonce());
+        if (session.getDeadline().isBounded()) {
+            i.putExtra(
+                    WebLoginActivity.INTENT_EXTRA_DEADLINE,
+                    SystemClock.elapsedRealtime() + session.getDeadline().remaining());
+        }
 
+        session.setActivity(activity);
+        session.setOpenRequestCode(INTENT_REQUEST_CODE_LOGIN);
         activity.startActivityForResult(i, INTENT_REQUEST_CODE_LOGIN);
     }
 
     /**
      * starts actual web login with selected provider by opening web view with provider relevant
      * URL
+     *
+     * @param session  session of the login
+     * @param activity current activity
      */
-    private void webLoginWithProvider(Activity activity, final Provider provider) {
+    private void webLoginWithProvider(final LoginSession session, Activity activity) {
+        Provider provider = session.getProvider();
         OALog.info(String.format("Login with provider %s", provider));
 
         if (provider.getAuthentication().getIsUserInputRequired()) {
@@ -477,7 +992,9 @@ public class OAManager {
 
                 @Override
                 public void onAccept(String userInput) {
-                    webLoginWithLoginData(dialog.getActivity(), provider, userInput);
+                    if (session.isActive()) {
+                        webLoginWithLoginData(session, dialog.getActivity(), userInput);
+                    }
                 }
             });
 
@@ -486,9 +1003,9 @@ public class OAManager {
             args.putString(UserInputDialog.ARGUMENT_PROVIDER_NAME, provider.getName());
 
             dialog.setArguments(args);
-            dialog.show(fm, "user_input_dialog");
+            dialog.show(fm, getUserInputDialogTag(session));
         } else {
-            webLoginWithLoginData(activity, provider, null);
+            webLoginWithLoginData(session, activity, null);
         }
     }
 
@@ -516,66 +1033,366 @@ public class OAManager {
     }
 
     /**
-     * handler of native Facebook authentication failure
+     * get tag of the user input dialog of a login
+     *
+     * @param session session of the login
      *
-     * @param error detailed error
+     * @return fragment tag
      */
-    private void facebookLoginFailure(OAError error) {
-        OALog.warn(String.format("Failed to login with Facebook: %s", error.getMessage()));
-        if (loginHandler != null) {
-            loginHandler.loginFailure(error);
+    private static String getUserInputDialogTag(LoginSession session) {
+        return USER_INPUT_DIALOG_TAG + ":" + session.getNonce();
+    }
+
+    /**
+     * get activity of a login postponed until the end of the setup, failing the login if the
+     * activity has been closed meanwhile
+     *
+     * @param session session of the login
+     *
+     * @return activity to continue the login in, {@code null} if the login has failed
+     */
+    private Activity getLiveActivity(LoginSession session) {
+        Activity activity = session.getActivity();
+        if (activity == null || activity.isFinishing()) {
+            reportLoginFailure(session, new OAError(
+                    ErrorCode.OA_ERROR_CANCELLED,
+                    "Activity the login was started from has been closed"));
+            return null;
+        }
+        return activity;
+    }
+
+    /**
+     * open activity with selection of providers, the login continues in
+     * {@link #onActivityResult(int, int, Intent)}
+     *
+     * @param session session of the login
+     */
+    private void selectProvider(LoginSession session) {
+        Activity activity = session.getActivity();
+        Intent intent = new Intent(activity, ProviderSelectActivity.class);
+        intent.putExtra(ProviderSelectActivity.INTENT_EXTRA_NONCE, session.getNonce());
+
+        session.setState(LoginSession.State.SELECTING_PROVIDER);
+        session.setOpenRequestCode(INTENT_REQUEST_CODE_SELECT_ACTIVITY);
+        activity.startActivityForResult(intent, INTENT_REQUEST_CODE_SELECT_ACTIVITY);
+    }
+
+    /**
+     * continue login started by {@link #beginLogin(Activity, LoginHandler)} with selected
+     * provider. The native SDK callbacks hold on to the session only, which releases the activity
+     * as soon as the login ends.
+     *
+     * @param session  session of the login
+     * @param activity current activity
+     * @param provider provider to use for authentication
+     */
+    private void loginWithProvider(final LoginSession session, Activity activity, Provider provider) {
+        session.setActivity(activity);
+        session.setProvider(provider);
+        session.setState(LoginSession.State.AUTHENTICATING);
+
+        // providers without native login plugin, or whose plugin cannot be used, log in on the web
+        final NativeLoginPlugin plugin = PluginRegistry.getInstance().getLoginPlugin(provider.getKey());
+        if (plugin == null || !plugin.isAvailable()) {
+            webLoginWithProvider(session, activity);
+            return;
+        }
+
+        boolean started = plugin.login(activity, new NativeLoginPlugin.LoginCallback() {
+            @Override
+            public void success(String accessToken, String secret) {
+                if (session.isActive()) {
+                    nativeLoginSuccess(session, plugin.getProviderKey(), accessToken, secret);
+                }
+            }
+
+            @Override
+            public void failure(OAError error) {
+                nativeLoginFailure(session, plugin.getProviderKey(), error);
+            }
+        });
+
+        if (!started) {
+            webLoginWithProvider(session, activity);
+        }
+    }
+
+    /**
+     * report message post completion to its handler
+     *
+     * @param handler post handler, may be {@code null}
+     * @param result  merged result of the post
+     */
+    private static void reportPostResult(OAManagerPostHandler handler, MessagePostResult result) {
+        if (handler instanceof OAManagerPostResultHandler) {
+            ((OAManagerPostResultHandler) handler).postResult(result);
+        } else if (handler != null) {
+            handler.postComplete(true, (PostMessageResponse) result.wholeResponse);
+        }
+    }
+
+    /**
+     * report message post failure to its handler
+     *
+     * @param handler  post handler, may be {@code null}
+     * @param error    reason of the failure
+     * @param response server response if any
+     */
+    private static void reportPostFailure(
+            OAManagerPostHandler handler, OAError error, PostMessageResponse response) {
+        if (handler instanceof OAManagerPostFailureHandler) {
+            ((OAManagerPostFailureHandler) handler).postFailure(error, response);
+        } else if (handler != null) {
+            handler.postComplete(false, response);
         }
     }
 
     /**
-     * handler of successful native Facebook authentication
+     * start new login in its own session and start counting its deadline, see
+     * {@link Settings#getLoginTimeout()}. Logins in progress are not affected, unless there are
+     * more of them than {@link Settings#getMaxLoginSessions()}: the oldest ones are then ended
+     * with {@link ErrorCode#OA_ERROR_CANCELLED} error.
+     *
+     * @param activity activity the login is started from
+     * @param handler  handler of the login result
      *
-     * @param guiContext  context used for GUI tasks
-     * @param accessToken Facebook access token received during authentication
+     * @return session of the new login
      */
-    private void facebookLoginSuccess(Context guiContext, String accessToken) {
-        OALog.info("Logged in with Facebook");
-        retrieveConnectionInfo(guiContext, "facebook", accessToken, null);
+    private LoginSession beginLogin(Activity activity, LoginHandler handler) {
+        Settings settings = Settings.getInstance();
+
+        for (LoginSession stale : loginSessions.removeStale(settings.getLoginSessionMaxAge())) {
+            abortLogin(stale, timeoutError());
+        }
+
+        final LoginSession session = new LoginSession(
+                activity,
+                handler,
+                settings.getLoginTimeout(),
+                new LoginSession.Canceller() {
+                    @Override
+                    public void cancel(LoginSession session) {
+                        if (session.isActive()) {
+                            OALog.info("Login cancelled");
+                            stopLogin(session);
+                            endLogin(session);
+                        }
+                    }
+                });
+
+        for (LoginSession dropped : loginSessions.add(session, settings.getMaxLoginSessions())) {
+            OALog.warn("Too many logins in progress, dropping the oldest one");
+            abortLogin(dropped, new OAError(ErrorCode.OA_ERROR_CANCELLED, null));
+        }
+
+        if (session.getDeadline().isBounded()) {
+            // the session is the token of its timeout, see endLogin()
+            mainHandler.postAtTime(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            OALog.warn("Login timed out");
+                            abortLogin(session, timeoutError());
+                        }
+                    },
+                    session,
+                    SystemClock.uptimeMillis() + session.getDeadline().remaining());
+        }
+        return session;
     }
 
     /**
-     * handler of native Twitter authentication failure
+     * stop the login: abort its API calls and close the windows it has opened
      *
-     * @param error detailed error
+     * @param session session of the login
      */
-    private void twitterLoginFailure(OAError error) {
-        OALog.warn(String.format("Failed to login with Twitter: %s", error.getMessage()));
-        if (loginHandler != null) {
-            loginHandler.loginFailure(
-                    new OAError(OAError.ErrorCode.OA_ERROR_AUTH_FAIL,
-                                error.getMessage()));
+    private void stopLogin(LoginSession session) {
+        session.getCancellation().cancel();
+
+        ProgressDialog progressDialog = session.getProgressDialog();
+        if (progressDialog != null && progressDialog.isShowing()) {
+            progressDialog.dismiss();
+        }
+
+        // results of the closed activities are reported after the login has ended and ignored
+        Activity activity = session.getActivity();
+        if (activity != null) {
+            Integer requestCode = session.getOpenRequestCode();
+            if (requestCode != null && !loginSessions.isRequestShared(session)) {
+                activity.finishActivity(requestCode);
+            }
+
+            Fragment dialog = activity.getFragmentManager()
+                    .findFragmentByTag(getUserInputDialogTag(session));
+            if (dialog instanceof DialogFragment) {
+                ((DialogFragment) dialog).dismissAllowingStateLoss();
+            }
         }
     }
 
     /**
-     * handler of successful authentication using native Twitter SDK
+     * stop the login and report its failure
      *
-     * @param guiContext  context used for GUI tasks
-     * @param accessToken Twitter access token received after authentication process
-     * @param secret      Twitter secret key received after authentication process
+     * @param session session of the login
+     * @param error   reason of the failure
      */
-    private void twitterLoginSuccess(Context guiContext, String accessToken, String secret) {
-        OALog.info("Logged in with Twitter");
-        retrieveConnectionInfo(guiContext, "twitter", accessToken, secret);
+    private void abortLogin(LoginSession session, OAError error) {
+        if (session.isActive()) {
+            stopLogin(session);
+            reportLoginFailure(session, error);
+        }
+    }
+
+    /**
+     * unregister the login and release everything it holds
+     *
+     * @param session session of the login
+     *
+     * @return handler of the login, {@code null} if it had already ended
+     */
+    private LoginHandler endLogin(LoginSession session) {
+        mainHandler.removeCallbacksAndMessages(session);
+        loginSessions.remove(session);
+        return session.end();
+    }
+
+    /**
+     * report successful end of the login; has no effect if it has already ended, e.g. by timing
+     * out
+     *
+     * @param session session of the login
+     * @param user    user logged in
+     */
+    private void reportLoginSuccess(LoginSession session, User user) {
+        LoginHandler handler = endLogin(session);
+
+        if (handler != null) {
+            if (user != null) {
+                userSessions.save(user);
+            }
+            handler.loginSuccess(user, false);
+        }
+    }
+
+    /**
+     * report failure of the login; has no effect if it has already ended
+     *
+     * @param session session of the login
+     * @param error   reason of the failure
+     */
+    private void reportLoginFailure(LoginSession session, OAError error) {
+        LoginHandler handler = endLogin(session);
+
+        if (handler != null) {
+            handler.loginFailure(error);
+        }
+    }
+
+    /**
+     * create error reported to logins which have run out of time
+     *
+     * @return {@link ErrorCode#OA_ERROR_TIMEOUT} error
+     */
+    private OAError timeoutError() {
+        return new OAError(
+                ErrorCode.OA_ERROR_TIMEOUT,
+                mAppContext.getResources().getString(R.string.login_timeout));
+    }
+
+    /**
+     * create error reported to logins postponed until an initialization which has failed
+     *
+     * @param setup handle of the failed initialization
+     *
+     * @return {@link ErrorCode#OA_ERROR_SETUP_FAILED} error
+     */
+    private OAError setupError(SetupHandle setup) {
+        Throwable failure = setup.getFailure();
+        return new OAError(
+                ErrorCode.OA_ERROR_SETUP_FAILED,
+                failure != null ? failure.getMessage() : null);
+    }
+
+    /**
+     * translate failure of user information retrieval into login error
+     *
+     * @param error failure of API call
+     *
+     * @return {@link ErrorCode#OA_ERROR_TIMEOUT} error if the call ran out of time, otherwise
+     * {@link ErrorCode#OA_ERROR_CONNECTION_ERROR}
+     */
+    private OAError connectionError(RetrofitError error) {
+        if (Deadline.isTimeout(error)) {
+            return timeoutError();
+        }
+        return new OAError(
+                ErrorCode.OA_ERROR_CONNECTION_ERROR,
+                mAppContext.getResources().getString(R.string.connection_failure));
+    }
+
+    /**
+     * handler of native authentication failure
+     *
+     * @param session  session of the login
+     * @param provider key of the provider
+     * @param error    detailed error
+     */
+    private void nativeLoginFailure(LoginSession session, String provider, OAError error) {
+        OALog.warn(String.format("Failed to login with %s: %s", provider, error.getMessage()));
+        reportLoginFailure(session, error);
+    }
+
+    /**
+     * handler of successful native authentication
+     *
+     * @param session     session of the login
+     * @param provider    key of the provider
+     * @param accessToken access token received during authentication
+     * @param secret      (optional) secret key received during authentication
+     */
+    private void nativeLoginSuccess(
+            LoginSession session, String provider, String accessToken, String secret) {
+        OALog.info(String.format("Logged in with %s", provider));
+        retrieveConnectionInfo(session, provider, accessToken, secret);
     }
 
     /**
      * after successful login, user information has to be retrieved, which is the responsibility of
-     * this method
+     * this method. The user retrieved with the same native credentials shortly before is reused
+     * without calling the API, see {@link Settings#getNativeLoginCacheTtl()}.
      *
-     * @param guiContext  context used for GUI tasks
+     * @param session     session of the login, its activity is used for GUI tasks
      * @param platform    platform with which the authentication is performed
      * @param accessToken (optional) access token received during native authentication (e.g.
      *                    Facebook or Twitter)
      * @param secret      (optional) secret key received during native authentication (e.g. Twitter)
      */
     private void retrieveConnectionInfo(
-            Context guiContext, String platform, String accessToken, String secret) {
+            final LoginSession session,
+            final String platform,
+            final String accessToken,
+            final String secret) {
+
+        session.setState(LoginSession.State.RETRIEVING_USER);
+
+        final Settings settings = Settings.getInstance();
+        User cached = nativeLogins.get(
+                platform, accessToken, secret, settings.getNativeLoginCacheTtl());
+        if (cached != null) {
+            OALog.info(String.format("Reusing user retrieved for the same %s token", platform));
+            reportLoginSuccess(session, cached);
+            return;
+        }
+
+        Context guiContext = session.getActivity();
+        if (guiContext == null) {
+            // the activity has been destroyed during the native login, same as backing out below
+            reportLoginFailure(session, new OAError(
+                    ErrorCode.OA_ERROR_CONNECTION_ERROR,
+                    mAppContext.getResources().getString(R.string.connection_failure)));
+            return;
+        }
 
         try {
             final ProgressDialog pd = ProgressDialog.show(
@@ -584,52 +1401,135 @@ public class OAManager {
                     guiContext.getString(R.string.reading_user_info_message),
                     true,
                     true);
-
-            UserService service = ServiceManagerProvider.getInstance().getUserService();
-            NativeLoginRequest request = new NativeLoginRequest(platform, accessToken, secret);
-
-            service.info(request, new Callback<ResponseConnection>() {
+            session.setProgressDialog(pd);
+
+            final ServiceManagerProvider services = ServiceManagerProvider.getInstance();
+            final NativeLoginRequest request = new NativeLoginRequest(platform, accessToken, secret);
+
+            // repeated logins with the same native token share one request, each of them gets
+            // the result and dismisses its own dialog. The request runs until the last of them
+            // is cancelled or times out. The credentials are only part of the key as a hash.
+            services.getSingleFlight().execute(
+                    "users:" + NativeLoginCache.buildKey(platform, accessToken, secret),
+                    session.getDeadline(),
+                    session.getCancellation(),
+                    new SingleFlight.SharedCall<ResponseConnection>() {
+                        @Override
+                        public void execute(
+                                Deadline deadline,
+                                Cancellation cancellation,
+                                Callback<ResponseConnection> callback) {
+                            services.getResilientCaller().execute(
+                                    ApiEndpoint.USERS,
+                                    deadline,
+                                    cancellation,
+                                    new ServiceCall<ResponseConnection>() {
+                                        @Override
+                                        public void execute(
+                                                Callback<ResponseConnection> callback) {
+                                            UserService service = services.getUserService();
+                                            service.info(request, callback);
+                                        }
+                                    },
+                                    callback);
+                        }
+                    },
+                    new Callback<ResponseConnection>() {
                 @Override
                 public void success(ResponseConnection connection, Response response) {
                     // dismiss the dialog: since we created it with an app context
                     // we must explicitly request it to destroy itself
                     pd.dismiss();
-
-                    if (loginHandler != null) {
-                        loginHandler.loginSuccess(connection.data.user, false);
-                        loginHandler = null;
-                    }
+                    nativeLogins.put(
+                            platform,
+                            accessToken,
+                            secret,
+                            connection.data.user,
+                            settings.getNativeLoginCacheSize());
+                    reportLoginSuccess(session, connection.data.user);
                 }
 
                 @Override
                 public void failure(RetrofitError error) {
                     pd.dismiss();
-
-                    if (loginHandler != null) {
-                        loginHandler.loginFailure(new OAError(
-                                OAError.ErrorCode.OA_ERROR_CONNECTION_ERROR,
-                                mAppContext.getResources().getString(R.string.connection_failure)));
-                        loginHandler = null;
-                    }
+                    reportLoginFailure(session, connectionError(error));
                 }
             });
         } catch (WindowManager.BadTokenException e) {
             // the user backed out of the calling activity so we failed to show the loading view
             // notify the handler of a generic connection failure either way
-            if (loginHandler != null) {
-                loginHandler.loginFailure(new OAError(
-                        ErrorCode.OA_ERROR_CONNECTION_ERROR,
-                        mAppContext.getResources().getString(R.string.connection_failure)));
-                loginHandler = null;
-            }
+            reportLoginFailure(session, new OAError(
+                    ErrorCode.OA_ERROR_CONNECTION_ERROR,
+                    mAppContext.getResources().getString(R.string.connection_failure)));
+        }
+    }
+
+    /**
+     * validate setup arguments and store the settings required by the rest of the manager
+     *
+     * @param context   context
+     * @param subdomain subdomain of OneAll application
+     * @return new readiness handle of the manager
+     */
+    private SetupHandle prepareSetup(Context context, String subdomain) {
+        if (context == null) {
+            throw new NullPointerException("context cannot be null");
+        }
+
+        if (subdomain == null || subdomain.trim().length() == 0) {
+            throw new IllegalArgumentException("Subdomain cannot be empty");
+        }
+
+        Settings.getInstance().setSubdomain(subdomain);
+
+        setupHandle = new SetupHandle();
+
+        // make sure the ref we hold is from the application context
+        mAppContext = context.getApplicationContext();
+
+        userSessions = new UserSessionStore(mAppContext);
+        if (outbox == null) {
+            outbox = new PostOutbox(mAppContext);
         }
+
+        return setupHandle;
     }
 
-    /** validate initialization state, throws an exception if the manager is not initialized */
+    /**
+     * perform the blocking part of the manager setup: plugins, providers list and the stored user
+     * session. Native provider SDKs are not started here but on their first use.
+     *
+     * @param subdomain          subdomain of OneAll application
+     * @param twitterConsumerKey Twitter consumer key
+     * @param twitterSecret      Twitter secret key
+     */
+    private void initialize(String subdomain, String twitterConsumerKey, String twitterSecret) {
+        this.twitterConsumerKey = twitterConsumerKey;
+        this.twitterConsumerSecret = twitterSecret;
+
+        // plugins only store their settings here, native SDKs are started on their first use
+        PluginRegistry.getInstance().initialize(mAppContext);
+
+        OALog.info(String.format("SDK init with subdomain %s", subdomain));
+
+        ServiceManagerProvider.getInstance().prewarm();
+        ProviderManager.getInstance().refreshProviders(mAppContext);
+        userSessions.prefetch();
+        outbox.start();
+    }
+
+    /**
+     * validate initialization state, throws an exception if the manager is not initialized or its
+     * initialization has failed
+     */
     void validateInitialization() {
         if (mAppContext == null) {
             throw new IllegalStateException("Manager not initialized");
         }
+        if (setupHandle.isFailed()) {
+            throw new IllegalStateException(
+                    "Manager initialization failed", setupHandle.getFailure());
+        }
     }
 
     // endregion
@@ -640,64 +1540,131 @@ public class OAManager {
      * should be called by the using activity to process onCreate signal
      */
     public void onCreate(Activity activity, Bundle savedInstanceState) {
-        FacebookWrapper.getInstance().onCreate(activity, savedInstanceState);
+        for (NativeLoginPlugin plugin : PluginRegistry.getInstance().getLoginPlugins()) {
+            plugin.onCreate(activity, savedInstanceState);
+        }
     }
 
     /**
      * should be called by the using activity to process onResume signal
      */
     public void onResume() {
-        FacebookWrapper.getInstance().onResume();
+        for (NativeLoginPlugin plugin : PluginRegistry.getInstance().getLoginPlugins()) {
+            plugin.onResume();
+        }
     }
 
     /**
      * should be called by the using activity to process onPause signal
      */
     public void onPause() {
-        FacebookWrapper.getInstance().onPause();
+        for (NativeLoginPlugin plugin : PluginRegistry.getInstance().getLoginPlugins()) {
+            plugin.onPause();
+        }
     }
 
     /**
      * should be called by the using activity to process onActivityResult signal
      */
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        LoginSession session = findLoginSession(requestCode, data);
+
         switch (resultCode) {
             case Activity.RESULT_OK:
                 if (requestCode == INTENT_REQUEST_CODE_SELECT_ACTIVITY) {
-                    loginOnResumeProvider = data.getExtras().getString(ProviderSelectActivity.INTENT_EXTRA_PROVIDER);
-                    loginOnResume = true;
+                    if (session != null) {
+                        session.setOpenRequestCode(null);
+                        session.setSelectedProviderKey(data.getExtras().getString(ProviderSelectActivity.INTENT_EXTRA_PROVIDER));
+                        session.setState(LoginSession.State.PROVIDER_SELECTED);
+                    }
                 } else if (requestCode == INTENT_REQUEST_CODE_LOGIN) {
-                    webLoginComplete(data);
+                    if (session != null) {
+                        webLoginComplete(session, data);
+                    }
                 } else {
-                    FacebookWrapper.getInstance().onActivityResult(requestCode, resultCode, data);
-                    TwitterWrapper.getInstance().onActivityResult(requestCode, resultCode, data);
+                    dispatchNativeResult(requestCode, resultCode, data);
                 }
                 break;
             case Activity.RESULT_CANCELED:
                 // let the native sdk's handle the result cancelled ev
-                FacebookWrapper.getInstance().onActivityResult(requestCode, resultCode, data);
-                TwitterWrapper.getInstance().onActivityResult(requestCode, resultCode, data);
+                dispatchNativeResult(requestCode, resultCode, data);
                 /* fall through */
             case WebLoginActivity.RESULT_FAILED:
-                if (loginHandler != null) {
-                    loginHandler.loginFailure(new OAError(OAError.ErrorCode.OA_ERROR_CANCELLED, null));
-                    loginHandler = null;
+                if (session != null) {
+                    reportLoginFailure(
+                            session, new OAError(OAError.ErrorCode.OA_ERROR_CANCELLED, null));
                 }
+                break;
+            case WebLoginActivity.RESULT_TIMEOUT:
+                if (session != null) {
+                    reportLoginFailure(session, timeoutError());
+                }
+                break;
+        }
+    }
+
+    /**
+     * pass activity result to the native login plugins
+     */
+    private void dispatchNativeResult(int requestCode, int resultCode, Intent data) {
+        for (NativeLoginPlugin plugin : PluginRegistry.getInstance().getLoginPlugins()) {
+            plugin.onActivityResult(requestCode, resultCode, data);
         }
     }
 
+    /**
+     * find login an activity result belongs to
+     *
+     * @param requestCode request code of the activity
+     * @param data        result of the activity, may be {@code null}
+     *
+     * @return session of the login, {@code null} if the result does not belong to any
+     */
+    private LoginSession findLoginSession(int requestCode, Intent data) {
+        String nonce = null;
+        if (data != null) {
+            nonce = data.getStringExtra(requestCode == INTENT_REQUEST_CODE_SELECT_ACTIVITY
+                    ? ProviderSelectActivity.INTENT_EXTRA_NONCE
+                    : WebLoginActivity.INTENT_EXTRA_NONCE);
+        }
+        if (nonce != null) {
+            return loginSessions.get(nonce);
+        }
+
+        // results without nonce, e.g. of activities closed by the system, can only be matched by
+        // their request code
+        if (requestCode == INTENT_REQUEST_CODE_SELECT_ACTIVITY
+                || requestCode == INTENT_REQUEST_CODE_LOGIN) {
+            return loginSessions.findOnlyByRequestCode(requestCode);
+        }
+
+        // results of native SDK activities carry no nonce, they belong to the newest native login
+        List<LoginSession> authenticating =
+                loginSessions.findByState(LoginSession.State.AUTHENTICATING);
+        for (int i = authenticating.size() - 1; i >= 0; i--) {
+            if (authenticating.get(i).getOpenRequestCode() == null) {
+                return authenticating.get(i);
+            }
+        }
+        return null;
+    }
+
     /**
      * should be called by the using activity to process onSaveInstanceState signal
      */
     public void onSaveInstanceState(Bundle outState) {
-        FacebookWrapper.getInstance().onSaveInstanceState(outState);
+        for (NativeLoginPlugin plugin : PluginRegistry.getInstance().getLoginPlugins()) {
+            plugin.onSaveInstanceState(outState);
+        }
     }
 
     /**
      * should be called by the using activity to process onDestroy signal
      */
     public void onDestroy() {
-        FacebookWrapper.getInstance().onDestroy();
+        for (NativeLoginPlugin plugin : PluginRegistry.getInstance().getLoginPlugins()) {
+            plugin.onDestroy();
+        }
     }
 
     // endregion
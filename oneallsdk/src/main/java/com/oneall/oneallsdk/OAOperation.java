@@ -0,0 +1,81 @@
+package com.oneall.oneallsdk;
+
+/**
+ * Handle of an operation started by {@link OAManager}, such as a login or a message post. Can be
+ * used to check whether the operation is still running and to cancel it.
+ *
+ * A cancelled operation stops right away: its API calls are aborted, its windows are closed and
+ * its handler is not called anymore.
+ */
+public final class OAOperation {
+
+    // region Properties
+
+    /** action stopping the operation, {@code null} once it has ended */
+    private Runnable canceller;
+
+    private boolean cancelled;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates handle of running operation
+     *
+     * @param canceller action stopping the operation, run on the main thread
+     */
+    OAOperation(Runnable canceller) {
+        this.canceller = canceller;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * cancel the operation. Has no effect if the operation has already ended. Can be called from
+     * any thread, the operation is stopped on the main thread.
+     */
+    public void cancel() {
+        Runnable action;
+        synchronized (this) {
+            if (canceller == null) {
+                return;
+            }
+            action = canceller;
+            canceller = null;
+            cancelled = true;
+        }
+        BackgroundExecutor.getInstance().runOnMainThread(action);
+    }
+
+    /**
+     * check whether the operation has been cancelled
+     *
+     * @return {@code true} if {@link #cancel()} has been called before the operation ended
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * check whether the operation has ended, either by completing or by being cancelled
+     *
+     * @return {@code true} if the operation is not running anymore
+     */
+    public synchronized boolean isDone() {
+        return canceller == null;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /** mark the operation as ended and release its resources */
+    synchronized void complete() {
+        canceller = null;
+    }
+
+    // endregion
+}
@@ -0,0 +1,41 @@
+package com.oneall.oneallsdk;
+
+import android.content.Context;
+
+/**
+ * Optional part of the SDK shipped in its own module, such as native Facebook or Twitter login.
+ * Plugins are discovered at runtime: every plugin module declares its plugin class in its manifest
+ * and the declaration is merged into the manifest of the application,
+ *
+ * <pre>
+ * &lt;meta-data
+ *     android:name="com.example.MyPlugin"
+ *     android:value="com.oneall.oneallsdk.OAPlugin" /&gt;
+ * </pre>
+ *
+ * Plugins can also be registered in code with {@link OAManager#registerPlugin(OAPlugin)}. A plugin
+ * class must have a public constructor without arguments.
+ *
+ * @see NativeLoginPlugin
+ * @see RemoteLogPlugin
+ */
+public abstract class OAPlugin {
+
+    /** value of the manifest meta-data declaring a plugin */
+    public static final String MANIFEST_VALUE = "com.oneall.oneallsdk.OAPlugin";
+
+    /**
+     * called once when the manager is set up, or on registration if it is set up already. May be
+     * called on a background thread, see {@link OAManager#setupAsync}.
+     *
+     * @param context application context
+     */
+    public void initialize(Context context) {
+    }
+
+    /**
+     * called when the manager is destroyed, see {@link OAManager#destroyInstance()}
+     */
+    public void destroy() {
+    }
+}
@@ -0,0 +1,353 @@
+package com.oneall.oneallsdk;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.oneall.oneallsdk.rest.models.JsonModelTypeAdapterFactory;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Append-only log of the message outbox, see {@link PostOutbox}. Every change of an entry is
+ * appended as a record and synced to disk before it takes effect, so the outbox is rebuilt by
+ * replaying the records after the application is killed.
+ *
+ * The file has a fixed header followed by the records:
+ *
+ * <pre>
+ * int    magic ("OAOB")
+ * int    format version
+ * record*:
+ *   int    payload length
+ *   byte[] initialization vector (16 bytes)
+ *   byte[] payload: JSON of the record, encrypted with AES/CBC/PKCS5Padding
+ *   byte[] HMAC-SHA256 of the length, vector and payload (32 bytes)
+ * </pre>
+ *
+ * Records are encrypted with the {@link SessionKeys} of the application, as they hold publish
+ * tokens. A record which is truncated or cannot be authenticated ends the log: it is the last
+ * write interrupted by a crash, and it is cut off when the log is read.
+ */
+final class OutboxLog {
+
+    // region Constants
+
+    private static final String LOG_FILE = "oneall_outbox.log";
+
+    private static final int MAGIC = 0x4F414F42;
+
+    /** version of the format, should be increased on every change of the record layout */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4;
+
+    private static final int IV_SIZE = SessionKeys.IV_SIZE;
+    private static final int MAC_SIZE = SessionKeys.MAC_SIZE;
+
+    /** upper limit of a record payload, anything bigger is considered corrupt */
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+
+    private static final String CHARSET = "UTF-8";
+
+    // endregion
+
+    // region Helper classes
+
+    /** change of an outbox entry */
+    static final class Record {
+
+        enum Type {
+            /** entry added, with everything needed to send it */
+            QUEUED,
+            /** entry about to be sent */
+            SENDING,
+            /** entry not delivered, to be sent again */
+            REQUEUED,
+            /** entry published */
+            SENT,
+            /** entry rejected */
+            FAILED,
+            /** entry interrupted while being sent, it may or may not have been published */
+            UNCERTAIN
+        }
+
+        Type type;
+        String key;
+        long time;
+
+        /** the following are only set for {@link Type#QUEUED} records */
+        String userToken;
+        String publishToken;
+        PostMessageRequest request;
+
+        /** used by Gson */
+        Record() {
+        }
+
+        Record(Type type, String key) {
+            this.type = type;
+            this.key = key;
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final Context context;
+
+    /** plain serialization of the records, the API envelope is not involved */
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new JsonModelTypeAdapterFactory())
+            .create();
+
+    private final SecureRandom random = new SecureRandom();
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates log; nothing is read until {@link #read()}
+     *
+     * @param context application context
+     */
+    OutboxLog(Context context) {
+        this.context = context;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * read all records of the log, cutting off a torn record at its end
+     *
+     * @return records in order of writing, empty if there is no log
+     *
+     * @throws IOException              if the log cannot be read or has an unknown format
+     * @throws GeneralSecurityException if the records cannot be decrypted
+     */
+    List<Record> read() throws IOException, GeneralSecurityException {
+        List<Record> records = new ArrayList<>();
+        File file = getFile();
+        if (!file.exists()) {
+            return records;
+        }
+
+        SessionKeys keys = SessionKeys.get(context, random);
+        long valid;
+        DataInputStream is =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (is.readInt() != MAGIC) {
+                throw new IOException("Unknown outbox file format");
+            }
+            int version = is.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(
+                        String.format("Unsupported outbox format version %d", version));
+            }
+            valid = HEADER_SIZE;
+
+            while (true) {
+                Record record;
+                int length;
+                try {
+                    length = is.readInt();
+                    if (length <= 0 || length > MAX_PAYLOAD_SIZE) {
+                        OALog.warn("Outbox record of invalid size, cutting the log off");
+                        break;
+                    }
+                    byte[] frame = new byte[IV_SIZE + length + MAC_SIZE];
+                    is.readFully(frame);
+                    record = open(keys, length, frame);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (record == null) {
+                    OALog.warn("Outbox record authentication failed, cutting the log off");
+                    break;
+                }
+                records.add(record);
+                valid += 4 + IV_SIZE + length + MAC_SIZE;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated outbox header");
+        } finally {
+            try { is.close(); } catch (IOException ignored) { }
+        }
+
+        if (valid < file.length()) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+                raf.getFD().sync();
+            } finally {
+                try { raf.close(); } catch (IOException ignored) { }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * append record and sync it to disk
+     *
+     * @param record record to append
+     *
+     * @throws IOException              on write failure
+     * @throws GeneralSecurityException if the record cannot be encrypted
+     */
+    void append(Record record) throws IOException, GeneralSecurityException {
+        byte[] frame = seal(SessionKeys.get(context, random), record);
+
+        File file = getFile();
+        boolean created = !file.exists();
+        FileOutputStream fos = new FileOutputStream(file, true);
+        try {
+            if (created) {
+                fos.write(header());
+            }
+            fos.write(frame);
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            try { fos.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    /**
+     * replace the log with other records, e.g. to drop entries which are done with. The log is
+     * replaced as a whole (see {@link AtomicFiles}), so a crash leaves either log.
+     *
+     * @param records records of the new log
+     *
+     * @throws IOException              on write failure
+     * @throws GeneralSecurityException if the records cannot be encrypted
+     */
+    void rewrite(List<Record> records) throws IOException, GeneralSecurityException {
+        SessionKeys keys = SessionKeys.get(context, random);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(4096);
+        bos.write(header());
+        for (Record record : records) {
+            bos.write(seal(keys, record));
+        }
+        AtomicFiles.write(getFile(), bos.toByteArray());
+    }
+
+    /**
+     * delete the log
+     */
+    void delete() {
+        //noinspection ResultOfMethodCallIgnored
+        getFile().delete();
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private File getFile() {
+        return new File(context.getFilesDir(), LOG_FILE);
+    }
+
+    private static byte[] header() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE);
+        DataOutputStream os = new DataOutputStream(bos);
+        os.writeInt(MAGIC);
+        os.writeInt(FORMAT_VERSION);
+        os.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * encrypt record into a frame of the log
+     *
+     * @param keys   keys of the log
+     * @param record record
+     *
+     * @return length, vector, payload and MAC
+     */
+    private byte[] seal(SessionKeys keys, Record record)
+            throws IOException, GeneralSecurityException {
+
+        byte[] iv = new byte[IV_SIZE];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(SessionKeys.CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, keys.cipher, new IvParameterSpec(iv));
+        byte[] payload = cipher.doFinal(gson.toJson(record).getBytes(CHARSET));
+        if (payload.length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("Outbox record is too big");
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(4 + IV_SIZE + payload.length + MAC_SIZE);
+        DataOutputStream os = new DataOutputStream(bos);
+        os.writeInt(payload.length);
+        os.write(iv);
+        os.write(payload);
+        os.flush();
+
+        Mac mac = Mac.getInstance(SessionKeys.MAC);
+        mac.init(keys.mac);
+        os.write(mac.doFinal(bos.toByteArray()));
+        os.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * authenticate and decrypt frame of the log
+     *
+     * @param keys   keys of the log
+     * @param length length of the payload, already read
+     * @param frame  vector, payload and MAC
+     *
+     * @return record, {@code null} if the frame cannot be authenticated
+     */
+    private Record open(SessionKeys keys, int length, byte[] frame)
+            throws IOException, GeneralSecurityException {
+
+        Mac mac = Mac.getInstance(SessionKeys.MAC);
+        mac.init(keys.mac);
+        mac.update(new byte[] {
+                (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length
+        });
+        mac.update(frame, 0, IV_SIZE + length);
+        byte[] expected = mac.doFinal();
+        byte[] actual = new byte[MAC_SIZE];
+        System.arraycopy(frame, IV_SIZE + length, actual, 0, MAC_SIZE);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        byte[] iv = new byte[IV_SIZE];
+        System.arraycopy(frame, 0, iv, 0, IV_SIZE);
+        Cipher cipher = Cipher.getInstance(SessionKeys.CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, keys.cipher, new IvParameterSpec(iv));
+        byte[] payload = cipher.doFinal(frame, IV_SIZE, length);
+        return gson.fromJson(new String(payload, CHARSET), Record.class);
+    }
+
+    // endregion
+}
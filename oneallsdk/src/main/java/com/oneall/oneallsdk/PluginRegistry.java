@@ -0,0 +1,202 @@
+package com.oneall.oneallsdk;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Plugins of the SDK, discovered in the application manifest or registered in code.
+ *
+ * @see OAPlugin
+ */
+final class PluginRegistry {
+
+    // region Properties
+
+    private static PluginRegistry mInstance = null;
+
+    private final List<OAPlugin> plugins = new CopyOnWriteArrayList<>();
+
+    private final List<NativeLoginPlugin> loginPlugins = new CopyOnWriteArrayList<>();
+
+    private final List<RemoteLogPlugin> logPlugins = new CopyOnWriteArrayList<>();
+
+    /** application context, {@code null} until the plugins are initialized */
+    private Context context;
+
+    // endregion
+
+    // region Lifecycle
+
+    private PluginRegistry() {
+    }
+
+    /**
+     * get instance of the registry
+     *
+     * @return a registry
+     */
+    static PluginRegistry getInstance() {
+        if (mInstance == null) {
+            synchronized (PluginRegistry.class) {
+                if (mInstance == null) {
+                    mInstance = new PluginRegistry();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    /**
+     * destroy all plugins and the registry
+     */
+    static void destroyInstance() {
+        synchronized (PluginRegistry.class) {
+            if (mInstance != null) {
+                for (OAPlugin plugin : mInstance.plugins) {
+                    plugin.destroy();
+                }
+                mInstance = null;
+            }
+        }
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * discover plugins declared in the application manifest and initialize all plugins. Has no
+     * effect on subsequent calls, except for initializing plugins registered meanwhile.
+     *
+     * @param context application context
+     */
+    synchronized void initialize(Context context) {
+        if (this.context != null) {
+            return;
+        }
+
+        List<OAPlugin> discovered = discover(context);
+        this.context = context;
+
+        for (OAPlugin plugin : plugins) {
+            plugin.initialize(context);
+        }
+        for (OAPlugin plugin : discovered) {
+            register(plugin);
+        }
+    }
+
+    /**
+     * add plugin; it is initialized right away if the other plugins already are. Has no effect if
+     * a plugin of the same class is registered already.
+     *
+     * @param plugin plugin to add
+     */
+    synchronized void register(OAPlugin plugin) {
+        for (OAPlugin registered : plugins) {
+            if (registered.getClass() == plugin.getClass()) {
+                return;
+            }
+        }
+
+        if (context != null) {
+            plugin.initialize(context);
+        }
+
+        plugins.add(plugin);
+        if (plugin instanceof NativeLoginPlugin) {
+            loginPlugins.add((NativeLoginPlugin) plugin);
+        }
+        if (plugin instanceof RemoteLogPlugin) {
+            logPlugins.add((RemoteLogPlugin) plugin);
+        }
+    }
+
+    /**
+     * find native login plugin of provider
+     *
+     * @param providerKey key of the provider
+     *
+     * @return plugin, {@code null} if there is none
+     */
+    NativeLoginPlugin getLoginPlugin(String providerKey) {
+        for (NativeLoginPlugin plugin : loginPlugins) {
+            if (plugin.getProviderKey().equals(providerKey)) {
+                return plugin;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get all native login plugins
+     *
+     * @return plugins, in order of registration
+     */
+    List<NativeLoginPlugin> getLoginPlugins() {
+        return loginPlugins;
+    }
+
+    /**
+     * get all remote log plugins
+     *
+     * @return plugins, in order of registration
+     */
+    List<RemoteLogPlugin> getLogPlugins() {
+        return logPlugins;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * instantiate plugins declared in the application manifest
+     *
+     * @param context application context
+     *
+     * @return plugins, plugins which cannot be instantiated are skipped
+     */
+    private static List<OAPlugin> discover(Context context) {
+        List<OAPlugin> result = new ArrayList<>();
+
+        Bundle metaData;
+        try {
+            ApplicationInfo info = context
+                    .getPackageManager()
+                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            metaData = info.metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            OALog.warn("Unable to read application meta-data, no plugins discovered");
+            return result;
+        }
+
+        if (metaData == null) {
+            return result;
+        }
+
+        for (String key : metaData.keySet()) {
+            if (!OAPlugin.MANIFEST_VALUE.equals(metaData.get(key))) {
+                continue;
+            }
+
+            try {
+                Class<?> type = Class.forName(key);
+                result.add(type.asSubclass(OAPlugin.class).newInstance());
+                OALog.info(String.format("Discovered plugin %s", key));
+            } catch (ClassNotFoundException | ClassCastException
+                    | InstantiationException | IllegalAccessException e) {
+                OALog.error(String.format("Failed to load plugin %s: %s", key, e));
+            }
+        }
+        return result;
+    }
+
+    // endregion
+}
@@ -0,0 +1,626 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.OAError.ErrorCode;
+import com.oneall.oneallsdk.OAManager.OAOutboxListener;
+import com.oneall.oneallsdk.OutboxLog.Record;
+import com.oneall.oneallsdk.rest.Cancellation;
+import com.oneall.oneallsdk.rest.CircuitBreaker;
+import com.oneall.oneallsdk.rest.Deadline;
+import com.oneall.oneallsdk.rest.MessagePostResult;
+import com.oneall.oneallsdk.rest.PublishRetrier;
+import com.oneall.oneallsdk.rest.ServiceManagerProvider;
+import com.oneall.oneallsdk.rest.Settings;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/**
+ * Durable outbox of messages posted on behalf of users, sent when the device is online. Queued
+ * messages are kept in an {@link OutboxLog} and sent in batches of
+ * {@link Settings#getOutboxBatchSize()}, at most {@link Settings#getOutboxConcurrency()} at a
+ * time, when the outbox is flushed: explicitly, when connectivity comes back, or after
+ * {@link Settings#getOutboxRetryDelay()} when messages could not be delivered.
+ *
+ * Every message has an idempotency key and is published at most once. The outbox records that a
+ * message is being sent before the request leaves the device; a message found in that state after
+ * a restart may or may not have been published, so it is not sent again but reported as
+ * uncertain. Messages are only sent again when they have certainly not reached OneAll: the
+ * connection could not be established, the circuit breaker was open, or the API was throttling.
+ * Likewise a message is only sent again to providers which have throttled it, see
+ * {@link PublishRetrier}.
+ * Enqueueing a key the outbox already knows has no effect.
+ *
+ * All the state of the outbox is confined to the {@link BackgroundExecutor} thread; the listener
+ * is called on the main thread.
+ */
+final class PostOutbox {
+
+    // region Constants
+
+    /** number of records in the log beyond which it is compacted once the outbox is idle */
+    private static final int COMPACTION_THRESHOLD = 64;
+
+    /** number of keys of finished messages kept to recognize duplicates */
+    private static final int MAX_FINISHED_KEYS = 256;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+    // endregion
+
+    // region Helper classes
+
+    /** message of the outbox */
+    private static final class Entry {
+        final String key;
+        Record.Type state;
+
+        /** request details, {@code null} once the message is finished */
+        Record queued;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        boolean isFinished() {
+            return state == Record.Type.SENT
+                    || state == Record.Type.FAILED
+                    || state == Record.Type.UNCERTAIN;
+        }
+    }
+
+    /** flushes the outbox when the device gets connected */
+    private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isConnected()) {
+                OALog.info("Connectivity restored, flushing outbox");
+                flush();
+            }
+        }
+    };
+
+    // endregion
+
+    // region Properties
+
+    private final Context context;
+
+    private final OutboxLog log;
+
+    private final BackgroundExecutor executor = BackgroundExecutor.getInstance();
+
+    /** messages by key, in order of queueing */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /** keys of messages found uncertain on restore while there was no listener */
+    private final List<String> unreportedUncertain = new ArrayList<>();
+
+    private OAOutboxListener listener;
+
+    private boolean loaded;
+
+    /** number of records in the log */
+    private int recordCount;
+
+    private boolean receiverRegistered;
+
+    /** batch being sent, {@code null} if the outbox is not flushing */
+    private Queue<Entry> batch;
+
+    private int inFlight;
+
+    /** whether a message of the current batch could not be delivered */
+    private boolean undelivered;
+
+    /** whether flush has been requested while a batch was being sent */
+    private boolean flushRequested;
+
+    private boolean retryScheduled;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates outbox; nothing is read until the outbox is used or {@link #start()}
+     *
+     * @param context application context
+     */
+    PostOutbox(Context context) {
+        this.context = context;
+        this.log = new OutboxLog(context);
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * restore messages queued in a previous run and send them
+     */
+    void start() {
+        flush();
+    }
+
+    /**
+     * queue message. The message is written to disk and sent on a background thread.
+     *
+     * @param key          (optional) idempotency key of the message, generated if {@code null}
+     * @param userToken    token of the user
+     * @param publishToken publish token of the user
+     * @param request      message to publish
+     *
+     * @return idempotency key of the message
+     */
+    String enqueue(
+            String key,
+            final String userToken,
+            final String publishToken,
+            final PostMessageRequest request) {
+
+        final String entryKey = key != null ? key : UUID.randomUUID().toString();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+                if (entries.containsKey(entryKey)) {
+                    OALog.warn(String.format("Message %s already queued, ignoring", entryKey));
+                    return;
+                }
+
+                Record record = new Record(Record.Type.QUEUED, entryKey);
+                record.userToken = userToken;
+                record.publishToken = publishToken;
+                record.request = request;
+                if (!append(record)) {
+                    report(entryKey, Record.Type.FAILED, null, new OAError(
+                            ErrorCode.OA_ERROR_MESSAGE_POST_FAIL, "Cannot write message outbox"));
+                    return;
+                }
+
+                Entry entry = new Entry(entryKey);
+                entry.state = Record.Type.QUEUED;
+                entry.queued = record;
+                entries.put(entryKey, entry);
+                OALog.info(String.format("Message %s queued", entryKey));
+
+                flushOnBackground();
+            }
+        });
+        return entryKey;
+    }
+
+    /**
+     * send queued messages now
+     */
+    void flush() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+                flushOnBackground();
+            }
+        });
+    }
+
+    /**
+     * set listener of the messages; messages found uncertain on restore are reported to it
+     *
+     * @param listener listener, {@code null} to stop listening
+     */
+    void setListener(final OAOutboxListener listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PostOutbox.this.listener = listener;
+                if (listener != null) {
+                    for (String key : unreportedUncertain) {
+                        report(key, Record.Type.UNCERTAIN, null, null);
+                    }
+                    unreportedUncertain.clear();
+                }
+            }
+        });
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * rebuild the outbox from the log on first use. Messages which were being sent are marked
+     * uncertain, and reported as such to the listener, or kept until it is set.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+
+        List<Record> records;
+        try {
+            records = log.read();
+        } catch (SessionKeys.UnavailableException e) {
+            // the log is kept and read again on the next use; nothing can be appended meanwhile
+            OALog.warn(String.format("Message outbox not readable now: %s", e.getMessage()));
+            return;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            loaded = true;
+            OALog.error(String.format("Discarding unreadable message outbox: %s", e.getMessage()));
+            log.delete();
+            return;
+        }
+        loaded = true;
+
+        for (Record record : records) {
+            Entry entry = entries.get(record.key);
+            if (record.type == Record.Type.QUEUED) {
+                if (entry != null) {
+                    continue;
+                }
+                entry = new Entry(record.key);
+                entry.queued = record;
+                entries.put(record.key, entry);
+            } else if (entry == null) {
+                // finished message whose request has been compacted away
+                entry = new Entry(record.key);
+                entries.put(record.key, entry);
+            }
+            entry.state = record.type == Record.Type.REQUEUED ? Record.Type.QUEUED : record.type;
+        }
+        recordCount = records.size();
+
+        for (Entry entry : entries.values()) {
+            if (entry.state == Record.Type.SENDING) {
+                OALog.warn(String.format(
+                        "Message %s was interrupted while being sent, not sending it again",
+                        entry.key));
+                finish(entry, Record.Type.UNCERTAIN);
+                if (listener != null) {
+                    report(entry.key, Record.Type.UNCERTAIN, null, null);
+                } else {
+                    unreportedUncertain.add(entry.key);
+                }
+            } else if (entry.isFinished()) {
+                entry.queued = null;
+            }
+        }
+
+        OALog.info(String.format("Message outbox restored, %d messages queued", countQueued()));
+    }
+
+    /**
+     * start sending the next batch of queued messages, unless a batch is being sent
+     */
+    private void flushOnBackground() {
+        if (batch != null) {
+            flushRequested = true;
+            return;
+        }
+
+        int batchSize = Math.max(1, Settings.getInstance().getOutboxBatchSize());
+        Queue<Entry> next = new ArrayDeque<>();
+        for (Entry entry : entries.values()) {
+            if (entry.state == Record.Type.QUEUED) {
+                next.add(entry);
+                if (next.size() == batchSize) {
+                    break;
+                }
+            }
+        }
+
+        if (next.isEmpty()) {
+            unregisterReceiver();
+            compactIfNeeded();
+            return;
+        }
+
+        registerReceiver();
+        batch = next;
+        inFlight = 0;
+        undelivered = false;
+        flushRequested = false;
+        sendBatch();
+    }
+
+    /**
+     * send messages of the batch up to the concurrency limit, and finish the batch when it is done
+     */
+    private void sendBatch() {
+        int concurrency = Math.max(1, Settings.getInstance().getOutboxConcurrency());
+        while (inFlight < concurrency && !undelivered && !batch.isEmpty()) {
+            send(batch.poll());
+        }
+
+        if (inFlight > 0) {
+            return;
+        }
+
+        // batch complete, or stopped because messages cannot be delivered now
+        batch = null;
+        if (undelivered) {
+            scheduleRetry();
+            compactIfNeeded();
+        } else if (countQueued() > 0 || flushRequested) {
+            flushOnBackground();
+        } else {
+            unregisterReceiver();
+            compactIfNeeded();
+        }
+    }
+
+    private void send(final Entry entry) {
+        if (!append(new Record(Record.Type.SENDING, entry.key))) {
+            // the message cannot be sent unless its state is known to survive a crash
+            undelivered = true;
+            return;
+        }
+        entry.state = Record.Type.SENDING;
+        inFlight++;
+
+        Callback<MessagePostResult> callback = new Callback<MessagePostResult>() {
+            @Override
+            public void success(final MessagePostResult result, Response response) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        inFlight--;
+                        OALog.info(String.format("Queued message %s sent", entry.key));
+                        finish(entry, Record.Type.SENT);
+                        report(entry.key, Record.Type.SENT, result, null);
+                        sendBatch();
+                    }
+                });
+            }
+
+            @Override
+            public void failure(final RetrofitError error) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        inFlight--;
+                        sendFailed(entry, error);
+                        sendBatch();
+                    }
+                });
+            }
+        };
+
+        Record queued = entry.queued;
+        try {
+            new PublishRetrier(ServiceManagerProvider.getInstance()).publish(
+                    queued.userToken,
+                    queued.publishToken,
+                    queued.request,
+                    Deadline.after(Settings.getInstance().getPostTimeout()),
+                    Cancellation.NONE,
+                    callback);
+        } catch (RuntimeException e) {
+            // nothing has been sent
+            callback.failure(RetrofitError.unexpectedError(entry.key, e));
+        }
+    }
+
+    /**
+     * handle failure of sending message: send it again later if it has certainly not been
+     * delivered, otherwise finish it
+     */
+    private void sendFailed(Entry entry, RetrofitError error) {
+        if (isUndelivered(error)) {
+            OALog.warn(String.format(
+                    "Queued message %s not delivered, keeping it: %s", entry.key, error.getMessage()));
+            if (append(new Record(Record.Type.REQUEUED, entry.key))) {
+                entry.state = Record.Type.QUEUED;
+            } else {
+                // stays SENDING on disk, so it must not be sent again
+                finish(entry, Record.Type.UNCERTAIN);
+                report(entry.key, Record.Type.UNCERTAIN, null, null);
+            }
+            undelivered = true;
+            return;
+        }
+
+        if (error.getKind() == RetrofitError.Kind.HTTP
+                || error.getKind() == RetrofitError.Kind.UNEXPECTED) {
+            OALog.warn(String.format(
+                    "Queued message %s rejected: %s", entry.key, error.getMessage()));
+            finish(entry, Record.Type.FAILED);
+            report(entry.key, Record.Type.FAILED, null,
+                    new OAError(ErrorCode.OA_ERROR_MESSAGE_POST_FAIL, error.getMessage()));
+            return;
+        }
+
+        OALog.warn(String.format(
+                "Queued message %s may not have been sent: %s", entry.key, error.getMessage()));
+        finish(entry, Record.Type.UNCERTAIN);
+        report(entry.key, Record.Type.UNCERTAIN, null, null);
+    }
+
+    /**
+     * check whether failed request has certainly not been published
+     *
+     * @param error failure of the request
+     *
+     * @return {@code true} if the request has not reached OneAll or OneAll has refused to serve it
+     */
+    private static boolean isUndelivered(RetrofitError error) {
+        if (error.getKind() == RetrofitError.Kind.HTTP) {
+            int status = error.getResponse() != null ? error.getResponse().getStatus() : 0;
+            return status == HTTP_TOO_MANY_REQUESTS || status == HTTP_SERVICE_UNAVAILABLE;
+        }
+        if (error.getKind() != RetrofitError.Kind.NETWORK) {
+            return false;
+        }
+        Throwable cause = error.getCause();
+        return cause instanceof ConnectException
+                || cause instanceof UnknownHostException
+                || cause instanceof NoRouteToHostException
+                || cause instanceof CircuitBreaker.OpenException
+                || cause instanceof Cancellation.CancelledException;
+    }
+
+    /**
+     * record final state of message, forgetting its request
+     */
+    private void finish(Entry entry, Record.Type state) {
+        entry.state = state;
+        entry.queued = null;
+        append(new Record(state, entry.key));
+    }
+
+    /**
+     * append record to the log
+     *
+     * @return {@code true} if the record is on disk
+     */
+    private boolean append(Record record) {
+        try {
+            log.append(record);
+            recordCount++;
+            return true;
+        } catch (IOException | GeneralSecurityException e) {
+            OALog.error(String.format("Failed to write message outbox: %s", e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * rewrite the log with the queued messages and the keys of the latest finished ones, once it
+     * has grown enough. Only called when no message is being sent.
+     */
+    private void compactIfNeeded() {
+        if (recordCount < COMPACTION_THRESHOLD) {
+            return;
+        }
+
+        // forget the oldest finished messages
+        int finished = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (finished > MAX_FINISHED_KEYS && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+
+        List<Record> records = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            records.add(entry.queued != null ? entry.queued : new Record(entry.state, entry.key));
+        }
+
+        try {
+            log.rewrite(records);
+            recordCount = records.size();
+        } catch (IOException | GeneralSecurityException e) {
+            OALog.warn(String.format("Failed to compact message outbox: %s", e.getMessage()));
+        }
+    }
+
+    private int countQueued() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.state == Record.Type.QUEUED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void scheduleRetry() {
+        if (retryScheduled) {
+            return;
+        }
+        retryScheduled = true;
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                retryScheduled = false;
+                flushOnBackground();
+            }
+        }, Settings.getInstance().getOutboxRetryDelay());
+    }
+
+    private void registerReceiver() {
+        if (!receiverRegistered) {
+            receiverRegistered = true;
+            context.registerReceiver(
+                    connectivityReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+    }
+
+    private void unregisterReceiver() {
+        if (receiverRegistered) {
+            receiverRegistered = false;
+            context.unregisterReceiver(connectivityReceiver);
+        }
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager manager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo network = manager != null ? manager.getActiveNetworkInfo() : null;
+        return network != null && network.isConnected();
+    }
+
+    /**
+     * report outcome of message to the listener on the main thread
+     */
+    private void report(
+            final String key,
+            final Record.Type state,
+            final MessagePostResult result,
+            final OAError error) {
+
+        final OAOutboxListener listener = this.listener;
+        if (listener == null) {
+            return;
+        }
+        executor.postToMainThread(new Runnable() {
+            @Override
+            public void run() {
+                switch (state) {
+                    case SENT:
+                        listener.messageSent(key, result);
+                        break;
+                    case FAILED:
+                        listener.messageFailed(key, error);
+                        break;
+                    default:
+                        listener.messageUncertain(key);
+                        break;
+                }
+            }
+        });
+    }
+
+    // endregion
+}
@@ -0,0 +1,286 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.models.Provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes providers cache in a compact binary format. The file consists of a fixed header
+ * followed by the payload:
+ *
+ * <pre>
+ * int   magic ("OAPC")
+ * int   format version
+ * long  time the list was received from the server (ms since epoch)
+ * int   payload length
+ * long  CRC32 of the payload
+ * byte[] payload
+ * </pre>
+ *
+ * The payload starts with HTTP validators ({@code ETag} and {@code Last-Modified}) of the server
+ * response the list was received with, followed by the providers. The time stamp is kept outside
+ * of the checksum, so that it can be updated in place when the server confirms that the list has
+ * not changed.
+ *
+ * Files with unknown magic, different version or mismatching checksum are rejected with
+ * {@link java.io.IOException}, so that the caller can discard them and fetch the list again.
+ */
+final class ProviderCacheSerializer {
+
+    // region Constants
+
+    private static final int MAGIC = 0x4F415043;
+
+    /** version of the format, should be increased on every change of the payload layout */
+    static final int FORMAT_VERSION = 2;
+
+    /** offset of the time stamp in the header */
+    private static final int TIMESTAMP_OFFSET = 4 + 4;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+
+    /** upper limit of the payload size, anything bigger is considered a corrupt file */
+    private static final int MAX_PAYLOAD_SIZE = 1024 * 1024;
+
+    private static final byte VALUE_NULL = -1;
+    private static final byte VALUE_FALSE = 0;
+    private static final byte VALUE_TRUE = 1;
+
+    // endregion
+
+    // region Helper classes
+
+    /** content of the cache file */
+    static final class CachedProviders {
+        final long savedAt;
+        final String etag;
+        final String lastModified;
+        final List<Provider> providers;
+
+        CachedProviders(long savedAt, String etag, String lastModified, List<Provider> providers) {
+            this.savedAt = savedAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.providers = providers;
+        }
+    }
+
+    // endregion
+
+    // region Lifecycle
+
+    private ProviderCacheSerializer() {
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * write providers into file, replacing it as a whole (see {@link AtomicFiles})
+     *
+     * @param file         destination file
+     * @param savedAt      time the providers were received from the server
+     * @param etag         (optional) {@code ETag} of the server response
+     * @param lastModified (optional) {@code Last-Modified} of the server response
+     * @param providers    providers to write
+     *
+     * @throws IOException on write failure
+     */
+    static void write(
+            File file,
+            long savedAt,
+            String etag,
+            String lastModified,
+            Collection<Provider> providers) throws IOException {
+
+        byte[] payload = encode(etag, lastModified, providers);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + payload.length);
+        DataOutputStream os = new DataOutputStream(bos);
+        os.writeInt(MAGIC);
+        os.writeInt(FORMAT_VERSION);
+        os.writeLong(savedAt);
+        os.writeInt(payload.length);
+        os.writeLong(crc.getValue());
+        os.write(payload);
+        os.flush();
+
+        AtomicFiles.write(file, bos.toByteArray());
+    }
+
+    /**
+     * read providers from file
+     *
+     * @param file source file
+     *
+     * @return providers read from file along with the time and validators they were received with
+     *
+     * @throws java.io.FileNotFoundException if there is no cache file
+     * @throws IOException if the file cannot be read, belongs to another format version or is
+     * corrupt
+     */
+    static CachedProviders read(File file) throws IOException {
+        byte[] data = AtomicFiles.readFully(file, HEADER_SIZE + MAX_PAYLOAD_SIZE);
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(data));
+
+        if (data.length < HEADER_SIZE || is.readInt() != MAGIC) {
+            throw new IOException("Unknown cache file format");
+        }
+        int version = is.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported cache format version %d", version));
+        }
+        long savedAt = is.readLong();
+        int length = is.readInt();
+        long checksum = is.readLong();
+        if (length < 0 || length != data.length - HEADER_SIZE) {
+            throw new IOException("Truncated cache file");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_SIZE, length);
+        if (crc.getValue() != checksum) {
+            throw new IOException("Cache file checksum mismatch");
+        }
+
+        String etag = readString(is);
+        String lastModified = readString(is);
+        return new CachedProviders(savedAt, etag, lastModified, decode(is));
+    }
+
+    /**
+     * update the time stamp of existing cache file without rewriting its content
+     *
+     * @param file    cache file
+     * @param savedAt new time stamp
+     *
+     * @throws IOException if the file cannot be updated
+     */
+    static void updateTimestamp(File file, long savedAt) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC
+                    || raf.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown cache file format");
+            }
+            raf.seek(TIMESTAMP_OFFSET);
+            raf.writeLong(savedAt);
+        } finally {
+            try { raf.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static byte[] encode(
+            String etag, String lastModified, Collection<Provider> providers) throws IOException {
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(providers.size() * 64);
+        DataOutputStream os = new DataOutputStream(bos);
+
+        writeString(os, etag);
+        writeString(os, lastModified);
+
+        os.writeInt(providers.size());
+        for (Provider p : providers) {
+            writeString(os, p.getKey());
+            writeString(os, p.getName());
+            writeBoolean(os, p.getIsConfigurable());
+
+            Provider.Configuration configuration = p.getConfiguration();
+            os.writeBoolean(configuration != null);
+            if (configuration != null) {
+                writeBoolean(os, configuration.getIsRequired());
+                writeBoolean(os, configuration.getIsCompleted());
+            }
+
+            Provider.Authentication authentication = p.getAuthentication();
+            os.writeBoolean(authentication != null);
+            if (authentication != null) {
+                writeBoolean(os, authentication.getIsUserInputRequired());
+                writeString(os, authentication.getUserInputType());
+            }
+        }
+        os.flush();
+        return bos.toByteArray();
+    }
+
+    private static List<Provider> decode(DataInputStream is) throws IOException {
+        int count = is.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid providers count");
+        }
+
+        ArrayList<Provider> providers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Provider p = new Provider();
+            p.setKey(readString(is));
+            p.setName(readString(is));
+            p.setIsConfigurable(readBoolean(is));
+
+            if (is.readBoolean()) {
+                Provider.Configuration configuration = new Provider.Configuration();
+                configuration.setIsRequired(readBoolean(is));
+                configuration.setIsCompleted(readBoolean(is));
+                p.setConfiguration(configuration);
+            }
+
+            if (is.readBoolean()) {
+                Provider.Authentication authentication = new Provider.Authentication();
+                authentication.setIsUserInputRequired(readBoolean(is));
+                authentication.setUserInputType(readString(is));
+                p.setAuthentication(authentication);
+            }
+
+            providers.add(p);
+        }
+        return providers;
+    }
+
+    private static void writeString(DataOutputStream os, String value) throws IOException {
+        os.writeBoolean(value != null);
+        if (value != null) {
+            os.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream is) throws IOException {
+        return is.readBoolean() ? is.readUTF() : null;
+    }
+
+    private static void writeBoolean(DataOutputStream os, Boolean value) throws IOException {
+        os.writeByte(value == null ? VALUE_NULL : (value ? VALUE_TRUE : VALUE_FALSE));
+    }
+
+    private static Boolean readBoolean(DataInputStream is) throws IOException {
+        byte value = is.readByte();
+        switch (value) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_TRUE:
+                return true;
+            default:
+                throw new IOException(String.format("Invalid boolean value %d", value));
+        }
+    }
+
+    // endregion
+}
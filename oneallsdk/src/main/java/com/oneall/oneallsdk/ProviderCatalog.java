@@ -0,0 +1,176 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.models.Provider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the providers list. Every refresh of the providers builds a new catalog
+ * which replaces the previous one as a whole, so readers never observe a partially updated list
+ * and can keep references to the collections returned without copying them.
+ */
+public final class ProviderCatalog {
+
+    // region Properties
+
+    /** empty catalog used before any providers have been loaded */
+    static final ProviderCatalog EMPTY =
+            new ProviderCatalog(0, 0, Collections.<Provider>emptyList());
+
+    /** monotonically growing version of the snapshot */
+    private final long version;
+
+    /** time the providers were received from the server (ms since epoch) */
+    private final long fetchedAt;
+
+    /** providers in the order received from the server */
+    private final List<Provider> providers;
+
+    /** keys of the providers in the same order as {@link #providers} */
+    private final List<String> keys;
+
+    /** index of providers by their unique key */
+    private final Map<String, Provider> index;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * builds new catalog snapshot
+     *
+     * @param version   version of the snapshot
+     * @param fetchedAt time the providers were received from the server
+     * @param providers providers to include; the collection is copied and may be modified by the
+     *                  caller afterwards. Providers without key and repeated keys are skipped.
+     */
+    ProviderCatalog(long version, long fetchedAt, Collection<Provider> providers) {
+        ArrayList<Provider> list = new ArrayList<>(providers.size());
+        ArrayList<String> keyList = new ArrayList<>(providers.size());
+        HashMap<String, Provider> map = new HashMap<>(providers.size() * 2);
+
+        for (Provider p : providers) {
+            // a key repeated by the server keeps its first provider, so that the list and the
+            // index agree on which provider a key means
+            if (p == null || p.getKey() == null || map.containsKey(p.getKey())) {
+                continue;
+            }
+            list.add(p);
+            keyList.add(p.getKey());
+            map.put(p.getKey(), p);
+        }
+
+        this.version = version;
+        this.fetchedAt = fetchedAt;
+        this.providers = Collections.unmodifiableList(list);
+        this.keys = Collections.unmodifiableList(keyList);
+        this.index = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * builds copy of existing catalog with a different fetch time, sharing its collections
+     *
+     * @param source    catalog to copy
+     * @param fetchedAt time the providers were confirmed by the server
+     */
+    private ProviderCatalog(ProviderCatalog source, long fetchedAt) {
+        this.version = source.version;
+        this.fetchedAt = fetchedAt;
+        this.providers = source.providers;
+        this.keys = source.keys;
+        this.index = source.index;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * get version of this snapshot
+     *
+     * @return version, {@code 0} for an empty catalog that has never been loaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * get time the providers of this snapshot were received from the server
+     *
+     * @return time in milliseconds since epoch, {@code 0} for an empty catalog
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * check whether the snapshot is still fresh enough to be used without revalidation
+     *
+     * @param ttl maximum age of the snapshot in milliseconds
+     * @param now current time in milliseconds since epoch
+     *
+     * @return {@code true} if the snapshot is not empty and younger than {@code ttl}
+     */
+    public boolean isFresh(long ttl, long now) {
+        return !isEmpty() && now - fetchedAt >= 0 && now - fetchedAt < ttl;
+    }
+
+    /**
+     * get copy of this snapshot confirmed by the server to be up to date at the specified time
+     *
+     * @param fetchedAt time of confirmation in milliseconds since epoch
+     *
+     * @return snapshot with the same version and providers and updated fetch time
+     */
+    ProviderCatalog revalidated(long fetchedAt) {
+        return new ProviderCatalog(this, fetchedAt);
+    }
+
+    /**
+     * get providers of this snapshot
+     *
+     * @return unmodifiable list of providers
+     */
+    public List<Provider> getProviders() {
+        return providers;
+    }
+
+    /**
+     * get keys of all providers of this snapshot
+     *
+     * @return unmodifiable list of provider keys
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * find provider object by its unique key
+     *
+     * @param key key to look up with (e.g. "{@code facebook}")
+     *
+     * @return provider with specified key or {@code null} if there is no such provider
+     */
+    public Provider findByKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        return index.get(key);
+    }
+
+    /**
+     * check whether the snapshot contains any providers
+     *
+     * @return {@code true} if there are no providers in this snapshot
+     */
+    public boolean isEmpty() {
+        return providers.isEmpty();
+    }
+
+    // endregion
+}
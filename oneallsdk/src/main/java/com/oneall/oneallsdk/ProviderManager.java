@@ -1,29 +1,33 @@
 package com.oneall.oneallsdk;
 
+import com.oneall.oneallsdk.rest.ApiEndpoint;
+import com.oneall.oneallsdk.rest.ServiceCall;
 import com.oneall.oneallsdk.rest.ServiceManagerProvider;
+import com.oneall.oneallsdk.rest.Settings;
 import com.oneall.oneallsdk.rest.models.Provider;
 import com.oneall.oneallsdk.rest.models.ResponseProvidersList;
 
 import android.content.Context;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
 
 import retrofit.Callback;
 import retrofit.RetrofitError;
+import retrofit.client.Header;
 import retrofit.client.Response;
 
 /**
- * Access to providers list. Retrieves list of providers asynchronously at the initialization and
- * stores in local cache. Retrieval is performed on every start and can be triggered by calling
- * {@link #refreshProviders(android.content.Context)}
+ * Access to providers list. Loads the list from local cache at the initialization and serves it
+ * right away. If the cached list is older than {@link Settings#getProvidersTtl()} it is
+ * revalidated with the server in background after a random delay, so that application starts
+ * are not synchronized across devices. Retrieval can be forced by calling
+ * {@link #forceRefreshProviders(android.content.Context)}
  */
 public class ProviderManager {
 
@@ -31,13 +35,30 @@ public class ProviderManager {
 
     private final String PROVIDERS_CACHE_FILE = "providers_cache";
 
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /** key of the providers list call in {@link com.oneall.oneallsdk.rest.SingleFlight} */
+    private static final String SINGLE_FLIGHT_KEY = "providers";
+
     // endregion
 
     // region Properties
 
     private static ProviderManager mInstance;
 
-    private Collection<Provider> providers;
+    /** current providers snapshot, replaced as a whole on every update */
+    private volatile ProviderCatalog catalog = ProviderCatalog.EMPTY;
+
+    /** {@code ETag} of the response the current providers were received with */
+    private String etag;
+
+    /** {@code Last-Modified} of the response the current providers were received with */
+    private String lastModified;
+
+    /** background revalidation of a stale list, if scheduled */
+    private ScheduledFuture<?> pendingRevalidation;
+
+    private final Random random = new Random();
 
     // endregion
 
@@ -64,34 +85,156 @@ public class ProviderManager {
     // region Interface methods
 
     /**
-     * Updates the list of providers without any additional changes.
+     * refresh providers. Should be executed as early as possible during application start. Cached
+     * providers are loaded if not loaded yet; the list is retrieved from the server right away if
+     * there is no cached list, revalidated in background after a random delay if the cached list is
+     * stale, and left untouched if it is still fresh.
      *
-     * @param providers The new list of providers
+     * @param context context to use for cache storage
      */
-    void updateProviders(List<Provider> providers) {
-        this.providers = providers;
+    public void refreshProviders(final Context context) {
+        if (catalog.getVersion() == 0) {
+            loadCachedProviders(context);
+        }
+
+        ProviderCatalog current = catalog;
+        Settings settings = Settings.getInstance();
+
+        if (current.isEmpty()) {
+            fetchProviders(context);
+        } else if (current.isFresh(settings.getProvidersTtl(), System.currentTimeMillis())) {
+            OALog.info("Cached providers list is fresh, skipping refresh");
+        } else {
+            scheduleRevalidation(context, settings.getProvidersRefreshJitter());
+        }
     }
 
     /**
-     * force providers refresh. Should be executed as early as possible during application start
+     * retrieve providers from the server right away, regardless of the age of the cached list
      *
      * @param context context to use for cache storage
      */
-    public void refreshProviders(final Context context) {
-        loadCachedProviders(context);
+    public void forceRefreshProviders(Context context) {
+        synchronized (this) {
+            if (pendingRevalidation != null) {
+                pendingRevalidation.cancel(false);
+                pendingRevalidation = null;
+            }
+        }
+        fetchProviders(context);
+    }
+
+    /**
+     * get current snapshot of the providers list
+     *
+     * @return providers catalog; empty catalog if providers have not been loaded yet
+     */
+    public ProviderCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * get cached list of providers
+     *
+     * @return unmodifiable list of providers if available; empty list if providers have not been
+     * cached yet
+     */
+    public Collection<Provider> getProviders() {
+        return catalog.getProviders();
+    }
+
+    /**
+     * find provider object by its unique key
+     *
+     * @param key key to look up with (e.g. "{@code facebook}"
+     *
+     * @return provider with specified key or {@code null} on failure
+     */
+    public Provider findByKey(String key) {
+        return catalog.findByKey(key);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * schedule retrieval of providers from the server after a random delay, unless one is already
+     * scheduled
+     *
+     * @param context context to use for cache storage
+     * @param jitter  maximum delay in milliseconds
+     */
+    private synchronized void scheduleRevalidation(final Context context, long jitter) {
+        if (pendingRevalidation != null && !pendingRevalidation.isDone()) {
+            return;
+        }
+
+        long delay = jitter > 0 ? (long) (random.nextDouble() * jitter) : 0;
+        OALog.info(String.format("Cached providers list is stale, revalidating in %d ms", delay));
 
-        ServiceManagerProvider.getInstance().getService().listProviders(new Callback<ResponseProvidersList>() {
+        pendingRevalidation = BackgroundExecutor.getInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                fetchProviders(context);
+            }
+        }, delay);
+    }
+
+    /**
+     * retrieve providers from the server, cache and publish them. The request is conditional if
+     * the current providers have been received with validators, in which case an unchanged list is
+     * neither parsed nor written to the cache again.
+     *
+     * @param context context to use for cache storage
+     */
+    private void fetchProviders(final Context context) {
+        final String requestEtag;
+        final String requestLastModified;
+        synchronized (this) {
+            boolean hasProviders = !catalog.isEmpty();
+            requestEtag = hasProviders ? etag : null;
+            requestLastModified = hasProviders ? lastModified : null;
+        }
+
+        final ServiceManagerProvider services = ServiceManagerProvider.getInstance();
+
+        // the callback publishes the list for everyone, so a refresh requested while another one
+        // is in flight is simply dropped
+        boolean started = services.getSingleFlight().executeIfIdle(
+                SINGLE_FLIGHT_KEY,
+                services.getResilientCaller().wrap(
+                        ApiEndpoint.PROVIDERS,
+                        new ServiceCall<ResponseProvidersList>() {
+                            @Override
+                            public void execute(Callback<ResponseProvidersList> callback) {
+                                services.getService().listProviders(
+                                        requestEtag, requestLastModified, callback);
+                            }
+                        }),
+                new Callback<ResponseProvidersList>() {
             @Override
             public void success(ResponseProvidersList responseProvidersList, Response response) {
-                List<Provider> pps = responseProvidersList
+                final List<Provider> pps = responseProvidersList
                         .getData()
                         .getProviders()
                         .getEntries();
 
                 if(pps != null) {
-                    cacheProviders(context, pps);
-                    providers = pps;
+                    final long fetchedAt = System.currentTimeMillis();
+                    final String responseEtag = getHeader(response, "ETag");
+                    final String responseLastModified = getHeader(response, "Last-Modified");
+
+                    publishCatalog(pps, fetchedAt, responseEtag, responseLastModified);
                     OALog.info(String.format("Parsed %d providers from server", pps.size()));
+
+                    BackgroundExecutor.getInstance().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            cacheProviders(
+                                    context, fetchedAt, responseEtag, responseLastModified, pps);
+                        }
+                    });
                 } else {
                     OALog.error("Failed to parse providers from server: got null");
                 }
@@ -99,109 +242,144 @@ public class ProviderManager {
 
             @Override
             public void failure(RetrofitError error) {
-                OALog.warn(String.format("Failure to read providers list: %s", error.getMessage()));
+                if (error.getResponse() != null
+                        && error.getResponse().getStatus() == HTTP_NOT_MODIFIED) {
+                    providersNotModified(context);
+                } else {
+                    OALog.warn(String.format("Failure to read providers list: %s", error.getMessage()));
+                }
             }
         });
+
+        if (!started) {
+            OALog.info("Providers list is already being retrieved");
+        }
     }
 
     /**
-     * get cached list of providers
+     * handler of the server confirming that the current providers are up to date
      *
-     * @return list of providers if available; empty list if providers have not been cached yet
+     * @param context context to use for cache storage
      */
-    public Collection<Provider> getProviders() {
-        if (providers != null) {
-            return new ArrayList<>(providers);
-        } else {
-            return new ArrayList<>();
+    private void providersNotModified(final Context context) {
+        final long fetchedAt = System.currentTimeMillis();
+        synchronized (this) {
+            catalog = catalog.revalidated(fetchedAt);
         }
+        OALog.info("Providers list has not been modified on server");
+
+        BackgroundExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ProviderCacheSerializer.updateTimestamp(getCacheFile(context), fetchedAt);
+                } catch (IOException e) {
+                    OALog.warn("Cannot update providers cache time: " + e.getMessage());
+                }
+            }
+        });
     }
 
     /**
-     * find provider object by its unique key
+     * get value of response header
      *
-     * @param key key to look up with (e.g. "{@code facebook}"
+     * @param response server response
+     * @param name     name of the header, case insensitive
      *
-     * @return provider with specified key or {@code null} on failure
+     * @return header value or {@code null} if there is no such header
      */
-    public Provider findByKey(String key) {
-        if (providers == null) {
+    private static String getHeader(Response response, String name) {
+        if (response == null || response.getHeaders() == null) {
             return null;
         }
-        for (Provider p : providers) {
-            if (p.getKey().equals(key)) {
-                return p;
+        for (Header header : response.getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
             }
         }
         return null;
     }
 
-    // endregion
-
-    // region Utilities
+    /**
+     * build new catalog snapshot out of providers list and make it the current one
+     *
+     * @param providers    providers to publish
+     * @param fetchedAt    time the providers were received from the server
+     * @param etag         {@code ETag} of the response the providers were received with
+     * @param lastModified {@code Last-Modified} of the response the providers were received with
+     */
+    private synchronized void publishCatalog(
+            Collection<Provider> providers, long fetchedAt, String etag, String lastModified) {
+        catalog = new ProviderCatalog(catalog.getVersion() + 1, fetchedAt, providers);
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
 
     /**
      * cache providers on local store to be saved between sessions
      *
      * @param context context to use for file storage
      *
+     * @param fetchedAt time the providers were received from the server
+     *
+     * @param etag {@code ETag} of the response the providers were received with
+     *
+     * @param lastModified {@code Last-Modified} of the response the providers were received with
+     *
      * @param providers providers collection to cache
      */
-    private void cacheProviders(Context context, Collection<Provider> providers) {
-        FileOutputStream fos = null;
-        ObjectOutputStream os = null;
+    private void cacheProviders(
+            Context context,
+            long fetchedAt,
+            String etag,
+            String lastModified,
+            Collection<Provider> providers) {
         try {
-            fos = context.openFileOutput(PROVIDERS_CACHE_FILE, Context.MODE_PRIVATE);
-            os = new ObjectOutputStream(fos);
-            os.writeObject(providers);
+            ProviderCacheSerializer.write(
+                    getCacheFile(context), fetchedAt, etag, lastModified, providers);
         } catch (IOException e) {
             OALog.error("Cannot cache providers: " + e.getMessage());
-        } finally {
-            if (os != null) {
-                try { os.close(); } catch (IOException ignored) { }
-            }
-            if (fos != null) {
-                try { fos.close(); } catch (IOException ignored) { }
-            }
         }
     }
 
     /**
      * load cached providers from local store. The result is stored in local property and can be
-     * retrieved using {@link #getProviders()}
+     * retrieved using {@link #getProviders()}. Cache files which cannot be read are deleted.
      *
      * @param context context to use for file load
      */
     private void loadCachedProviders(Context context) {
-        FileInputStream fis = null;
-        ObjectInputStream is = null;
         if (context == null) {
             return;
         }
+        File file = getCacheFile(context);
         try {
-            fis = context.openFileInput(PROVIDERS_CACHE_FILE);
-            is = new ObjectInputStream(fis);
-            Collection<Provider> tmp = (Collection<Provider>) is.readObject();
+            ProviderCacheSerializer.CachedProviders cached = ProviderCacheSerializer.read(file);
 
-            if (tmp != null && !tmp.isEmpty()) {
-                providers = tmp;
-                OALog.info(String.format("Loaded %d cached providers", providers.size()));
+            if (!cached.providers.isEmpty()) {
+                publishCatalog(
+                        cached.providers, cached.savedAt, cached.etag, cached.lastModified);
+                OALog.info(String.format("Loaded %d cached providers", cached.providers.size()));
             }
         } catch (FileNotFoundException ignored) {
             /* do nothing, no cached version of providers list */
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             OALog.error(String.format("Could not load cached providers list %s", e.getMessage()));
-        } finally {
-            if (is != null) {
-                try { is.close(); }
-                catch (IOException ignored) { }
-            }
-            if (fis != null) {
-                try { fis.close(); }
-                catch (IOException ignored) { }
-            }
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
         }
     }
 
+    /**
+     * get location of providers cache file
+     *
+     * @param context context to use for file location
+     *
+     * @return cache file
+     */
+    private File getCacheFile(Context context) {
+        return new File(context.getFilesDir(), PROVIDERS_CACHE_FILE);
+    }
+
     // endregion
 }
@@ -25,6 +25,9 @@ public class ProviderSelectActivity
 
     public static final String INTENT_EXTRA_PROVIDER = "provider";
 
+    /** nonce of the login the provider is selected for, returned with the result */
+    public static final String INTENT_EXTRA_NONCE = "nonce";
+
     // endregion
 
     // region Properties
@@ -39,6 +42,9 @@ public class ProviderSelectActivity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_provider_select);
 
+        // also reported if the user leaves with the back button
+        setResult(RESULT_CANCELED, newResult());
+
         setupTable();
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
     }
@@ -46,7 +52,7 @@ public class ProviderSelectActivity
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
-            setResult(RESULT_CANCELED, new Intent());
+            setResult(RESULT_CANCELED, newResult());
             finish();
         }
 
@@ -57,6 +63,17 @@ public class ProviderSelectActivity
 
     // region Activity setup
 
+    /**
+     * create result of the activity, carrying the nonce of the login
+     *
+     * @return result intent
+     */
+    private Intent newResult() {
+        Intent result = new Intent();
+        result.putExtra(INTENT_EXTRA_NONCE, getIntent().getStringExtra(INTENT_EXTRA_NONCE));
+        return result;
+    }
+
     private void setupTable() {
         TableLayout table = (TableLayout) findViewById(R.id.activity_provider_select_table_view);
 
@@ -108,7 +125,7 @@ public class ProviderSelectActivity
     public void onFragmentInteraction(String providerKey) {
         OALog.info("Selected provider: " + providerKey);
 
-        Intent response = new Intent();
+        Intent response = newResult();
         response.putExtra(INTENT_EXTRA_PROVIDER, providerKey);
         setResult(RESULT_OK, response);
         finish();
@@ -0,0 +1,16 @@
+package com.oneall.oneallsdk;
+
+/**
+ * Plugin receiving the messages logged by the SDK, e.g. to send them to a remote logging service.
+ * Messages are always written to the Android log as well.
+ */
+public abstract class RemoteLogPlugin extends OAPlugin {
+
+    /**
+     * log message
+     *
+     * @param priority priority of the message, one of {@link android.util.Log} levels
+     * @param message  message to log
+     */
+    public abstract void log(int priority, String message);
+}
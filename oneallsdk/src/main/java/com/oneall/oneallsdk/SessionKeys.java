@@ -0,0 +1,305 @@
+package com.oneall.oneallsdk;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.security.KeyPairGeneratorSpec;
+import android.util.Base64;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Calendar;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Encryption and MAC keys of the private files of the SDK holding tokens, e.g. the logged in user
+ * and the message outbox. The keys are generated on first use and kept in private shared
+ * preferences.
+ *
+ * On API 18 and later the keys are kept wrapped with an RSA key pair of the AndroidKeyStore,
+ * which never leaves the key store, so the private storage of the application alone does not
+ * reveal them. Keys stored by an earlier version of the SDK are wrapped on first use. If the
+ * wrapping key is gone, i.e. the key store has been reset, new keys are generated and the files
+ * encrypted with the old ones are discarded by their readers. If the wrapped keys merely cannot be
+ * unwrapped, e.g. while the key store is locked, they are kept and {@link UnavailableException}
+ * is thrown, so that the files are kept as well.
+ *
+ * On API 15 to 17, which have no AndroidKeyStore, and on devices whose key store does not work,
+ * the keys are kept as they are, in the same private storage as the files they protect. There the
+ * encryption is obfuscation only: it keeps the tokens out of plain sight, but anyone able to read
+ * the private storage of the application can read the keys as well.
+ */
+final class SessionKeys {
+
+    // region Constants
+
+    static final String CIPHER = "AES/CBC/PKCS5Padding";
+    static final String MAC = "HmacSHA256";
+
+    static final int IV_SIZE = 16;
+    static final int MAC_SIZE = 32;
+
+    private static final String KEYS_PREFERENCES = "oneall_session_keys";
+    private static final String PREFERENCE_CIPHER_KEY = "cipher_key";
+    private static final String PREFERENCE_MAC_KEY = "mac_key";
+    private static final String PREFERENCE_WRAPPED_CIPHER_KEY = "wrapped_cipher_key";
+    private static final String PREFERENCE_WRAPPED_MAC_KEY = "wrapped_mac_key";
+
+    private static final int CIPHER_KEY_SIZE = 16;
+    private static final int MAC_KEY_SIZE = 32;
+
+    private static final String KEY_STORE = "AndroidKeyStore";
+    private static final String WRAPPING_KEY_ALIAS = "oneall_session_keys";
+    private static final String WRAPPING_CIPHER = "RSA/ECB/PKCS1Padding";
+
+    /** validity of the wrapping key, which is required by the key store but never checked */
+    private static final int WRAPPING_KEY_VALIDITY_YEARS = 30;
+
+    // endregion
+
+    // region Helper classes
+
+    /** keys exist but cannot be read right now; files encrypted with them must be kept */
+    static class UnavailableException extends GeneralSecurityException {
+        UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    /** keys of the application once read, unwrapping them is expensive */
+    private static SessionKeys cached;
+
+    final SecretKeySpec cipher;
+
+    final SecretKeySpec mac;
+
+    private final byte[] cipherKey;
+
+    private final byte[] macKey;
+
+    // endregion
+
+    // region Lifecycle
+
+    private SessionKeys(byte[] cipher, byte[] mac) {
+        this.cipherKey = cipher;
+        this.macKey = mac;
+        this.cipher = new SecretKeySpec(cipher, "AES");
+        this.mac = new SecretKeySpec(mac, MAC);
+    }
+
+    /**
+     * get keys of the application, generating them on first use
+     *
+     * @param context application context
+     * @param random  source of new keys
+     *
+     * @return keys
+     *
+     * @throws UnavailableException if the keys are stored wrapped but cannot be unwrapped now,
+     * e.g. because the key store is locked; they are kept, so a later call may succeed
+     */
+    static synchronized SessionKeys get(Context context, SecureRandom random)
+            throws UnavailableException {
+        if (cached != null) {
+            return cached;
+        }
+
+        SharedPreferences preferences =
+                context.getSharedPreferences(KEYS_PREFERENCES, Context.MODE_PRIVATE);
+
+        if (hasWrapped(preferences)) {
+            KeyPair wrapping = loadWrappingKey();
+            if (wrapping != null) {
+                cached = unwrap(preferences, wrapping);
+                return cached;
+            }
+            // the key store has been reset, nothing can unwrap the keys anymore
+            OALog.warn("Session keys wrapping key is gone, stored sessions are lost");
+        }
+
+        KeyPair wrapping = getWrappingKey(context);
+
+        // kept as they are: below API 18, without a working key store, or by an earlier version
+        SessionKeys keys = null;
+        String cipherKey = preferences.getString(PREFERENCE_CIPHER_KEY, null);
+        String macKey = preferences.getString(PREFERENCE_MAC_KEY, null);
+        if (cipherKey != null && macKey != null) {
+            keys = new SessionKeys(
+                    Base64.decode(cipherKey, Base64.NO_WRAP),
+                    Base64.decode(macKey, Base64.NO_WRAP));
+            if (wrapping == null) {
+                cached = keys;
+                return keys;
+            }
+        }
+
+        if (keys == null) {
+            byte[] cipher = new byte[CIPHER_KEY_SIZE];
+            byte[] mac = new byte[MAC_KEY_SIZE];
+            random.nextBytes(cipher);
+            random.nextBytes(mac);
+            keys = new SessionKeys(cipher, mac);
+        }
+
+        if (wrapping == null || !keys.storeWrapped(preferences, wrapping)) {
+            keys.storePlain(preferences);
+        }
+        cached = keys;
+        return keys;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private static boolean hasWrapped(SharedPreferences preferences) {
+        return preferences.contains(PREFERENCE_WRAPPED_CIPHER_KEY)
+                && preferences.contains(PREFERENCE_WRAPPED_MAC_KEY);
+    }
+
+    /**
+     * get key pair wrapping the keys, generating it on first use
+     *
+     * @return key pair of the key store, {@code null} below API 18 or if the key store does not
+     * work
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static KeyPair getWrappingKey(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return null;
+        }
+
+        try {
+            KeyPair existing = loadWrappingKey();
+            if (existing != null) {
+                return existing;
+            }
+
+            Calendar start = Calendar.getInstance();
+            Calendar end = Calendar.getInstance();
+            end.add(Calendar.YEAR, WRAPPING_KEY_VALIDITY_YEARS);
+
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", KEY_STORE);
+            generator.initialize(new KeyPairGeneratorSpec.Builder(context)
+                    .setAlias(WRAPPING_KEY_ALIAS)
+                    .setSubject(new X500Principal("CN=" + WRAPPING_KEY_ALIAS))
+                    .setSerialNumber(BigInteger.ONE)
+                    .setStartDate(start.getTime())
+                    .setEndDate(end.getTime())
+                    .build());
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException | RuntimeException e) {
+            // some devices ship a broken key store
+            OALog.warn(String.format(
+                    "Key store not available, session keys are stored unprotected: %s", e));
+            return null;
+        }
+    }
+
+    /**
+     * read key pair wrapping the keys from the key store
+     *
+     * @return key pair, {@code null} below API 18 or if the key store has none
+     *
+     * @throws UnavailableException if the key store cannot be read, e.g. because it is locked
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static KeyPair loadWrappingKey() throws UnavailableException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return null;
+        }
+
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEY_STORE);
+            keyStore.load(null);
+
+            KeyStore.Entry entry = keyStore.getEntry(WRAPPING_KEY_ALIAS, null);
+            if (entry instanceof KeyStore.PrivateKeyEntry) {
+                KeyStore.PrivateKeyEntry keyEntry = (KeyStore.PrivateKeyEntry) entry;
+                return new KeyPair(
+                        keyEntry.getCertificate().getPublicKey(), keyEntry.getPrivateKey());
+            }
+            return null;
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            // e.g. thrown while the key store is locked
+            throw new UnavailableException("Key store not available", e);
+        }
+    }
+
+    /**
+     * read wrapped keys
+     *
+     * @return keys
+     *
+     * @throws UnavailableException if the keys cannot be unwrapped
+     */
+    private static SessionKeys unwrap(SharedPreferences preferences, KeyPair wrapping)
+            throws UnavailableException {
+        String cipherKey = preferences.getString(PREFERENCE_WRAPPED_CIPHER_KEY, null);
+        String macKey = preferences.getString(PREFERENCE_WRAPPED_MAC_KEY, null);
+
+        try {
+            Cipher cipher = Cipher.getInstance(WRAPPING_CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, wrapping.getPrivate());
+            byte[] plainCipherKey = cipher.doFinal(Base64.decode(cipherKey, Base64.NO_WRAP));
+            byte[] plainMacKey = cipher.doFinal(Base64.decode(macKey, Base64.NO_WRAP));
+            return new SessionKeys(plainCipherKey, plainMacKey);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new UnavailableException("Failed to unwrap session keys", e);
+        }
+    }
+
+    /**
+     * store keys wrapped, removing the unwrapped ones
+     *
+     * @return {@code true} if the keys have been stored
+     */
+    private boolean storeWrapped(SharedPreferences preferences, KeyPair wrapping) {
+        String wrappedCipherKey;
+        String wrappedMacKey;
+        try {
+            Cipher cipher = Cipher.getInstance(WRAPPING_CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, wrapping.getPublic());
+            wrappedCipherKey = Base64.encodeToString(cipher.doFinal(cipherKey), Base64.NO_WRAP);
+            wrappedMacKey = Base64.encodeToString(cipher.doFinal(macKey), Base64.NO_WRAP);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            OALog.warn(String.format("Failed to wrap session keys: %s", e));
+            return false;
+        }
+
+        return preferences.edit()
+                .putString(PREFERENCE_WRAPPED_CIPHER_KEY, wrappedCipherKey)
+                .putString(PREFERENCE_WRAPPED_MAC_KEY, wrappedMacKey)
+                .remove(PREFERENCE_CIPHER_KEY)
+                .remove(PREFERENCE_MAC_KEY)
+                .commit();
+    }
+
+    /**
+     * store keys as they are, removing wrapped ones which they replace
+     */
+    private void storePlain(SharedPreferences preferences) {
+        preferences.edit()
+                .putString(PREFERENCE_CIPHER_KEY, Base64.encodeToString(cipherKey, Base64.NO_WRAP))
+                .putString(PREFERENCE_MAC_KEY, Base64.encodeToString(macKey, Base64.NO_WRAP))
+                .remove(PREFERENCE_WRAPPED_CIPHER_KEY)
+                .remove(PREFERENCE_WRAPPED_MAC_KEY)
+                .commit();
+    }
+
+    // endregion
+}
@@ -0,0 +1,164 @@
+package com.oneall.oneallsdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness handle of the SDK initialization started by
+ * {@link OAManager#setupAsync(android.content.Context, String, String, String)}. Can be used to
+ * check whether the initialization is complete, to wait for it or to run code once it is.
+ *
+ * An initialization which fails leaves the handle failed instead of ready, see
+ * {@link #isFailed()}; the manager cannot be used until it is set up again.
+ */
+public final class SetupHandle {
+
+    // region Helper classes
+
+    /** action waiting for the initialization */
+    private static final class Action {
+        final Runnable runnable;
+
+        /** whether the action runs when the initialization fails as well */
+        final boolean always;
+
+        Action(Runnable runnable, boolean always) {
+            this.runnable = runnable;
+            this.always = always;
+        }
+    }
+
+    // endregion
+
+    // region Properties
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /** actions waiting for the initialization, {@code null} once it is complete */
+    private List<Action> pending = new ArrayList<>();
+
+    /** cause of the failure of the initialization, {@code null} if it has not failed */
+    private volatile Throwable failure;
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * check whether the initialization is complete
+     *
+     * @return {@code true} if the SDK is ready to be used
+     */
+    public boolean isReady() {
+        return latch.getCount() == 0 && failure == null;
+    }
+
+    /**
+     * check whether the initialization has failed
+     *
+     * @return {@code true} if the initialization has ended with a failure
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * get cause of the failure of the initialization
+     *
+     * @return exception thrown by the initialization, {@code null} if it has not failed
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * block the calling thread until the initialization is complete. Should never be called from
+     * the main thread.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of {@code timeout}
+     *
+     * @return {@code true} if the SDK is ready, {@code false} if the time has elapsed or the
+     * initialization has failed
+     *
+     * @throws InterruptedException if the calling thread has been interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return latch.await(timeout, unit) && failure == null;
+    }
+
+    /**
+     * run action on the main thread once the initialization is complete. If it is already
+     * complete, the action is posted to the main thread right away. The action never runs if the
+     * initialization fails.
+     *
+     * @param action action to run
+     */
+    public void whenReady(Runnable action) {
+        enqueue(new Action(action, false));
+    }
+
+    // endregion
+
+    // region Utilities
+
+    /**
+     * run action on the main thread once the initialization has ended, whether it is ready or has
+     * failed
+     *
+     * @param action action to run
+     */
+    void whenComplete(Runnable action) {
+        enqueue(new Action(action, true));
+    }
+
+    /** mark the initialization as complete and release all waiting actions */
+    void markReady() {
+        complete(null);
+    }
+
+    /**
+     * mark the initialization as failed and release the waiting actions which have to learn
+     * about it
+     *
+     * @param cause exception thrown by the initialization
+     */
+    void markFailed(Throwable cause) {
+        complete(cause);
+    }
+
+    private void enqueue(Action action) {
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(action);
+                return;
+            }
+        }
+        if (failure == null || action.always) {
+            BackgroundExecutor.getInstance().postToMainThread(action.runnable);
+        }
+    }
+
+    private void complete(Throwable cause) {
+        List<Action> actions;
+        synchronized (this) {
+            if (pending == null) {
+                return;
+            }
+            actions = pending;
+            pending = null;
+            failure = cause;
+        }
+        latch.countDown();
+
+        for (Action action : actions) {
+            if (cause == null || action.always) {
+                BackgroundExecutor.getInstance().postToMainThread(action.runnable);
+            }
+        }
+    }
+
+    // endregion
+}
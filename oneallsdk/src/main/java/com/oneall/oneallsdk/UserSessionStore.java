@@ -0,0 +1,346 @@
+package com.oneall.oneallsdk;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.oneall.oneallsdk.rest.models.JsonModelTypeAdapterFactory;
+import com.oneall.oneallsdk.rest.models.User;
+
+import android.content.Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Persistent store of the logged in user. The user is kept in memory and in a private file,
+ * compressed and encrypted, so that an application started again can post right away without
+ * logging in.
+ *
+ * The file has a fixed header followed by the encrypted payload and its MAC:
+ *
+ * <pre>
+ * int    magic ("OAUS")
+ * int    format version
+ * byte[] initialization vector (16 bytes)
+ * int    payload length
+ * byte[] payload: deflated JSON of the user, encrypted with AES/CBC/PKCS5Padding
+ * byte[] HMAC-SHA256 of everything above (32 bytes)
+ * </pre>
+ *
+ * The encryption and MAC keys are the {@link SessionKeys} of the application. Files which cannot
+ * be authenticated or decrypted are discarded, but not while the keys themselves cannot be read.
+ */
+final class UserSessionStore {
+
+    // region Constants
+
+    private static final String SESSION_FILE = "oneall_session.bin";
+
+    private static final int MAGIC = 0x4F415553;
+
+    /** version of the format, should be increased on every change of the payload layout */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String CIPHER = SessionKeys.CIPHER;
+    private static final String MAC = SessionKeys.MAC;
+
+    private static final int IV_SIZE = SessionKeys.IV_SIZE;
+    private static final int MAC_SIZE = SessionKeys.MAC_SIZE;
+
+    private static final int HEADER_SIZE = 4 + 4 + IV_SIZE + 4;
+
+    /** upper limit of the payload size, anything bigger is considered a corrupt file */
+    private static final int MAX_PAYLOAD_SIZE = 256 * 1024;
+
+    /** publish tokens expiring sooner than this are considered expired, in milliseconds */
+    private static final long EXPIRATION_MARGIN = 60 * 1000L;
+
+    /** formats of publish token dates used by OneAll API */
+    private static final String[] DATE_FORMATS = {
+            "EEE, dd MMM yyyy HH:mm:ss Z",
+            "yyyy-MM-dd'T'HH:mm:ssZ",
+            "yyyy-MM-dd HH:mm:ss"
+    };
+
+    private static final String CHARSET = "UTF-8";
+
+    // endregion
+
+    // region Properties
+
+    private final Context context;
+
+    /** plain serialization of the user, the API envelope is not involved */
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new JsonModelTypeAdapterFactory())
+            .create();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private boolean restored;
+
+    private User user;
+
+    // endregion
+
+    // region Lifecycle
+
+    /**
+     * creates store of the logged in user; nothing is read until the user is needed
+     *
+     * @param context application context
+     */
+    UserSessionStore(Context context) {
+        this.context = context;
+    }
+
+    // endregion
+
+    // region Interface methods
+
+    /**
+     * get the logged in user, reading it from the file on first use
+     *
+     * @return user, {@code null} if no user is logged in
+     */
+    synchronized User get() {
+        if (!restored) {
+            try {
+                user = restore();
+                restored = true;
+            } catch (SessionKeys.UnavailableException e) {
+                // the file is kept and read again on the next call
+                OALog.warn(String.format(
+                        "Stored user session not readable now: %s", e.getMessage()));
+            }
+        }
+        return user;
+    }
+
+    /**
+     * read the user ahead of its first use. Should be called from a background thread.
+     */
+    void prefetch() {
+        get();
+    }
+
+    /**
+     * store the logged in user. The file is written on a background thread.
+     *
+     * @param user user logged in
+     */
+    synchronized void save(final User user) {
+        this.user = user;
+        restored = true;
+
+        BackgroundExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(user);
+                } catch (IOException | GeneralSecurityException e) {
+                    OALog.warn(String.format("Failed to store user session: %s", e.getMessage()));
+                }
+            }
+        });
+    }
+
+    /**
+     * forget the logged in user, in memory and on disk
+     */
+    synchronized void clear() {
+        user = null;
+        restored = true;
+
+        BackgroundExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                //noinspection ResultOfMethodCallIgnored
+                getFile().delete();
+            }
+        });
+    }
+
+    /**
+     * check whether the publish token of the user can still be used to post
+     *
+     * @param user user, may be {@code null}
+     * @param now  current time, in milliseconds since epoch
+     *
+     * @return {@code false} if there is no publish token or it expires within a minute;
+     * {@code true} if it expires later or its expiration date cannot be read
+     */
+    static boolean isPublishTokenValid(User user, long now) {
+        if (user == null || user.publishToken == null || user.publishToken.key == null) {
+            return false;
+        }
+
+        Date expiration = parseDate(user.publishToken.date_expiration);
+        return expiration == null || expiration.getTime() - EXPIRATION_MARGIN > now;
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private File getFile() {
+        return new File(context.getFilesDir(), SESSION_FILE);
+    }
+
+    /**
+     * read the user from the file
+     *
+     * @return user, {@code null} if there is none or the file cannot be used
+     *
+     * @throws SessionKeys.UnavailableException if the keys of the file cannot be read now
+     */
+    private User restore() throws SessionKeys.UnavailableException {
+        File file = getFile();
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            return read(file);
+        } catch (SessionKeys.UnavailableException e) {
+            throw e;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            OALog.warn(String.format("Discarding stored user session: %s", e.getMessage()));
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    private User read(File file) throws IOException, GeneralSecurityException {
+        byte[] data = AtomicFiles.readFully(file, HEADER_SIZE + MAX_PAYLOAD_SIZE + MAC_SIZE);
+        if (data.length < HEADER_SIZE + MAC_SIZE) {
+            throw new IOException("Truncated session file");
+        }
+
+        SessionKeys keys = SessionKeys.get(context, random);
+
+        // authenticate before looking at anything else
+        Mac mac = Mac.getInstance(MAC);
+        mac.init(keys.mac);
+        mac.update(data, 0, data.length - MAC_SIZE);
+        byte[] expected = mac.doFinal();
+        byte[] actual = new byte[MAC_SIZE];
+        System.arraycopy(data, data.length - MAC_SIZE, actual, 0, MAC_SIZE);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IOException("Session file authentication failed");
+        }
+
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(data));
+        if (is.readInt() != MAGIC) {
+            throw new IOException("Unknown session file format");
+        }
+        int version = is.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported session format version %d", version));
+        }
+        byte[] iv = new byte[IV_SIZE];
+        is.readFully(iv);
+        int length = is.readInt();
+        if (length != data.length - HEADER_SIZE - MAC_SIZE) {
+            throw new IOException("Truncated session file");
+        }
+
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, keys.cipher, new IvParameterSpec(iv));
+        byte[] payload = cipher.doFinal(data, HEADER_SIZE, length);
+
+        Reader reader = new InputStreamReader(
+                new InflaterInputStream(new ByteArrayInputStream(payload)), CHARSET);
+        try {
+            return gson.fromJson(reader, User.class);
+        } finally {
+            try { reader.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    /**
+     * write the user into the session file, replacing it as a whole (see {@link AtomicFiles})
+     *
+     * @param user user to write
+     *
+     * @throws IOException              on write failure
+     * @throws GeneralSecurityException if the payload cannot be encrypted
+     */
+    private void write(User user) throws IOException, GeneralSecurityException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(1024);
+        Writer writer = new OutputStreamWriter(new DeflaterOutputStream(plain), CHARSET);
+        try {
+            gson.toJson(user, User.class, writer);
+        } finally {
+            writer.close();
+        }
+
+        SessionKeys keys = SessionKeys.get(context, random);
+
+        byte[] iv = new byte[IV_SIZE];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, keys.cipher, new IvParameterSpec(iv));
+        byte[] payload = cipher.doFinal(plain.toByteArray());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + payload.length + MAC_SIZE);
+        DataOutputStream os = new DataOutputStream(bos);
+        os.writeInt(MAGIC);
+        os.writeInt(FORMAT_VERSION);
+        os.write(iv);
+        os.writeInt(payload.length);
+        os.write(payload);
+        os.flush();
+
+        Mac mac = Mac.getInstance(MAC);
+        mac.init(keys.mac);
+        os.write(mac.doFinal(bos.toByteArray()));
+        os.flush();
+
+        AtomicFiles.write(getFile(), bos.toByteArray());
+    }
+
+    /**
+     * parse date of publish token
+     *
+     * @param value date as received from OneAll API
+     *
+     * @return date, {@code null} if it is missing or in an unknown format
+     */
+    private static Date parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (String format : DATE_FORMATS) {
+            try {
+                return new SimpleDateFormat(format, Locale.US).parse(value);
+            } catch (ParseException ignored) {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    // endregion
+}
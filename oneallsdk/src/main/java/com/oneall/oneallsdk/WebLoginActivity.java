@@ -7,6 +7,8 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.view.MenuItem;
@@ -24,16 +26,42 @@ public class WebLoginActivity extends AppCompatActivity {
     private ProgressDialog progressDialog;
 
     private WebView mWebView;
+
+    /** closes the activity when the time given to the login is over */
+    private final Handler timeoutHandler = new Handler();
+
+    private final Runnable timeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            OALog.warn("Web login timed out");
+            if (mWebView != null) {
+                mWebView.stopLoading();
+            }
+            setResult(RESULT_TIMEOUT, newResult());
+            finish();
+        }
+    };
     // endregion
 
     // region Constants
 
     public final static String INTENT_EXTRA_URL = "url";
 
+    /**
+     * time by which the login has to complete, on {@link SystemClock#elapsedRealtime()} clock; no
+     * limit if not specified. Absolute, so that a recreated activity does not start over.
+     */
+    public final static String INTENT_EXTRA_DEADLINE = "deadline";
+
+    /** nonce of the login, returned with every result */
+    public final static String INTENT_EXTRA_NONCE = "nonce";
+
     private final static String CUSTOM_URL_SCHEME = "oneall";
 
     public final static int RESULT_FAILED = 0x80;
 
+    public final static int RESULT_TIMEOUT = 0x81;
+
     // endregion
 
     @Override
@@ -41,6 +69,9 @@ public class WebLoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_web_login);
 
+        // also reported if the user leaves with the back button
+        setResult(RESULT_CANCELED, newResult());
+
         final ActionBar supportActionBar = getSupportActionBar();
         if (supportActionBar != null) {
             supportActionBar.setDisplayHomeAsUpEnabled(true);
@@ -93,10 +124,17 @@ public class WebLoginActivity extends AppCompatActivity {
             }
         });
         mWebView.loadUrl(getIntent().getExtras().getString(INTENT_EXTRA_URL));
+
+        long deadline = getIntent().getLongExtra(INTENT_EXTRA_DEADLINE, 0);
+        if (deadline > 0) {
+            timeoutHandler.postDelayed(timeoutTask, deadline - SystemClock.elapsedRealtime());
+        }
     }
 
     @Override
     protected void onDestroy() {
+        timeoutHandler.removeCallbacks(timeoutTask);
+
         if (progressDialog != null) {
             // avoid leaking the progress window
             progressDialog.dismiss();
@@ -110,13 +148,24 @@ public class WebLoginActivity extends AppCompatActivity {
         super.onDestroy();
     }
 
+    /**
+     * create result of the activity, carrying the nonce of the login
+     *
+     * @return result intent
+     */
+    private Intent newResult() {
+        Intent result = new Intent();
+        result.putExtra(INTENT_EXTRA_NONCE, getIntent().getStringExtra(INTENT_EXTRA_NONCE));
+        return result;
+    }
+
     private void pageLoadFailed(String url) {
         if (progressDialog != null) {
             progressDialog.dismiss();
             progressDialog = null;
         }
 
-        setResult(RESULT_FAILED);
+        setResult(RESULT_FAILED, newResult());
         finish();
     }
 
@@ -136,7 +185,7 @@ public class WebLoginActivity extends AppCompatActivity {
 
             view.stopLoading();
 
-            Intent i = new Intent();
+            Intent i = newResult();
             i.putExtra(INTENT_EXTRA_URL, url);
 
             setResult(RESULT_OK, i);
@@ -149,7 +198,7 @@ public class WebLoginActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case android.R.id.home:
-                setResult(RESULT_CANCELED);
+                setResult(RESULT_CANCELED, newResult());
                 finish();
                 return true;
             default:
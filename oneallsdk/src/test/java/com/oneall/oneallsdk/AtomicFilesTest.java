@@ -0,0 +1,67 @@
+package com.oneall.oneallsdk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AtomicFilesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeReplacesContent() throws IOException {
+        File file = new File(folder.getRoot(), "data");
+
+        AtomicFiles.write(file, new byte[] { 1, 2, 3, 4 });
+        AtomicFiles.write(file, new byte[] { 5, 6 });
+
+        assertArrayEquals(new byte[] { 5, 6 }, AtomicFiles.readFully(file, 16));
+        assertFalse("temporary file left behind", new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void failedWriteKeepsPreviousContent() throws IOException {
+        File file = new File(folder.getRoot(), "data");
+        AtomicFiles.write(file, new byte[] { 1, 2 });
+
+        // a directory in the way of the temporary file makes the write fail
+        File tmp = new File(file.getPath() + ".tmp");
+        assertTrue(tmp.mkdir());
+        try {
+            AtomicFiles.write(file, new byte[] { 3, 4 });
+            fail("write succeeded");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        assertArrayEquals(new byte[] { 1, 2 }, AtomicFiles.readFully(file, 16));
+    }
+
+    @Test
+    public void tooBigFileIsRejected() throws IOException {
+        File file = new File(folder.getRoot(), "data");
+        AtomicFiles.write(file, new byte[17]);
+
+        try {
+            AtomicFiles.readFully(file, 16);
+            fail("too big file was read");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFileIsReported() throws IOException {
+        AtomicFiles.readFully(new File(folder.getRoot(), "missing"), 16);
+    }
+}
@@ -0,0 +1,9 @@
+package com.oneall.oneallsdk;
+
+/**
+ * JUnit category of the tests measuring the speed of the SDK on the build machine. They are slow
+ * and depend on the load of the machine, so the unit tests leave them out unless the build is run
+ * with {@code -Pbenchmarks}.
+ */
+public interface Benchmark {
+}
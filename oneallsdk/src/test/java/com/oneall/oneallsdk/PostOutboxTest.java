@@ -0,0 +1,447 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.OAManager.OAOutboxListener;
+import com.oneall.oneallsdk.OutboxLog.Record;
+import com.oneall.oneallsdk.rest.ApiEndpoint;
+import com.oneall.oneallsdk.rest.CircuitBreaker;
+import com.oneall.oneallsdk.rest.MessagePostResult;
+import com.oneall.oneallsdk.rest.ServiceManagerProvider;
+import com.oneall.oneallsdk.rest.Settings;
+import com.oneall.oneallsdk.rest.models.PostMessageRequest;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.ResponseBody;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.content.Context;
+import android.os.Build;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.LOLLIPOP)
+public class PostOutboxTest {
+
+    // region Constants
+
+    /** delay of the next flush after messages could not be delivered, short enough to wait for */
+    private static final long RETRY_DELAY = 100L;
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    /** response of a message published to its provider */
+    private static final String PUBLISHED = "{\"response\":{\"request\":{\"status\":"
+            + "{\"flag\":\"success\",\"code\":200}},\"result\":{\"data\":{\"message\":"
+            + "{\"sharing_message_token\":\"message\",\"publications\":[{\"provider\":"
+            + "\"twitter\",\"status\":{\"flag\":\"success\",\"code\":200}}]}}}}}";
+
+    // endregion
+
+    // region Helper classes
+
+    /** records the keys reported by the outbox */
+    private static class Outcomes implements OAOutboxListener {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> uncertain = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void messageSent(String key, MessagePostResult result) {
+            sent.add(key);
+        }
+
+        @Override
+        public void messageFailed(String key, OAError error) {
+            failed.add(key);
+        }
+
+        @Override
+        public void messageUncertain(String key) {
+            uncertain.add(key);
+        }
+
+        int count() {
+            return sent.size() + failed.size() + uncertain.size();
+        }
+    }
+
+    /**
+     * fake server answering from an interceptor of the HTTP client: every request takes the next
+     * scripted outcome, an HTTP status or an exception, then requests are published
+     */
+    private static final class FakeServer implements Interceptor {
+        private final Queue<Object> outcomes = new ArrayDeque<>();
+        final AtomicInteger requests = new AtomicInteger();
+
+        synchronized void script(Object... outcomes) {
+            this.outcomes.addAll(Arrays.asList(outcomes));
+        }
+
+        @Override
+        public com.squareup.okhttp.Response intercept(Chain chain) throws IOException {
+            requests.incrementAndGet();
+            Object outcome;
+            synchronized (this) {
+                outcome = outcomes.poll();
+            }
+            if (outcome instanceof IOException) {
+                throw (IOException) outcome;
+            }
+
+            int code = outcome != null ? (Integer) outcome : 200;
+            return new com.squareup.okhttp.Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message(code == 200 ? "OK" : "Error")
+                    .body(ResponseBody.create(JSON, code == 200 ? PUBLISHED : "{}"))
+                    .build();
+        }
+    }
+
+    // endregion
+
+    private Context context;
+
+    private FakeServer server;
+
+    private long previousRetryDelay;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.application;
+
+        Settings settings = Settings.getInstance();
+        settings.setSubdomain("test");
+        previousRetryDelay = settings.getOutboxRetryDelay();
+        settings.setOutboxRetryDelay(RETRY_DELAY);
+
+        server = new FakeServer();
+        OkHttpClient client = new OkHttpClient();
+        client.interceptors().add(server);
+        ServiceManagerProvider.setHttpClient(client);
+        getCircuitBreaker().onSuccess();
+
+        // a message the previous run was killed while sending
+        OutboxLog log = new OutboxLog(context);
+        log.delete();
+        Record queued = new Record(Record.Type.QUEUED, "draft-1");
+        queued.userToken = "user";
+        queued.publishToken = "publish";
+        log.append(queued);
+        log.append(new Record(Record.Type.SENDING, "draft-1"));
+    }
+
+    @After
+    public void tearDown() {
+        ServiceManagerProvider.setHttpClient(null);
+        getCircuitBreaker().onSuccess();
+        Settings.getInstance().setOutboxRetryDelay(previousRetryDelay);
+    }
+
+    // region Tests
+
+    @Test
+    public void interruptedMessageIsReportedToListenerSetBeforeRestore() throws Exception {
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = new PostOutbox(context);
+
+        // the order of an application setting the listener right after the setup
+        outbox.setListener(listener);
+        outbox.start();
+        drain();
+
+        assertEquals(Collections.singletonList("draft-1"), listener.uncertain);
+    }
+
+    @Test
+    public void interruptedMessageIsReportedToListenerSetAfterRestore() throws Exception {
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = new PostOutbox(context);
+
+        outbox.start();
+        drain();
+        assertTrue(listener.uncertain.isEmpty());
+
+        outbox.setListener(listener);
+        drain();
+
+        assertEquals(Collections.singletonList("draft-1"), listener.uncertain);
+    }
+
+    @Test
+    public void messageNotConnectedIsSentAgain() throws Exception {
+        server.script(new ConnectException("Connection refused"));
+        Outcomes listener = new Outcomes();
+
+        enqueue(outboxOf(listener), "m1");
+        awaitOutcomes(listener, 2);
+
+        assertEquals(Collections.singletonList("m1"), listener.sent);
+        assertEquals(2, server.requests.get());
+        assertEquals(
+                Arrays.asList(
+                        Record.Type.QUEUED, Record.Type.SENDING, Record.Type.REQUEUED,
+                        Record.Type.SENDING, Record.Type.SENT),
+                recordTypes("m1"));
+    }
+
+    @Test
+    public void messageRejectedByOpenBreakerIsSentAgain() throws Exception {
+        CircuitBreaker breaker = getCircuitBreaker();
+        for (int i = 0; i < Settings.getInstance().getCircuitBreakerFailureThreshold(); i++) {
+            breaker.allowRequest();
+            breaker.onFailure();
+        }
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = outboxOf(listener);
+
+        enqueue(outbox, "m1");
+        awaitRecord("m1", Record.Type.REQUEUED);
+        assertEquals(0, server.requests.get());
+
+        breaker.onSuccess();
+        outbox.flush();
+        awaitOutcomes(listener, 2);
+
+        assertEquals(Collections.singletonList("m1"), listener.sent);
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void throttledOrUnavailableMessageIsSentAgain() throws Exception {
+        server.script(429, 503);
+        Outcomes listener = new Outcomes();
+
+        enqueue(outboxOf(listener), "m1");
+        awaitOutcomes(listener, 2);
+
+        assertEquals(Collections.singletonList("m1"), listener.sent);
+        assertEquals(3, server.requests.get());
+    }
+
+    @Test
+    public void messageTimedOutIsUncertainAndNotSentAgain() throws Exception {
+        server.script(new SocketTimeoutException("Read timed out"));
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = outboxOf(listener);
+
+        enqueue(outbox, "m1");
+        awaitOutcomes(listener, 2);
+        assertEquals(Arrays.asList("draft-1", "m1"), listener.uncertain);
+
+        outbox.flush();
+        settle();
+
+        assertEquals(1, server.requests.get());
+        assertEquals(2, listener.count());
+    }
+
+    @Test
+    public void messageRejectedByServerFailsAndIsNotSentAgain() throws Exception {
+        server.script(400, 500);
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = outboxOf(listener);
+
+        enqueue(outbox, "m1");
+        enqueue(outbox, "m2");
+        awaitOutcomes(listener, 3);
+        Collections.sort(listener.failed);
+        assertEquals(Arrays.asList("m1", "m2"), listener.failed);
+
+        outbox.flush();
+        settle();
+
+        assertEquals(2, server.requests.get());
+        assertEquals(3, listener.count());
+    }
+
+    @Test
+    public void duplicateKeyIsIgnored() throws Exception {
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = outboxOf(listener);
+
+        enqueue(outbox, "m1");
+        enqueue(outbox, "m1");
+        awaitOutcomes(listener, 2);
+
+        // a message already sent is not sent again either
+        enqueue(outbox, "m1");
+        settle();
+
+        assertEquals(Collections.singletonList("m1"), listener.sent);
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void compactionKeepsQueuedMessages() throws Exception {
+        OutboxLog log = new OutboxLog(context);
+        for (int i = 0; i < 40; i++) {
+            log.append(queuedRecord("done-" + i));
+            log.append(new Record(Record.Type.SENT, "done-" + i));
+        }
+        log.append(queuedRecord("late"));
+
+        // the queued message cannot be sent, so the outbox compacts the log while it waits
+        CircuitBreaker breaker = getCircuitBreaker();
+        for (int i = 0; i < Settings.getInstance().getCircuitBreakerFailureThreshold(); i++) {
+            breaker.allowRequest();
+            breaker.onFailure();
+        }
+        Settings.getInstance().setOutboxRetryDelay(60 * 1000L);
+        Outcomes listener = new Outcomes();
+        PostOutbox outbox = outboxOf(listener);
+        outbox.start();
+
+        List<Record> records = awaitCompaction(log);
+        Record late = null;
+        for (Record record : records) {
+            if ("late".equals(record.key) && record.type == Record.Type.QUEUED) {
+                late = record;
+            }
+        }
+        assertNotNull("queued message lost by compaction", late);
+        assertEquals("user", late.userToken);
+        assertEquals("hello", late.request.request.message.parts.text.body);
+
+        breaker.onSuccess();
+        outbox.flush();
+        awaitOutcomes(listener, 2);
+        assertEquals(Collections.singletonList("late"), listener.sent);
+    }
+
+    // endregion
+
+    // region Utilities
+
+    private PostOutbox outboxOf(Outcomes listener) {
+        PostOutbox outbox = new PostOutbox(context);
+        outbox.setListener(listener);
+        return outbox;
+    }
+
+    private static void enqueue(PostOutbox outbox, String key) {
+        outbox.enqueue(key, "user", "publish", request());
+    }
+
+    private static Record queuedRecord(String key) {
+        Record record = new Record(Record.Type.QUEUED, key);
+        record.userToken = "user";
+        record.publishToken = "publish";
+        record.request = request();
+        return record;
+    }
+
+    private static PostMessageRequest request() {
+        return new PostMessageRequest(
+                Collections.singletonList("twitter"),
+                "hello", null, null, null, null, null, null, false);
+    }
+
+    private static CircuitBreaker getCircuitBreaker() {
+        return ServiceManagerProvider.getInstance()
+                .getResilientCaller()
+                .getCircuitBreaker(ApiEndpoint.PUBLISH);
+    }
+
+    private List<Record.Type> recordTypes(String key) throws Exception {
+        List<Record.Type> types = new ArrayList<>();
+        for (Record record : new OutboxLog(context).read()) {
+            if (key.equals(record.key)) {
+                types.add(record.type);
+            }
+        }
+        return types;
+    }
+
+    private void awaitRecord(String key, Record.Type type) throws Exception {
+        long timeout = System.currentTimeMillis() + 10 * 1000L;
+        while (!recordTypes(key).contains(type)) {
+            if (System.currentTimeMillis() > timeout) {
+                fail(String.format("no %s record of %s", type, key));
+            }
+            drain();
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<Record> awaitCompaction(OutboxLog log) throws Exception {
+        long timeout = System.currentTimeMillis() + 10 * 1000L;
+        while (true) {
+            drain();
+            List<Record> records = log.read();
+            if (records.size() < 64) {
+                return records;
+            }
+            if (System.currentTimeMillis() > timeout) {
+                fail(String.format("log not compacted, %d records", records.size()));
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /** wait until the listener has received a number of outcomes */
+    private static void awaitOutcomes(Outcomes listener, int count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10 * 1000L;
+        while (listener.count() < count) {
+            if (System.currentTimeMillis() > timeout) {
+                fail(String.format("%d outcomes expected, got %d", count, listener.count()));
+            }
+            drain();
+            Thread.sleep(20);
+        }
+    }
+
+    /** give the outbox time to send anything it would send again */
+    private static void settle() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            drain();
+            Thread.sleep(RETRY_DELAY / 2);
+        }
+        drain();
+    }
+
+    /**
+     * wait for the tasks queued on the background thread, then run what they posted to the main
+     * thread
+     */
+    private static void drain() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        BackgroundExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        ShadowLooper.idleMainLooper();
+    }
+
+    // endregion
+}
@@ -0,0 +1,110 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.models.Provider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the binary providers cache of {@link ProviderCacheSerializer} with the Java
+ * serialization the cache used before, on a list the size of the OneAll catalog. Reading the
+ * cache is what the setup of the SDK waits for, so it is what is timed; every read is a cold
+ * decode of the whole file, as on the start of the application.
+ *
+ * Times are medians over many reads after a warm up. Only the order of the two formats is
+ * asserted, the measured times are part of the failure message. The benchmark is left out of the
+ * regular unit tests, run it with {@code ./gradlew :oneallsdk:test -Pbenchmarks}; the size of the
+ * cache is checked by {@link ProviderCacheSerializerTest}.
+ */
+@Category(Benchmark.class)
+public class ProviderCacheBenchmarkTest {
+
+    // region Constants
+
+    private static final int PROVIDERS = 60;
+
+    private static final int WARM_UP_READS = 300;
+
+    private static final int MEASURED_READS = 1000;
+
+    // endregion
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void binaryCacheIsFasterToRead() throws Exception {
+        List<Provider> providers = ProviderCacheSerializerTest.createProviders(PROVIDERS);
+
+        File binary = new File(folder.getRoot(), "providers_cache");
+        ProviderCacheSerializer.write(binary, System.currentTimeMillis(), "\"etag\"", null, providers);
+
+        File serialized = new File(folder.getRoot(), "providers_cache_serialized");
+        ProviderCacheSerializerTest.writeSerialized(serialized, providers);
+
+        for (int i = 0; i < WARM_UP_READS; i++) {
+            assertEquals(PROVIDERS, ProviderCacheSerializer.read(binary).providers.size());
+            assertEquals(PROVIDERS, readSerialized(serialized).size());
+        }
+
+        // interleaved, so that both formats see the same state of the machine
+        long[] binaryTimes = new long[MEASURED_READS];
+        long[] serializedTimes = new long[MEASURED_READS];
+        for (int i = 0; i < MEASURED_READS; i++) {
+            long start = System.nanoTime();
+            ProviderCacheSerializer.read(binary);
+            binaryTimes[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            readSerialized(serialized);
+            serializedTimes[i] = System.nanoTime() - start;
+        }
+
+        long binaryMedian = median(binaryTimes);
+        long serializedMedian = median(serializedTimes);
+        String report = String.format(
+                "providers cache, %d providers: binary read %d us, serializable read %d us",
+                PROVIDERS, binaryMedian / 1000, serializedMedian / 1000);
+
+        assertTrue("binary cache should be faster to read, " + report,
+                binaryMedian < serializedMedian);
+    }
+
+    // region Utilities
+
+    /**
+     * read providers the way ProviderManager read them before the binary format
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Provider> readSerialized(File file)
+            throws IOException, ClassNotFoundException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            ObjectInputStream is = new ObjectInputStream(fis);
+            return (Collection<Provider>) is.readObject();
+        } finally {
+            fis.close();
+        }
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // endregion
+}
@@ -0,0 +1,222 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.models.Provider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProviderCacheSerializerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        File file = new File(folder.getRoot(), "providers_cache");
+        List<Provider> providers = createProviders(3);
+
+        ProviderCacheSerializer.write(file, 1234L, "\"v1\"", null, providers);
+        ProviderCacheSerializer.CachedProviders cached = ProviderCacheSerializer.read(file);
+
+        assertEquals(1234L, cached.savedAt);
+        assertEquals("\"v1\"", cached.etag);
+        assertNull(cached.lastModified);
+        assertEquals(3, cached.providers.size());
+        for (int i = 0; i < providers.size(); i++) {
+            Provider expected = providers.get(i);
+            Provider actual = cached.providers.get(i);
+            assertEquals(expected.getKey(), actual.getKey());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getIsConfigurable(), actual.getIsConfigurable());
+            assertEquals(
+                    expected.getConfiguration().getIsRequired(),
+                    actual.getConfiguration().getIsRequired());
+            assertEquals(
+                    expected.getAuthentication().getUserInputType(),
+                    actual.getAuthentication().getUserInputType());
+        }
+        assertFalse("temporary file left behind", new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void notModifiedListOnlyRewritesTimestamp() throws IOException {
+        File file = new File(folder.getRoot(), "providers_cache");
+        ProviderCacheSerializer.write(file, 1000L, "\"v1\"", "Mon, 14 Sep 2015", createProviders(4));
+        byte[] before = readAll(file);
+
+        ProviderCacheSerializer.updateTimestamp(file, 2000L);
+        byte[] after = readAll(file);
+
+        assertEquals(before.length, after.length);
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) {
+                assertTrue("byte outside of the timestamp changed: " + i, i >= 8 && i < 16);
+                changed++;
+            }
+        }
+        assertTrue(changed > 0);
+
+        ProviderCacheSerializer.CachedProviders cached = ProviderCacheSerializer.read(file);
+        assertEquals(2000L, cached.savedAt);
+        assertEquals("\"v1\"", cached.etag);
+        assertEquals("Mon, 14 Sep 2015", cached.lastModified);
+        assertEquals(4, cached.providers.size());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFileIsReported() throws IOException {
+        ProviderCacheSerializer.read(new File(folder.getRoot(), "missing"));
+    }
+
+    @Test
+    public void corruptPayloadIsRejected() throws IOException {
+        File file = new File(folder.getRoot(), "providers_cache");
+        ProviderCacheSerializer.write(file, 1L, null, null, createProviders(5));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 3);
+            int value = raf.read();
+            raf.seek(raf.length() - 3);
+            raf.write(value ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        assertRejected(file);
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException {
+        File file = new File(folder.getRoot(), "providers_cache");
+        ProviderCacheSerializer.write(file, 1L, null, null, createProviders(5));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        assertRejected(file);
+    }
+
+    @Test
+    public void otherVersionIsRejected() throws IOException {
+        File file = new File(folder.getRoot(), "providers_cache");
+        ProviderCacheSerializer.write(file, 1L, null, null, createProviders(5));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(ProviderCacheSerializer.FORMAT_VERSION + 1);
+        } finally {
+            raf.close();
+        }
+
+        assertRejected(file);
+    }
+
+    @Test
+    public void binaryCacheIsSmallerThanSerializedList() throws IOException {
+        List<Provider> providers = createProviders(60);
+        File binary = new File(folder.getRoot(), "providers_cache");
+        ProviderCacheSerializer.write(binary, 1L, "\"etag\"", null, providers);
+        File serialized = new File(folder.getRoot(), "providers_cache_serialized");
+        writeSerialized(serialized, providers);
+
+        assertTrue(
+                String.format("binary %d bytes, serializable %d bytes",
+                        binary.length(), serialized.length()),
+                binary.length() < serialized.length());
+    }
+
+    /**
+     * create providers resembling the ones of the API, with every field set
+     *
+     * @param count number of providers
+     *
+     * @return providers
+     */
+    static List<Provider> createProviders(int count) {
+        List<Provider> providers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Provider.Configuration configuration = new Provider.Configuration();
+            configuration.setIsRequired(i % 2 == 0);
+            configuration.setIsCompleted(i % 3 != 0);
+
+            Provider.Authentication authentication = new Provider.Authentication();
+            authentication.setIsUserInputRequired(i % 5 == 0);
+            authentication.setUserInputType(i % 5 == 0 ? "login" : null);
+
+            Provider provider = new Provider();
+            provider.setKey("provider" + i);
+            provider.setName("Provider Number " + i);
+            provider.setIsConfigurable(i % 4 != 0);
+            provider.setConfiguration(configuration);
+            provider.setAuthentication(authentication);
+            providers.add(provider);
+        }
+        return providers;
+    }
+
+    /**
+     * write providers the way ProviderManager cached them before the binary format
+     */
+    static void writeSerialized(File file, Collection<Provider> providers) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            ObjectOutputStream os = new ObjectOutputStream(fos);
+            os.writeObject(new ArrayList<>(providers));
+            os.flush();
+        } finally {
+            fos.close();
+        }
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream is = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = is.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    throw new IOException("file shrank while read");
+                }
+                offset += read;
+            }
+        } finally {
+            is.close();
+        }
+        return bytes;
+    }
+
+    private static void assertRejected(File file) {
+        try {
+            ProviderCacheSerializer.read(file);
+            fail("file should have been rejected");
+        } catch (IOException expected) {
+            // discarded by ProviderManager
+        }
+    }
+}
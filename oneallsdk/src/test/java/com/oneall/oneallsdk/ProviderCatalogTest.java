@@ -0,0 +1,48 @@
+package com.oneall.oneallsdk;
+
+import com.oneall.oneallsdk.rest.models.Provider;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ProviderCatalogTest {
+
+    @Test
+    public void repeatedKeyKeepsFirstProvider() {
+        Provider first = createProvider("twitter", "Twitter");
+        Provider repeated = createProvider("twitter", "Twitter again");
+        Provider other = createProvider("facebook", "Facebook");
+
+        ProviderCatalog catalog = new ProviderCatalog(
+                1, 1000L, Arrays.asList(first, repeated, other));
+
+        assertEquals(Arrays.asList(first, other), catalog.getProviders());
+        assertEquals(Arrays.asList("twitter", "facebook"), catalog.getKeys());
+        assertSame(first, catalog.findByKey("twitter"));
+    }
+
+    @Test
+    public void providersWithoutKeyAreSkipped() {
+        Provider keyless = createProvider(null, "Nameless");
+        Provider other = createProvider("facebook", "Facebook");
+
+        ProviderCatalog catalog = new ProviderCatalog(
+                1, 1000L, Arrays.asList(null, keyless, other));
+
+        assertEquals(Arrays.asList(other), catalog.getProviders());
+        assertEquals(Arrays.asList("facebook"), catalog.getKeys());
+        assertNull(catalog.findByKey(null));
+    }
+
+    private static Provider createProvider(String key, String name) {
+        Provider provider = new Provider();
+        provider.setKey(key);
+        provider.setName(name);
+        return provider;
+    }
+}